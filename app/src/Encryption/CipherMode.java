@@ -0,0 +1,70 @@
+package Encryption;
+
+/**
+ * The AES modes an article body can be encrypted with. Each mode has the version byte that starts
+ * a ciphertext envelope written in it (see {@link EncryptionHelper#encryptEnvelope(byte[])}), so the
+ * mode a body was written in is always known when it is read back.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+public enum CipherMode {
+
+	/** AES/CBC/PKCS5Padding on BouncyCastle with a 16-byte IV. Unauthenticated; kept for existing data. */
+	CBC((byte) 1, "AES/CBC/PKCS5Padding", 16),
+
+	/** AES/GCM/NoPadding on the JDK's own provider with a 12-byte nonce and a 128-bit authentication tag. */
+	GCM((byte) 2, "AES/GCM/NoPadding", 12),
+
+	/**
+	 * AES/GCM over segments of at most {@link #GCM_SEGMENT_SIZE} bytes, each under its own nonce and tag,
+	 * so a body can be encrypted and authenticated while streaming with a bounded buffer. The 12-byte IV
+	 * is the base nonce. Written by {@link EncryptionHelper#encryptingStream(java.io.OutputStream)}.
+	 */
+	GCM_SEGMENTED((byte) 3, "AES/GCM/NoPadding", 12);
+
+	static final int GCM_TAG_BITS = 128;
+	static final int GCM_SEGMENT_SIZE = 64 * 1024;
+
+	private final byte version;
+	private final String transformation;
+	private final int ivLength;
+
+	CipherMode(byte version, String transformation, int ivLength) {
+		this.version = version;
+		this.transformation = transformation;
+		this.ivLength = ivLength;
+	}
+
+	public byte getVersion() {
+		return version;
+	}
+
+	public String getTransformation() {
+		return transformation;
+	}
+
+	public int getIvLength() {
+		return ivLength;
+	}
+
+	public boolean isGcm() {
+		return this != CBC;
+	}
+
+	/**
+	 * Finds the mode an envelope was written in.
+	 *
+	 * @param version The version byte at the start of the envelope.
+	 * @return The matching mode.
+	 * @throws IllegalArgumentException if no mode has that version.
+	 */
+	public static CipherMode forVersion(byte version) {
+		for (CipherMode mode : values()) {
+			if (mode.version == version) {
+				return mode;
+			}
+		}
+		throw new IllegalArgumentException("Unsupported ciphertext version " + version + ".");
+	}
+}
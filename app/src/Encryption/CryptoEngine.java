@@ -0,0 +1,196 @@
+package Encryption;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.Security;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+/**
+ * The CryptoEngine class is the process-wide entry point for AES encryption.
+ * The BouncyCastle provider is registered once when the engine is first used, and every thread gets its
+ * own Cipher the first time it encrypts or decrypts, which it then reuses for every later call.
+ * Cipher objects are not thread-safe, so keeping one per thread lets background workers and the UI
+ * thread encrypt concurrently without locking and without looking up a provider per operation.
+ *
+ * CBC runs on BouncyCastle, as it always has. GCM runs on the JDK's default provider, whose AES and
+ * GHASH use the CPU's AES-NI and carry-less multiply instructions where available.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+public final class CryptoEngine {
+
+	private static CryptoEngine instance;
+
+	private final Provider provider;
+	private final Map<CipherMode, ThreadLocal<Cipher>> ciphers = new EnumMap<>(CipherMode.class);
+
+	private CryptoEngine(Provider provider) {
+		this.provider = provider;
+		for (CipherMode mode : CipherMode.values()) {
+			ciphers.put(mode, ThreadLocal.withInitial(() -> createCipher(mode)));
+		}
+	}
+
+	/**
+	 * Returns the shared engine, registering the BouncyCastle provider on first use.
+	 *
+	 * @return The process-wide engine.
+	 */
+	public static synchronized CryptoEngine getInstance() {
+		if (instance == null) {
+			Provider provider = Security.getProvider(BouncyCastleProvider.PROVIDER_NAME);
+			if (provider == null) {
+				provider = new BouncyCastleProvider();
+				Security.addProvider(provider);
+			}
+			instance = new CryptoEngine(provider);
+		}
+		return instance;
+	}
+
+	/**
+	 * Encrypts a block on the calling thread's Cipher for the mode.
+	 *
+	 * @param mode                 The cipher mode.
+	 * @param key                  The AES key.
+	 * @param plainText            The plaintext.
+	 * @param initializationVector The IV, of the mode's IV length; never reuse one with the same key for GCM.
+	 * @return The ciphertext, followed by the authentication tag for GCM.
+	 * @throws GeneralSecurityException if the key or IV is invalid.
+	 */
+	public byte[] encrypt(CipherMode mode, SecretKey key, byte[] plainText, byte[] initializationVector)
+			throws GeneralSecurityException {
+		Cipher cipher = ciphers.get(mode).get();
+		cipher.init(Cipher.ENCRYPT_MODE, key, parameters(mode, initializationVector));
+		return cipher.doFinal(plainText);
+	}
+
+	/**
+	 * Decrypts a block on the calling thread's Cipher for the mode.
+	 *
+	 * @param mode                 The cipher mode.
+	 * @param key                  The AES key.
+	 * @param cipherText           The ciphertext.
+	 * @param initializationVector The IV the ciphertext was encrypted with.
+	 * @return The plaintext.
+	 * @throws GeneralSecurityException if the ciphertext cannot be decrypted, or for GCM fails authentication.
+	 */
+	public byte[] decrypt(CipherMode mode, SecretKey key, byte[] cipherText, byte[] initializationVector)
+			throws GeneralSecurityException {
+		Cipher cipher = ciphers.get(mode).get();
+		cipher.init(Cipher.DECRYPT_MODE, key, parameters(mode, initializationVector));
+		return cipher.doFinal(cipherText);
+	}
+
+	/**
+	 * Decrypts from one buffer into another on the calling thread's Cipher for the mode.
+	 *
+	 * @param mode                 The cipher mode.
+	 * @param key                  The AES key.
+	 * @param cipherText           The ciphertext, read from its position to its limit.
+	 * @param initializationVector The IV the ciphertext was encrypted with.
+	 * @param output               The buffer the plaintext is written to, from its position.
+	 * @return The number of plaintext bytes written.
+	 * @throws GeneralSecurityException if the ciphertext cannot be decrypted or the output is too small.
+	 */
+	public int decrypt(CipherMode mode, SecretKey key, ByteBuffer cipherText, byte[] initializationVector,
+			ByteBuffer output) throws GeneralSecurityException {
+		Cipher cipher = ciphers.get(mode).get();
+		cipher.init(Cipher.DECRYPT_MODE, key, parameters(mode, initializationVector));
+		return cipher.doFinal(cipherText, output);
+	}
+
+	/**
+	 * Encrypts part of an array on the calling thread's Cipher, authenticating extra data with GCM.
+	 *
+	 * @param mode                 The cipher mode.
+	 * @param key                  The AES key.
+	 * @param input                The array holding the plaintext.
+	 * @param offset               Where the plaintext starts.
+	 * @param length               The plaintext length.
+	 * @param initializationVector The IV; never reuse one with the same key for GCM.
+	 * @param associatedData       Data authenticated but not encrypted, or null; GCM only.
+	 * @return The ciphertext, followed by the authentication tag for GCM.
+	 * @throws GeneralSecurityException if the key or IV is invalid.
+	 */
+	byte[] encrypt(CipherMode mode, SecretKey key, byte[] input, int offset, int length, byte[] initializationVector,
+			byte[] associatedData) throws GeneralSecurityException {
+		Cipher cipher = ciphers.get(mode).get();
+		cipher.init(Cipher.ENCRYPT_MODE, key, parameters(mode, initializationVector));
+		if (associatedData != null) {
+			cipher.updateAAD(associatedData);
+		}
+		return cipher.doFinal(input, offset, length);
+	}
+
+	/**
+	 * Decrypts part of an array on the calling thread's Cipher, checking extra data with GCM.
+	 *
+	 * @param mode                 The cipher mode.
+	 * @param key                  The AES key.
+	 * @param input                The array holding the ciphertext.
+	 * @param offset               Where the ciphertext starts.
+	 * @param length               The ciphertext length, including the GCM tag.
+	 * @param initializationVector The IV the ciphertext was encrypted with.
+	 * @param associatedData       The data authenticated on encryption, or null; GCM only.
+	 * @return The plaintext.
+	 * @throws GeneralSecurityException if the ciphertext cannot be decrypted or fails authentication.
+	 */
+	byte[] decrypt(CipherMode mode, SecretKey key, byte[] input, int offset, int length, byte[] initializationVector,
+			byte[] associatedData) throws GeneralSecurityException {
+		Cipher cipher = ciphers.get(mode).get();
+		cipher.init(Cipher.DECRYPT_MODE, key, parameters(mode, initializationVector));
+		if (associatedData != null) {
+			cipher.updateAAD(associatedData);
+		}
+		return cipher.doFinal(input, offset, length);
+	}
+
+	/**
+	 * Creates a Cipher of its own for a CipherInputStream or CipherOutputStream, which keeps using it
+	 * until the stream is closed, so it cannot be the calling thread's shared Cipher.
+	 *
+	 * @param mode                 The cipher mode.
+	 * @param operation            {@link Cipher#ENCRYPT_MODE} or {@link Cipher#DECRYPT_MODE}.
+	 * @param key                  The AES key.
+	 * @param initializationVector The IV.
+	 * @return An initialized Cipher.
+	 * @throws GeneralSecurityException if the key or IV is invalid.
+	 */
+	Cipher newStreamCipher(CipherMode mode, int operation, SecretKey key, byte[] initializationVector)
+			throws GeneralSecurityException {
+		Cipher cipher = createCipher(mode);
+		cipher.init(operation, key, parameters(mode, initializationVector));
+		return cipher;
+	}
+
+	private static AlgorithmParameterSpec parameters(CipherMode mode, byte[] initializationVector) {
+		if (mode.isGcm()) {
+			return new GCMParameterSpec(CipherMode.GCM_TAG_BITS, initializationVector);
+		}
+		return new IvParameterSpec(initializationVector);
+	}
+
+	private Cipher createCipher(CipherMode mode) {
+		try {
+			// GCM takes the highest-priority provider, which is the JDK's intrinsified implementation
+			return mode.isGcm()
+					? Cipher.getInstance(mode.getTransformation())
+					: Cipher.getInstance(mode.getTransformation(), provider);
+		} catch (GeneralSecurityException e) {
+			// Only reachable if the provider jar is broken; every caller would fail the same way
+			throw new IllegalStateException("Cipher " + mode.getTransformation() + " is not available.", e);
+		}
+	}
+}
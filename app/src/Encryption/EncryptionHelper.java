@@ -1,60 +1,356 @@
-package Encryption;
-
-import java.nio.charset.StandardCharsets;
-import java.security.Security;
-import java.util.Base64;
-
-import javax.crypto.Cipher;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
-
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-
-public class EncryptionHelper {
-
-	private static String BOUNCY_CASTLE_PROVIDER_IDENTIFIER = "BC";	
-	private Cipher cipher;
-	
-	byte[] keyBytes = new byte[] {
-            0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07,
-            0x08, 0x09, 0x0a, 0x0b, 0x0c, 0x0d, 0x0e, 0x0f,
-            0x10, 0x11, 0x12, 0x13, 0x14, 0x15, 0x16, 0x17 };
-	private SecretKey key = new SecretKeySpec(keyBytes, "AES");
-
-	public EncryptionHelper() throws Exception {
-		Security.addProvider(new BouncyCastleProvider());
-		cipher = Cipher.getInstance("AES/CBC/PKCS5Padding", BOUNCY_CASTLE_PROVIDER_IDENTIFIER);		
-	}
-	
-	public byte[] encrypt(byte[] plainText, byte[] initializationVector) throws Exception {
-		cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(initializationVector));
-		return cipher.doFinal(plainText);
-	}
-	
-	public byte[] decrypt(byte[] cipherText, byte[] initializationVector) throws Exception {
-		cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(initializationVector));
-		return cipher.doFinal(cipherText);
-	}
-	
-	/**
-     * Attempts to decrypt the article body if it is encrypted.
-     *
-     * @param encryptedBody The possibly encrypted body text.
-     * @return The decrypted body text, or the original text if decryption fails.
-     * @throws Exception if decryption fails or if the body is not properly formatted.
-     */
-    public String decryptBody(String encryptedBody) throws Exception {
-        // Split the encrypted body format (assuming it has the format iv:encryptedBody)
-        String[] parts = encryptedBody.split(":");
-        if (parts.length != 2) {
-            throw new IllegalArgumentException("Invalid encrypted body format.");
-        }
-
-        byte[] iv = Base64.getDecoder().decode(parts[0]);
-        byte[] encryptedData = Base64.getDecoder().decode(parts[1]);
-        byte[] decryptedData = decrypt(encryptedData, iv);
-        return new String(decryptedData, StandardCharsets.UTF_8);
-    }
-	
-}
+package Encryption;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.SecretKey;
+
+/**
+ * Encrypts and decrypts with the application's AES key. The work is done by the shared
+ * {@link CryptoEngine}, which keeps a Cipher per thread, so one helper may be used from any number of
+ * threads at once and constructing one is cheap.
+ *
+ * Article bodies are sealed in a versioned envelope: one version byte naming the {@link CipherMode},
+ * the IV, then the ciphertext. New bodies use the helper's body mode, GCM unless chosen otherwise,
+ * and any envelope can be read back whatever the body mode is. The database stores envelopes as raw
+ * bytes; backups carry them as Base64 text, and older data as "iv:ciphertext" CBC text, both of which
+ * {@link #toEnvelope(String)} turns back into an envelope.
+ *
+ * Large bodies can be encrypted and decrypted as streams with bounded buffers through
+ * {@link #encryptingStream(OutputStream)} and {@link #decryptingStream(InputStream)}. A GCM tag covers the
+ * whole message, so streams write GCM bodies as {@link CipherMode#GCM_SEGMENTED} envelopes instead.
+ *
+ * Keys come from a {@link KeyRing}. New bodies are encrypted under its current key, and an envelope
+ * under any key but the built-in one starts with {@link #KEYED_ENVELOPE} and the 4-byte key version,
+ * so older bodies keep decrypting after a rotation for as long as the ring holds their key.
+ * The raw {@link #encrypt(byte[], byte[])} and {@link #decrypt(byte[], byte[])} calls, used for backup
+ * files, are always CBC under the built-in key.
+ */
+public class EncryptionHelper {
+
+	// First byte of an envelope that names its key version; never a CipherMode version
+	public static final byte KEYED_ENVELOPE = 'K';
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private final CryptoEngine engine;
+	private final KeyRing keyRing;
+	private final CipherMode bodyMode;
+
+	public EncryptionHelper() throws Exception {
+		this(CipherMode.GCM);
+	}
+
+	/**
+	 * Constructor for EncryptionHelper using the application's key ring.
+	 *
+	 * @param bodyMode The mode new article bodies are encrypted with.
+	 * @throws IOException if the key ring cannot be loaded.
+	 */
+	public EncryptionHelper(CipherMode bodyMode) throws IOException {
+		this(KeyRing.getDefault(), bodyMode);
+	}
+
+	/**
+	 * Constructor for EncryptionHelper.
+	 *
+	 * @param keyRing  The keys bodies are encrypted and decrypted with.
+	 * @param bodyMode The mode new article bodies are encrypted with.
+	 */
+	public EncryptionHelper(KeyRing keyRing, CipherMode bodyMode) {
+		this.engine = CryptoEngine.getInstance();
+		this.keyRing = keyRing;
+		this.bodyMode = bodyMode;
+	}
+
+	public CipherMode getBodyMode() {
+		return bodyMode;
+	}
+
+	public KeyRing getKeyRing() {
+		return keyRing;
+	}
+
+	private SecretKey legacyKey() {
+		return keyRing.getKey(KeyRing.LEGACY_KEY_VERSION);
+	}
+
+	public byte[] encrypt(byte[] plainText, byte[] initializationVector) throws Exception {
+		return engine.encrypt(CipherMode.CBC, legacyKey(), plainText, initializationVector);
+	}
+
+	public byte[] decrypt(byte[] cipherText, byte[] initializationVector) throws Exception {
+		return engine.decrypt(CipherMode.CBC, legacyKey(), cipherText, initializationVector);
+	}
+
+	/**
+	 * Decrypts from one buffer into another without allocating, so callers can reuse the output buffer.
+	 * The output needs room for at least as many bytes as the ciphertext holds.
+	 *
+	 * @param cipherText           The ciphertext, read from its position to its limit.
+	 * @param initializationVector The IV the ciphertext was encrypted with.
+	 * @param output               The buffer the plaintext is written to, from its position.
+	 * @return The number of plaintext bytes written.
+	 * @throws Exception if the ciphertext cannot be decrypted or the output is too small.
+	 */
+	public int decrypt(ByteBuffer cipherText, byte[] initializationVector, ByteBuffer output) throws Exception {
+		return engine.decrypt(CipherMode.CBC, legacyKey(), cipherText, initializationVector, output);
+	}
+
+	/**
+	 * Encrypts under a fresh IV in the body mode and wraps the result in a versioned envelope.
+	 *
+	 * @param plainText The plaintext.
+	 * @return The envelope: key version unless it is the built-in key, mode version byte, IV, ciphertext.
+	 * @throws Exception if the plaintext cannot be encrypted.
+	 */
+	public byte[] encryptEnvelope(byte[] plainText) throws Exception {
+		if (bodyMode == CipherMode.GCM_SEGMENTED) {
+			ByteArrayOutputStream envelope = new ByteArrayOutputStream(plainText.length + 64);
+			try (OutputStream out = encryptingStream(envelope)) {
+				out.write(plainText);
+			}
+			return envelope.toByteArray();
+		}
+		int keyVersion = keyRing.getCurrentVersion();
+		byte[] iv = new byte[bodyMode.getIvLength()];
+		RANDOM.nextBytes(iv);
+		byte[] header = header(keyVersion, bodyMode, iv);
+		byte[] cipherText = engine.encrypt(bodyMode, keyRing.getKey(keyVersion), plainText, iv);
+		return ByteBuffer.allocate(header.length + cipherText.length).put(header).put(cipherText).array();
+	}
+
+	/**
+	 * Opens an envelope written by {@link #encryptEnvelope(byte[])} in any mode.
+	 *
+	 * @param envelope The envelope.
+	 * @return The plaintext.
+	 * @throws IllegalArgumentException if the envelope is too short or has an unknown version.
+	 * @throws IOException if the envelope is under a key the ring does not hold.
+	 * @throws Exception if the ciphertext cannot be decrypted, or for GCM has been tampered with.
+	 */
+	public byte[] decryptEnvelope(byte[] envelope) throws Exception {
+		return decryptEnvelope(new ByteArrayInputStream(envelope));
+	}
+
+	/**
+	 * Opens an envelope read from a stream, such as a BLOB column, without first copying the whole
+	 * envelope into an array.
+	 *
+	 * @param envelope The stream positioned at the envelope; it is read to the end but not closed.
+	 * @return The plaintext.
+	 * @throws IllegalArgumentException if the envelope is too short or has an unknown version.
+	 * @throws IOException if the stream fails or the envelope is under a key the ring does not hold.
+	 * @throws Exception if the ciphertext cannot be decrypted.
+	 */
+	public byte[] decryptEnvelope(InputStream envelope) throws Exception {
+		Header header = readHeader(envelope);
+		if (header.mode == CipherMode.GCM_SEGMENTED) {
+			return new SegmentedGcmInputStream(envelope, engine, header.key, header.iv).readAllBytes();
+		}
+		return engine.decrypt(header.mode, header.key, envelope.readAllBytes(), header.iv);
+	}
+
+	/**
+	 * Starts an envelope on the given stream and returns a stream that encrypts everything written to it.
+	 * Only a bounded buffer is held, however much is written. Closing the returned stream finishes the
+	 * envelope and closes the underlying stream.
+	 *
+	 * @param out The stream the envelope is written to.
+	 * @return The stream to write plaintext to.
+	 * @throws IOException if the header cannot be written.
+	 */
+	public OutputStream encryptingStream(OutputStream out) throws IOException {
+		CipherMode mode = bodyMode == CipherMode.CBC ? CipherMode.CBC : CipherMode.GCM_SEGMENTED;
+		int keyVersion = keyRing.getCurrentVersion();
+		SecretKey key = keyRing.getKey(keyVersion);
+		byte[] iv = new byte[mode.getIvLength()];
+		RANDOM.nextBytes(iv);
+		out.write(header(keyVersion, mode, iv));
+		if (mode == CipherMode.GCM_SEGMENTED) {
+			return new SegmentedGcmOutputStream(out, engine, key, iv);
+		}
+		try {
+			return new CipherOutputStream(out, engine.newStreamCipher(mode, Cipher.ENCRYPT_MODE, key, iv));
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Could not start body encryption.", e);
+		}
+	}
+
+	/**
+	 * Reads an envelope's header and returns a stream of its plaintext, decrypted as it is read with a
+	 * bounded buffer. Single-shot GCM envelopes are only small bodies, since the JDK holds back their
+	 * plaintext until the tag at the end has been checked. Closing the returned stream closes the
+	 * underlying stream.
+	 *
+	 * @param envelope The stream positioned at the envelope.
+	 * @return The plaintext stream.
+	 * @throws IllegalArgumentException if the header is too short or has an unknown version.
+	 * @throws IOException if the header cannot be read or names a key the ring does not hold.
+	 */
+	public InputStream decryptingStream(InputStream envelope) throws IOException {
+		Header header = readHeader(envelope);
+		if (header.mode == CipherMode.GCM_SEGMENTED) {
+			return new SegmentedGcmInputStream(envelope, engine, header.key, header.iv);
+		}
+		try {
+			return new CipherInputStream(envelope,
+					engine.newStreamCipher(header.mode, Cipher.DECRYPT_MODE, header.key, header.iv));
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Could not start body decryption.", e);
+		}
+	}
+
+	/**
+	 * Returns the version of the key an envelope was encrypted under, leaving the stream where it was.
+	 *
+	 * @param envelope The stream positioned at the envelope; it must support mark and reset.
+	 * @return The key version.
+	 * @throws IllegalArgumentException if the envelope is too short.
+	 * @throws IOException if the stream cannot be read.
+	 */
+	public static int peekKeyVersion(InputStream envelope) throws IOException {
+		envelope.mark(5);
+		try {
+			int first = readByte(envelope);
+			return first == KEYED_ENVELOPE ? readInt(envelope) : KeyRing.LEGACY_KEY_VERSION;
+		} finally {
+			envelope.reset();
+		}
+	}
+
+	/**
+	 * The parsed start of an envelope.
+	 */
+	private static final class Header {
+		private final SecretKey key;
+		private final CipherMode mode;
+		private final byte[] iv;
+
+		Header(SecretKey key, CipherMode mode, byte[] iv) {
+			this.key = key;
+			this.mode = mode;
+			this.iv = iv;
+		}
+	}
+
+	private static byte[] header(int keyVersion, CipherMode mode, byte[] iv) {
+		boolean keyed = keyVersion != KeyRing.LEGACY_KEY_VERSION;
+		ByteBuffer header = ByteBuffer.allocate((keyed ? 5 : 0) + 1 + iv.length);
+		if (keyed) {
+			header.put(KEYED_ENVELOPE).putInt(keyVersion);
+		}
+		return header.put(mode.getVersion()).put(iv).array();
+	}
+
+	private Header readHeader(InputStream envelope) throws IOException {
+		int keyVersion = KeyRing.LEGACY_KEY_VERSION;
+		int version = readByte(envelope);
+		if (version == KEYED_ENVELOPE) {
+			keyVersion = readInt(envelope);
+			version = readByte(envelope);
+		}
+		if (!keyRing.hasKey(keyVersion)) {
+			// Not a malformed envelope, which callers may pass over, but one this ring cannot open
+			throw new IOException("Body is encrypted under key version " + keyVersion + ", which the key ring does not hold.");
+		}
+		SecretKey key = keyRing.getKey(keyVersion);
+		CipherMode mode = CipherMode.forVersion((byte) version);
+		byte[] iv = envelope.readNBytes(mode.getIvLength());
+		if (iv.length < mode.getIvLength()) {
+			throw new IllegalArgumentException("Invalid encrypted body format.");
+		}
+		return new Header(key, mode, iv);
+	}
+
+	private static int readByte(InputStream envelope) throws IOException {
+		int b = envelope.read();
+		if (b < 0) {
+			throw new IllegalArgumentException("Invalid encrypted body format.");
+		}
+		return b;
+	}
+
+	private static int readInt(InputStream envelope) throws IOException {
+		byte[] bytes = envelope.readNBytes(4);
+		if (bytes.length < 4) {
+			throw new IllegalArgumentException("Invalid encrypted body format.");
+		}
+		return ByteBuffer.wrap(bytes).getInt();
+	}
+
+	/**
+	 * Converts an encrypted body in text form, a Base64 envelope or a legacy "iv:ciphertext" CBC body,
+	 * into an envelope. Nothing is decrypted, so no key is needed.
+	 *
+	 * @param storedBody The body as text.
+	 * @return The envelope.
+	 * @throws IllegalArgumentException if the text is in neither form.
+	 */
+	public static byte[] toEnvelope(String storedBody) {
+		// Base64 never contains a colon, so the two forms cannot be confused
+		int colon = storedBody.indexOf(':');
+		if (colon < 0) {
+			byte[] envelope = Base64.getDecoder().decode(storedBody);
+			if (envelope.length == 0) {
+				throw new IllegalArgumentException("Invalid encrypted body format.");
+			}
+			return envelope;
+		}
+		if (storedBody.indexOf(':', colon + 1) >= 0) {
+			throw new IllegalArgumentException("Invalid encrypted body format.");
+		}
+		byte[] iv = Base64.getDecoder().decode(storedBody.substring(0, colon));
+		byte[] cipherText = Base64.getDecoder().decode(storedBody.substring(colon + 1));
+		if (iv.length != CipherMode.CBC.getIvLength()) {
+			throw new IllegalArgumentException("Invalid encrypted body format.");
+		}
+		return ByteBuffer.allocate(1 + iv.length + cipherText.length)
+				.put(CipherMode.CBC.getVersion()).put(iv).put(cipherText).array();
+	}
+
+	/**
+	 * Returns the text form of an envelope, as carried in backups.
+	 *
+	 * @param envelope The envelope.
+	 * @return The Base64 envelope.
+	 */
+	public static String toStoredText(byte[] envelope) {
+		return Base64.getEncoder().encodeToString(envelope);
+	}
+
+	/**
+	 * Encrypts an article body into its text form.
+	 *
+	 * @param body The plaintext body.
+	 * @return The Base64 envelope.
+	 * @throws Exception if the body cannot be encrypted.
+	 */
+	public String encryptBody(String body) throws Exception {
+		return toStoredText(encryptEnvelope(body.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+     * Attempts to decrypt the article body if it is encrypted.
+     * Accepts both the Base64 envelope and the legacy CBC "iv:encryptedBody" format.
+     *
+     * @param encryptedBody The possibly encrypted body text.
+     * @return The decrypted body text, or the original text if decryption fails.
+     * @throws Exception if decryption fails or if the body is not properly formatted.
+     */
+    public String decryptBody(String encryptedBody) throws Exception {
+        return new String(decryptEnvelope(toEnvelope(encryptedBody)), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,251 @@
+package Encryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The KeyRing class holds every AES key article bodies may have been encrypted under, by version, and
+ * which version new bodies use. Version 1 is the application's original built-in key, so everything
+ * written before keys were versioned still decrypts. Later keys are generated by {@link #rotate()} and
+ * kept in a properties file beside the database, readable only by the owner, so they survive restarts.
+ * Backups do not carry the keys; a backup holding bodies under a key this ring lacks is refused on restore.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+public final class KeyRing {
+
+	public static final int LEGACY_KEY_VERSION = 1;
+
+	// System property naming the application's key ring file, for a database with no local directory
+	public static final String PATH_PROPERTY = "app.keyring.path";
+
+	// The key ring's file name in the database's directory
+	private static final String FILE_NAME = "keyring.properties";
+
+	// The same default database as DatabaseHelper, which also takes its URL from app.db.url
+	private static final String DEFAULT_DATABASE_URL = "jdbc:h2:./database/appDatabase";
+
+	private static final int NEW_KEY_BYTES = 32;
+
+	private static final byte[] LEGACY_KEY_BYTES = new byte[] {
+            0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07,
+            0x08, 0x09, 0x0a, 0x0b, 0x0c, 0x0d, 0x0e, 0x0f,
+            0x10, 0x11, 0x12, 0x13, 0x14, 0x15, 0x16, 0x17 };
+
+	private static KeyRing defaultRing;
+
+	private final Path file; // null for a ring kept only in memory
+	private final Map<Integer, SecretKey> keys = new ConcurrentHashMap<>();
+	private volatile int currentVersion = LEGACY_KEY_VERSION;
+
+	/**
+	 * Creates a ring kept only in memory, holding just the built-in key.
+	 */
+	public KeyRing() {
+		this(null);
+	}
+
+	private KeyRing(Path file) {
+		this.file = file;
+		keys.put(LEGACY_KEY_VERSION, new SecretKeySpec(LEGACY_KEY_BYTES, "AES"));
+	}
+
+	/**
+	 * Returns the application's key ring, loading it on first use from the file named by the
+	 * app.keyring.path system property, or else from beside the database named by app.db.url.
+	 * An in-memory database gets a ring kept only in memory.
+	 *
+	 * @return The shared key ring.
+	 * @throws IOException if the key ring file exists but cannot be read, or there is nowhere to keep it.
+	 */
+	public static synchronized KeyRing getDefault() throws IOException {
+		if (defaultRing == null) {
+			String path = System.getProperty(PATH_PROPERTY);
+			Path file = path != null ? Paths.get(path) : pathFor(System.getProperty("app.db.url", DEFAULT_DATABASE_URL));
+			defaultRing = file == null ? new KeyRing() : load(file);
+		}
+		return defaultRing;
+	}
+
+	/**
+	 * Returns where the key ring of an H2 database is kept: keyring.properties in the directory of the
+	 * database files, so a database moved with its directory keeps its keys.
+	 *
+	 * @param databaseUrl The database's JDBC URL.
+	 * @return The key ring file, or null for an in-memory database.
+	 * @throws IOException if the database is not a local file, so the key ring must be named with app.keyring.path.
+	 */
+	public static Path pathFor(String databaseUrl) throws IOException {
+		String prefix = "jdbc:h2:";
+		String name = databaseUrl.startsWith(prefix) ? databaseUrl.substring(prefix.length()) : "";
+		int options = name.indexOf(';');
+		if (options >= 0) {
+			name = name.substring(0, options);
+		}
+		if (name.startsWith("mem:")) {
+			return null;
+		}
+		if (name.isEmpty() || name.startsWith("tcp:") || name.startsWith("ssl:")) {
+			throw new IOException("Database " + databaseUrl + " is not a local file; name its key ring with -D"
+					+ PATH_PROPERTY + ".");
+		}
+		if (name.startsWith("file:")) {
+			name = name.substring("file:".length());
+		}
+		if (name.startsWith("~")) {
+			name = System.getProperty("user.home") + name.substring(1);
+		}
+		return Paths.get(name).toAbsolutePath().normalize().getParent().resolve(FILE_NAME);
+	}
+
+	/**
+	 * Loads a key ring from a file. Keys added later are saved back to the same file.
+	 *
+	 * @param file The key ring file; if it does not exist yet the ring holds just the built-in key.
+	 * @return The key ring.
+	 * @throws IOException if the file cannot be read or is malformed.
+	 */
+	public static KeyRing load(Path file) throws IOException {
+		KeyRing ring = new KeyRing(file);
+		if (!Files.exists(file)) {
+			return ring;
+		}
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			properties.load(in);
+		}
+		try {
+			for (String name : properties.stringPropertyNames()) {
+				if (name.startsWith("key.")) {
+					int version = Integer.parseInt(name.substring(4));
+					byte[] key = Base64.getDecoder().decode(properties.getProperty(name));
+					ring.keys.put(version, new SecretKeySpec(key, "AES"));
+				}
+			}
+			int current = Integer.parseInt(properties.getProperty("current", String.valueOf(LEGACY_KEY_VERSION)));
+			if (!ring.keys.containsKey(current)) {
+				throw new IOException("Key ring " + file + " names a current key it does not hold.");
+			}
+			ring.currentVersion = current;
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Key ring " + file + " is malformed.", e);
+		}
+		return ring;
+	}
+
+	public int getCurrentVersion() {
+		return currentVersion;
+	}
+
+	/**
+	 * Returns whether the ring holds the key with the given version.
+	 *
+	 * @param version The key version.
+	 * @return True if bodies under that key can be decrypted.
+	 */
+	public boolean hasKey(int version) {
+		return keys.containsKey(version);
+	}
+
+	/**
+	 * Returns the key with the given version.
+	 *
+	 * @param version The key version.
+	 * @return The key.
+	 * @throws IllegalArgumentException if the ring has no such key.
+	 */
+	public SecretKey getKey(int version) {
+		SecretKey key = keys.get(version);
+		if (key == null) {
+			throw new IllegalArgumentException("Unknown encryption key version " + version + ".");
+		}
+		return key;
+	}
+
+	/**
+	 * Generates a new key and makes it current. The ring is saved before the key is used, so nothing
+	 * is ever encrypted under a key that could be lost in a crash.
+	 *
+	 * @return The new key's version.
+	 * @throws IOException if the ring cannot be saved.
+	 */
+	public synchronized int rotate() throws IOException {
+		byte[] keyBytes = new byte[NEW_KEY_BYTES];
+		new SecureRandom().nextBytes(keyBytes);
+		int version = keys.keySet().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+		keys.put(version, new SecretKeySpec(keyBytes, "AES"));
+		try {
+			save(version);
+		} catch (IOException e) {
+			keys.remove(version);
+			throw e;
+		}
+		currentVersion = version;
+		return version;
+	}
+
+	/**
+	 * Makes an existing key current, for example to move back to an earlier key.
+	 *
+	 * @param version The key version.
+	 * @throws IOException if the ring cannot be saved.
+	 */
+	public synchronized void setCurrentVersion(int version) throws IOException {
+		getKey(version);
+		save(version);
+		currentVersion = version;
+	}
+
+	/**
+	 * Writes every generated key and the current version to the ring's file, replacing it atomically.
+	 */
+	private void save(int current) throws IOException {
+		if (file == null) {
+			return;
+		}
+		Properties properties = new Properties();
+		properties.setProperty("current", String.valueOf(current));
+		keys.forEach((version, key) -> {
+			if (version != LEGACY_KEY_VERSION) {
+				properties.setProperty("key." + version, Base64.getEncoder().encodeToString(key.getEncoded()));
+			}
+		});
+
+		Path directory = file.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temp = Files.createTempFile(directory, "keyring", ".tmp");
+		try {
+			try {
+				Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+			} catch (UnsupportedOperationException e) {
+				// Not a POSIX file system; the file keeps the directory's default permissions
+			}
+			try (OutputStream out = Files.newOutputStream(temp)) {
+				properties.store(out, "Article body encryption keys");
+			}
+			try {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package Encryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.SecretKey;
+
+/**
+ * The SegmentedGcmInputStream class reads the frames of a {@link CipherMode#GCM_SEGMENTED} envelope
+ * written by {@link SegmentedGcmOutputStream}, decrypting and authenticating one segment at a time.
+ * Plaintext is only handed out once its segment's tag has checked, and the stream fails rather than
+ * ending early if the final segment is missing or anything follows it.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+final class SegmentedGcmInputStream extends InputStream {
+
+	private static final int MAX_FRAME_LENGTH = CipherMode.GCM_SEGMENT_SIZE + SegmentedGcmOutputStream.TAG_LENGTH;
+
+	private final InputStream in;
+	private final CryptoEngine engine;
+	private final SecretKey key;
+	private final byte[] baseNonce;
+	private final byte[] frameHeader = new byte[SegmentedGcmOutputStream.FRAME_HEADER_LENGTH];
+	private byte[] cipherText = new byte[0];
+	private byte[] plainText = new byte[0];
+	private int position = 0;
+	private int segmentIndex = 0;
+	private boolean finished = false;
+
+	/**
+	 * Constructor for SegmentedGcmInputStream. The envelope header must already have been read.
+	 *
+	 * @param in        The stream positioned at the first frame; closed with this stream.
+	 * @param engine    The engine doing the decryption.
+	 * @param key       The AES key.
+	 * @param baseNonce The 12-byte base nonce from the envelope header.
+	 */
+	SegmentedGcmInputStream(InputStream in, CryptoEngine engine, SecretKey key, byte[] baseNonce) {
+		this.in = in;
+		this.engine = engine;
+		this.key = key;
+		this.baseNonce = baseNonce;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] one = new byte[1];
+		return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		while (position == plainText.length) {
+			if (finished) {
+				return -1;
+			}
+			readSegment();
+		}
+		int n = Math.min(length, plainText.length - position);
+		System.arraycopy(plainText, position, bytes, offset, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return plainText.length - position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private void readSegment() throws IOException {
+		if (in.readNBytes(frameHeader, 0, frameHeader.length) < frameHeader.length) {
+			throw new IOException("Encrypted body is truncated.");
+		}
+		byte flag = frameHeader[0];
+		int length = ByteBuffer.wrap(frameHeader, 1, 4).getInt();
+		if ((flag != 0 && flag != 1) || length < SegmentedGcmOutputStream.TAG_LENGTH || length > MAX_FRAME_LENGTH) {
+			throw new IOException("Corrupt encrypted body segment.");
+		}
+		if (cipherText.length < length) {
+			cipherText = new byte[MAX_FRAME_LENGTH];
+		}
+		if (in.readNBytes(cipherText, 0, length) < length) {
+			throw new IOException("Encrypted body is truncated.");
+		}
+		try {
+			plainText = engine.decrypt(CipherMode.GCM_SEGMENTED, key, cipherText, 0, length,
+					SegmentedGcmOutputStream.segmentNonce(baseNonce, segmentIndex++), new byte[] { flag });
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Encrypted body failed authentication.", e);
+		}
+		position = 0;
+		if (flag == 1) {
+			finished = true;
+			if (in.read() >= 0) {
+				throw new IOException("Unexpected data after the final body segment.");
+			}
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package Encryption;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.SecretKey;
+
+/**
+ * The SegmentedGcmOutputStream class writes a {@link CipherMode#GCM_SEGMENTED} envelope. Plaintext is
+ * buffered up to one segment, which is then encrypted and written as a frame: a final flag, the 4-byte
+ * ciphertext length and the ciphertext with its tag. Segment i is encrypted under the base nonce with i
+ * XORed into its last four bytes, and the final flag is authenticated, so reordered, dropped or
+ * truncated segments all fail to decrypt. Closing the stream writes the final segment.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+final class SegmentedGcmOutputStream extends OutputStream {
+
+	static final int FRAME_HEADER_LENGTH = 5;
+	static final int TAG_LENGTH = CipherMode.GCM_TAG_BITS / 8;
+
+	private final OutputStream out;
+	private final CryptoEngine engine;
+	private final SecretKey key;
+	private final byte[] baseNonce;
+	private final byte[] segment = new byte[CipherMode.GCM_SEGMENT_SIZE];
+	private final ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_LENGTH);
+	private int buffered = 0;
+	private int segmentIndex = 0;
+	private boolean closed = false;
+
+	/**
+	 * Constructor for SegmentedGcmOutputStream. The envelope header must already have been written.
+	 *
+	 * @param out       The stream the frames are written to; closed with this stream.
+	 * @param engine    The engine doing the encryption.
+	 * @param key       The AES key.
+	 * @param baseNonce The 12-byte base nonce from the envelope header.
+	 */
+	SegmentedGcmOutputStream(OutputStream out, CryptoEngine engine, SecretKey key, byte[] baseNonce) {
+		this.out = out;
+		this.engine = engine;
+		this.key = key;
+		this.baseNonce = baseNonce;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed.");
+		}
+		while (length > 0) {
+			// A full segment is only written once more data arrives, so the last one is always the final one
+			if (buffered == segment.length) {
+				writeSegment(false);
+			}
+			int n = Math.min(length, segment.length - buffered);
+			System.arraycopy(bytes, offset, segment, buffered, n);
+			buffered += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			writeSegment(true);
+		} finally {
+			out.close();
+		}
+	}
+
+	private void writeSegment(boolean last) throws IOException {
+		byte flag = (byte) (last ? 1 : 0);
+		byte[] cipherText;
+		try {
+			cipherText = engine.encrypt(CipherMode.GCM_SEGMENTED, key, segment, 0, buffered,
+					segmentNonce(baseNonce, segmentIndex), new byte[] { flag });
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Could not encrypt body segment.", e);
+		}
+		frameHeader.clear();
+		frameHeader.put(flag).putInt(cipherText.length);
+		out.write(frameHeader.array());
+		out.write(cipherText);
+		buffered = 0;
+		if (++segmentIndex < 0) {
+			throw new IOException("Body has too many segments.");
+		}
+	}
+
+	/**
+	 * Returns the nonce for a segment: the base nonce with the segment index XORed into its last four bytes.
+	 */
+	static byte[] segmentNonce(byte[] baseNonce, int index) {
+		byte[] nonce = baseNonce.clone();
+		int last = nonce.length - 4;
+		ByteBuffer.wrap(nonce, last, 4).putInt(ByteBuffer.wrap(baseNonce, last, 4).getInt() ^ index);
+		return nonce;
+	}
+}
@@ -26,6 +26,7 @@ public class HelpArticle {
     private final String authorUsername;
     private Set<String> referenceLinks;
     private boolean isEncrypted; // New field to indicate if the article is encrypted
+    private byte[] encryptedBody; // The stored envelope when read for a backup without decrypting; null otherwise
 
     // Constructor for creating a new article
     public HelpArticle(String title, String description, String body, String level, Set<String> keywords, Set<String> referenceLinks, String authorUsername, String groupName, boolean isEncrypted) {
@@ -101,6 +102,15 @@ public class HelpArticle {
         this.body = body;
     }
 
+    // The group article's body as its binary envelope, set instead of body when it is not decrypted
+    public byte[] getEncryptedBody() {
+        return encryptedBody;
+    }
+
+    public void setEncryptedBody(byte[] encryptedBody) {
+        this.encryptedBody = encryptedBody;
+    }
+
     public String getLevel() {
         return level;
     }
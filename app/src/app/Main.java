@@ -1,6 +1,8 @@
 package app;
 
 import app.page.LoginPage;
+import app.util.ConnectionPool;
+import app.util.SchemaMigrator;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.scene.layout.VBox;
@@ -18,6 +20,9 @@ public class Main extends Application {
     @Override
     public void start(Stage primaryStage) {
         try {
+            // Bring the database schema up to date before any page touches it
+            SchemaMigrator.migrateOnce();
+
             // Set up initial root with background color to prevent white flashes
             VBox root = new VBox();
             root.setStyle("-fx-background-color: #2e3440;");
@@ -39,6 +44,12 @@ public class Main extends Application {
         }
     }
 
+    @Override
+    public void stop() {
+        // Close the pooled database connections on exit
+        ConnectionPool.shutdownInstance();
+    }
+
     public static void main(String[] args) {
         // Launch the JavaFX application
         launch(args);
@@ -0,0 +1,180 @@
+package app.dialog;
+
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+import app.util.ProgressListener;
+import app.util.UIHelper;
+
+/**
+ * The ProgressDialog class runs a backup or restore on a background thread while showing its progress
+ * (rows, bytes and an estimate of the time left) in a small window with a Cancel button. The page
+ * behind it stays responsive, and the result is handed back on the JavaFX Application Thread.
+ *
+ * Cancelling asks the work to stop at its next progress check; the dialog stays open until it has
+ * actually stopped, so by the time it closes an incomplete backup file is gone or a restore has been rolled back.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+public class ProgressDialog<T> {
+
+    /**
+     * The work run in the background. It should pass the listener on to the backup or restore it calls.
+     */
+    public interface Work<T> {
+        T run(ProgressListener listener) throws Exception;
+    }
+
+    private final Stage owner;
+    private final String title;
+
+    /**
+     * Constructor for ProgressDialog.
+     *
+     * @param owner The window the dialog belongs to.
+     * @param title The operation name, such as "Backup" or "Restore".
+     */
+    public ProgressDialog(Stage owner, String title) {
+        this.owner = owner;
+        this.title = title;
+    }
+
+    /**
+     * Shows the dialog and starts the work on a background thread. Returns straight away.
+     *
+     * @param work      The work to run.
+     * @param onSuccess Called on the JavaFX Application Thread with the work's result once it succeeds.
+     */
+    public void run(Work<T> work, Consumer<T> onSuccess) {
+        ProgressTask task = new ProgressTask(work);
+
+        Label statusLabel = new Label("Starting...");
+        statusLabel.textProperty().bind(task.messageProperty());
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setPrefWidth(400);
+        progressBar.progressProperty().bind(task.progressProperty());
+        Button cancelButton = new Button("Cancel");
+        cancelButton.setOnAction(e -> {
+            task.requestCancel();
+            cancelButton.setDisable(true);
+        });
+
+        VBox layout = new VBox(15, new Label(title + " in progress"), progressBar, statusLabel, cancelButton);
+        layout.setAlignment(Pos.CENTER);
+        layout.setPadding(new Insets(20));
+
+        Stage dialog = new Stage();
+        dialog.initOwner(owner);
+        dialog.initModality(Modality.WINDOW_MODAL);
+        dialog.setTitle(title);
+        dialog.setScene(new Scene(layout));
+        // Closing the window cancels the work instead of leaving it running unseen
+        dialog.setOnCloseRequest(e -> {
+            e.consume();
+            task.requestCancel();
+            cancelButton.setDisable(true);
+        });
+
+        task.setOnSucceeded(e -> {
+            dialog.close();
+            onSuccess.accept(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            dialog.close();
+            Throwable error = task.getException();
+            if (error instanceof CancellationException) {
+                UIHelper.showInfoDialog(title + " Cancelled", title + " was cancelled; nothing was changed.");
+            } else {
+                error.printStackTrace();
+                UIHelper.showErrorDialog(title + " Failed", String.valueOf(error.getMessage()));
+            }
+        });
+
+        Thread thread = new Thread(task, "progress-" + title.toLowerCase());
+        thread.setDaemon(true);
+        dialog.show();
+        thread.start();
+    }
+
+    /**
+     * Describes progress for the status line, for example "1,500 of 20,000 rows, 2.4 MB, about 12 s left".
+     *
+     * @param rows          The rows processed so far.
+     * @param totalRows     The rows expected in total, or -1 if unknown.
+     * @param bytes         The bytes written or read so far.
+     * @param fraction      The fraction complete, or a negative value if unknown.
+     * @param elapsedMillis The time spent so far.
+     * @return The status text.
+     */
+    static String describe(long rows, long totalRows, long bytes, double fraction, long elapsedMillis) {
+        StringBuilder text = new StringBuilder(String.format("%,d", rows));
+        if (totalRows >= 0) {
+            text.append(String.format(" of %,d", totalRows));
+        }
+        text.append(String.format(" rows, %.1f MB", bytes / (1024.0 * 1024.0)));
+        if (fraction > 0 && fraction < 1) {
+            long remainingSeconds = Math.round(elapsedMillis * (1 - fraction) / fraction / 1000);
+            text.append(", about ").append(remainingSeconds < 60 ? remainingSeconds + " s"
+                    : (remainingSeconds + 30) / 60 + " min").append(" left");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Runs the work and turns its progress callbacks into Task progress and message updates.
+     */
+    private final class ProgressTask extends Task<T> implements ProgressListener {
+        private final Work<T> work;
+        private volatile boolean cancelRequested = false;
+        private long startMillis;
+
+        ProgressTask(Work<T> work) {
+            this.work = work;
+        }
+
+        void requestCancel() {
+            cancelRequested = true;
+            updateMessage("Cancelling...");
+        }
+
+        @Override
+        protected T call() throws Exception {
+            startMillis = System.currentTimeMillis();
+            return work.run(this);
+        }
+
+        @Override
+        public boolean isCancelRequested() {
+            return cancelRequested;
+        }
+
+        @Override
+        public void onProgress(long rows, long totalRows, long bytes, long totalBytes) {
+            // Bytes track a restore's position in the file; rows track a backup against the row count
+            double fraction = -1;
+            if (totalBytes > 0) {
+                fraction = Math.min(1.0, (double) bytes / totalBytes);
+            } else if (totalRows > 0) {
+                fraction = Math.min(1.0, (double) rows / totalRows);
+            }
+            if (fraction >= 0) {
+                updateProgress(fraction, 1.0);
+            }
+            if (!cancelRequested) {
+                updateMessage(describe(rows, totalRows, bytes, fraction, System.currentTimeMillis() - startMillis));
+            }
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package app.page;
 
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
 import javafx.scene.control.Button;
 import javafx.scene.control.ListView;
@@ -13,6 +16,9 @@ import javafx.scene.layout.HBox;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.layout.BorderPane;
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.UUID;
 import java.util.Set;
 import java.util.ArrayList;
@@ -22,6 +28,7 @@ import java.sql.SQLException;
 import app.User;
 import app.cell.UserCell;
 import app.dialog.LevelSelectionDialog;
+import app.dialog.ProgressDialog;
 import app.dialog.RoleSelectionDialog;
 import app.dialog.TokenDisplayDialog;
 import app.util.DatabaseHelper;
@@ -91,13 +98,7 @@ public class AdminPage {
         memberListView.getSelectionModel().setSelectionMode(SelectionMode.SINGLE);
 
         // Populate and sort the member list
-        try {
-            ArrayList<User> userList = new ArrayList<>(databaseHelper.getAllUsers());
-            userList.sort(Comparator.comparingInt(this::getRolePriority));
-            memberListView.getItems().addAll(userList);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        loadMembers(memberListView);
 
         // Define display style for each user
         memberListView.setCellFactory(param -> new UserCell());
@@ -183,12 +184,56 @@ public class AdminPage {
 			} catch (Exception e1) {}
         });
 
+        // Whole-database backup and restore run on a background thread so the page stays responsive
+        Button backupDatabaseButton = UIHelper.createButton("Backup Database", e -> {
+            FileChooser fileChooser = new FileChooser();
+            fileChooser.setTitle("Select Database Backup Location");
+            fileChooser.setInitialFileName("Database-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd-HH")));
+            File file = fileChooser.showSaveDialog(stage);
+            if (file != null) {
+                new ProgressDialog<Long>(stage, "Backup").run(
+                        listener -> databaseHelper.backupDatabase(file.getAbsolutePath(), listener),
+                        rows -> UIHelper.showInfoDialog("Backup Complete", "Backed up " + rows + " rows to " + file.getName() + "."));
+            }
+        });
+        Button restoreDatabaseButton = UIHelper.createButton("Restore Database", e -> {
+            FileChooser fileChooser = new FileChooser();
+            fileChooser.setTitle("Select Database Backup File");
+            File file = fileChooser.showOpenDialog(stage);
+            if (file == null) {
+                return;
+            }
+            Alert confirmAlert = new Alert(Alert.AlertType.CONFIRMATION);
+            confirmAlert.setTitle("Restore Database");
+            confirmAlert.setHeaderText("Replace all data with the backup?");
+            confirmAlert.setContentText("Every user, invitation, group, article, bookmark and help message will be replaced.");
+            confirmAlert.showAndWait().filter(response -> response == ButtonType.OK).ifPresent(response ->
+                    new ProgressDialog<Long>(stage, "Restore").run(
+                            listener -> databaseHelper.restoreDatabase(file.getAbsolutePath(), listener),
+                            rows -> {
+                                loadMembers(memberListView);
+                                UIHelper.showInfoDialog("Restore Complete", "Restored " + rows + " rows from " + file.getName() + ".");
+                            }));
+        });
+        // Rotation saves the new key, then re-encrypts group articles in the background; cancelling keeps the checkpoint
+        Button rotateKeyButton = UIHelper.createButton("Rotate Encryption Key", e -> {
+            Alert confirmAlert = new Alert(Alert.AlertType.CONFIRMATION);
+            confirmAlert.setTitle("Rotate Encryption Key");
+            confirmAlert.setHeaderText("Encrypt group articles under a new key?");
+            confirmAlert.setContentText("Articles stay readable while they are re-encrypted. A cancelled run resumes next time.");
+            confirmAlert.showAndWait().filter(response -> response == ButtonType.OK).ifPresent(response ->
+                    new ProgressDialog<Long>(stage, "Re-encryption").run(
+                            databaseHelper::rotateArticleKey,
+                            count -> UIHelper.showInfoDialog("Rotation Complete", "Re-encrypted " + count + " articles.")));
+        });
+
         Button logoutButton = UIHelper.createButton("Logout", e -> {
             new LoginPage(stage).show();
         }, "-fx-background-color: #FF5555;");
 
         // Layout for buttons
-        HBox buttonBox = new HBox(20, generateTokenButton, manageGroupsButton, helpArticlesButton, finishSetupButton, viewMessagesButton, logoutButton);
+        HBox buttonBox = new HBox(20, generateTokenButton, manageGroupsButton, helpArticlesButton, finishSetupButton, viewMessagesButton,
+                backupDatabaseButton, restoreDatabaseButton, rotateKeyButton, logoutButton);
         buttonBox.setAlignment(Pos.CENTER);
 
         // Main layout using VBox
@@ -207,6 +252,21 @@ public class AdminPage {
         stage.show();
     }
 
+    /**
+     * Replaces the member list with the current users, sorted by role.
+     *
+     * @param memberListView The list to fill.
+     */
+    private void loadMembers(ListView<User> memberListView) {
+        try {
+            ArrayList<User> userList = new ArrayList<>(databaseHelper.getAllUsers());
+            userList.sort(Comparator.comparingInt(this::getRolePriority));
+            memberListView.getItems().setAll(userList);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
     private int getRolePriority(User user) {
         if (user.hasRole("Admin")) return 1;
         else if (user.hasRole("Instructor")) return 2;
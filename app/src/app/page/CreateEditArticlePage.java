@@ -102,7 +102,19 @@ public class CreateEditArticlePage {
         if (article != null) {
             titleField.setText(article.getTitle());
             descriptionArea.setText(article.getDescription());
-            bodyArea.setText(article.getBody());
+            String body = article.getBody();
+            if (body == null) {
+                // Article lists only carry summaries, so load the body for editing
+                try {
+                    HelpArticle fullArticle = databaseHelper.getArticle(article.getId(), user);
+                    if (fullArticle != null) {
+                        body = fullArticle.getBody();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            bodyArea.setText(body);
             keywordsField.setText(String.join(", ", article.getKeywords()));
             levelChoiceBox.setValue(article.getLevel());
             referenceLinksArea.setText(String.join(", ", article.getReferenceLinks()));
@@ -1,5 +1,6 @@
 package app.page;
 
+import javafx.application.Platform;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.scene.Scene;
@@ -22,18 +23,20 @@ import javafx.geometry.Pos;
 import javafx.geometry.Insets;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import app.HelpArticle;
 import app.User;
+import app.dialog.ProgressDialog;
+import app.util.ArticleFilter;
 import app.util.DatabaseHelper;
 import app.util.Group;
 import app.util.HelpArticleDatabase;
+import app.util.RestoreStats;
 import app.util.UIHelper;
 
 /**
@@ -46,10 +49,12 @@ import app.util.UIHelper;
  *     - Jaafar Abdeen
  */
 public class HelpArticlesPage {
+    // Number of articles fetched per page as the list scrolls
+    private static final int PAGE_SIZE = 50;
+
     private final Stage stage;
     private final User user;
     private final DatabaseHelper databaseHelper;
-    private final List<HelpArticle> allArticles;
     private ChoiceBox<String> contentLevelChoiceBox;
     private ChoiceBox<String> groupChoiceBox;
     private String currentGroup = "All";
@@ -57,6 +62,9 @@ public class HelpArticlesPage {
     private TextField searchField;
     private Label searchResultLabel;
     private ListView<HelpArticle> articlesListView;
+    private ArticleFilter currentFilter = ArticleFilter.all();
+    private long lastLoadedId = 0;
+    private boolean hasMorePages = false;
 
 
     public HelpArticlesPage(Stage stage, User user) {
@@ -70,7 +78,6 @@ public class HelpArticlesPage {
             e.printStackTrace();
         }
         this.databaseHelper = tempDatabaseHelper;
-        this.allArticles = new ArrayList<>(HelpArticleDatabase.getArticles(user));
     }
 
     /**
@@ -138,6 +145,15 @@ public class HelpArticlesPage {
                     int seqNum = getIndex() + 1;
                     String shortForm = seqNum + ". " + item.getTitle() + " by " + item.getAuthorUsername() + "\n" + item.getDescription();
                     setText(shortForm);
+                    // Fetch the next page once the last loaded article scrolls into view
+                    int index = getIndex();
+                    if (index == articlesListView.getItems().size() - 1 && hasMorePages) {
+                        Platform.runLater(() -> {
+                            if (index == articlesListView.getItems().size() - 1) {
+                                loadNextPage();
+                            }
+                        });
+                    }
                 }
             }
         });
@@ -159,11 +175,10 @@ public class HelpArticlesPage {
             fileChooser.setInitialFileName("Backup-" + java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd-HH")));
             File file = fileChooser.showSaveDialog(stage);
             if (file != null) {
-                try {
-                    databaseHelper.backupArticles(file.getAbsolutePath());
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
+                // Runs in the background; the dialog shows progress and can cancel it
+                new ProgressDialog<Long>(stage, "Backup").run(
+                        listener -> databaseHelper.backupArticles(file.getAbsolutePath(), listener),
+                        version -> UIHelper.showInfoDialog("Backup Complete", "Articles backed up to " + file.getName() + "."));
             }
         });
 
@@ -196,17 +211,15 @@ public class HelpArticlesPage {
                     groupDialog.setContentText("Enter group name to filter by (leave blank for all):");
 
                     groupDialog.showAndWait().ifPresent(group -> {
-                        try {
-                            // Call restoreArticles with the chosen options
-                            databaseHelper.restoreArticles(file.getAbsolutePath(), merge, group.isBlank() ? null : group);
-                            // Reload articles from the database after restore
-                            allArticles.clear();
-                            allArticles.addAll(HelpArticleDatabase.getArticles(user));
-                            // Refresh ListView with the updated articles
-                            articlesListView.getItems().setAll(filterArticles(searchField.getText()));
-                        } catch (Exception ex) {
-                            ex.printStackTrace();
-                        }
+                        // Call restoreArticles with the chosen options in the background
+                        new ProgressDialog<RestoreStats>(stage, "Restore").run(
+                                listener -> databaseHelper.restoreArticles(file.getAbsolutePath(), merge,
+                                        group.isBlank() ? null : group, listener),
+                                stats -> {
+                                    // Reload the first page of articles; later pages load as the list scrolls
+                                    updateArticleList(searchField.getText());
+                                    UIHelper.showInfoDialog("Restore Complete", stats.toString());
+                                });
                     });
                 });
             }
@@ -220,7 +233,10 @@ public class HelpArticlesPage {
             String seqNumStr = sequenceNumberField.getText();
             try {
                 int seqNum = Integer.parseInt(seqNumStr);
-                HelpArticle selectedArticle = articlesListView.getItems().get(seqNum - 1);
+                // Past what has been scrolled to so far, fetch just that row rather than every page before it
+                HelpArticle selectedArticle = seqNum >= 1 && seqNum <= articlesListView.getItems().size()
+                        ? articlesListView.getItems().get(seqNum - 1)
+                        : databaseHelper.getArticleAt(user, currentFilter, seqNum);
                 if (selectedArticle != null) {
                     new ViewArticlePage(stage, user, selectedArticle).show();
                 } else {
@@ -228,6 +244,8 @@ public class HelpArticlesPage {
                 }
             } catch (NumberFormatException ex) {
                 UIHelper.showErrorDialog("Invalid Input", "Please enter a valid sequence number.");
+            } catch (SQLException ex) {
+                UIHelper.showErrorDialog("Error", "Could not load the article: " + ex.getMessage());
             }
         });
 
@@ -281,43 +299,6 @@ public class HelpArticlesPage {
         stage.show();
     }
 
-    /**
-     * Filters articles based on user level and search keywords.
-     * 
-     * @param keyword The search keyword.
-     * @return The list of filtered articles.
-     */
-    private List<HelpArticle> filterArticles(String keyword) {
-        return allArticles.stream()
-                .filter(article -> {
-                    if (!"All".equalsIgnoreCase(user.getContentLevelPreference())) {
-                        return article.getLevel().equalsIgnoreCase(user.getContentLevelPreference());
-                    }
-                    return true;
-                })
-                .filter(article -> {
-                    if (!"All".equalsIgnoreCase(currentGroup)) {
-                        return currentGroup.equals(article.getGroupName());
-                    }
-                    return true;
-                })
-                .filter(article -> keyword == null || keyword.isEmpty() ||
-                        article.getTitle().toLowerCase().contains(keyword.toLowerCase()) ||
-                        article.getDescription().toLowerCase().contains(keyword.toLowerCase()) ||
-                        article.getAuthorUsername().toLowerCase().contains(keyword.toLowerCase()) ||
-                        article.getId() == parseLongSafely(keyword)
-                )
-                .collect(Collectors.toList());
-    }
-
-    private long parseLongSafely(String s) {
-        try {
-            return Long.parseLong(s);
-        } catch (NumberFormatException e) {
-            return -1;
-        }
-    }
-
     private ContextMenu createContextMenu(ListView<HelpArticle> articlesListView) {
         ContextMenu contextMenu = new ContextMenu();
         MenuItem editArticleItem = new MenuItem("Edit Article");
@@ -342,20 +323,26 @@ public class HelpArticlesPage {
         return contextMenu;
     }
     
+    /**
+     * Restarts the list for the current level, group and search keyword, loading the first page.
+     * 
+     * @param keyword The search keyword.
+     */
     private void updateArticleList(String keyword) {
-        List<HelpArticle> filteredArticles = filterArticles(keyword);
-        articlesListView.getItems().setAll(filteredArticles);
-
-        // Update sequence mapping
+        currentFilter = new ArticleFilter(user.getContentLevelPreference(), currentGroup, keyword);
+        lastLoadedId = 0;
+        hasMorePages = true;
+        articlesListView.getItems().clear();
         articleSequenceMap.clear();
-        int sequenceNumber = 1;
-        for (HelpArticle article : filteredArticles) {
-            articleSequenceMap.put(sequenceNumber++, article);
-        }
+        loadNextPage();
 
         // Compute counts
-        Map<String, Long> levelCounts = filteredArticles.stream()
-                .collect(Collectors.groupingBy(HelpArticle::getLevel, Collectors.counting()));
+        Map<String, Long> levelCounts = new HashMap<>();
+        try {
+            levelCounts = databaseHelper.countArticlesByLevel(user, currentFilter);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
 
         long totalArticles = 0;
         StringBuilder countsBuilder = new StringBuilder();
@@ -371,4 +358,30 @@ public class HelpArticlesPage {
         searchResultLabel.setText("Current Group: " + currentGroup + "\n" + countsBuilder.toString());
     }
 
+    /**
+     * Appends the next page of matching articles to the list.
+     */
+    private void loadNextPage() {
+        if (!hasMorePages) {
+            return;
+        }
+        try {
+            List<HelpArticle> page = databaseHelper.getArticlesPage(user, currentFilter, lastLoadedId, PAGE_SIZE);
+            hasMorePages = page.size() == PAGE_SIZE;
+            if (!page.isEmpty()) {
+                lastLoadedId = page.get(page.size() - 1).getId();
+            }
+
+            // Update sequence mapping
+            int sequenceNumber = articlesListView.getItems().size() + 1;
+            for (HelpArticle article : page) {
+                articleSequenceMap.put(sequenceNumber++, article);
+            }
+            articlesListView.getItems().addAll(page);
+        } catch (Exception e) {
+            hasMorePages = false;
+            e.printStackTrace();
+        }
+    }
+
 }
@@ -1,7 +1,6 @@
 package app.page;
 
 import javafx.stage.Stage;
-import Encryption.EncryptionHelper;
 import javafx.scene.Scene;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextArea;
@@ -17,9 +16,7 @@ import java.awt.Desktop;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.util.Base64;
 
 import app.HelpArticle;
 import app.User;
@@ -65,14 +62,8 @@ public class ViewArticlePage {
                 return;
             }
 
-            String bodyText;
-            try {
-            	EncryptionHelper amr = new EncryptionHelper();
-                bodyText = amr.decryptBody(accessibleArticle.getBody());
-            } catch (Exception e) {
-                // Fallback to original body if decryption fails
-                bodyText = accessibleArticle.getBody();
-            }
+            // The body is loaded, and decrypted for group articles, only now that the article is opened
+            String bodyText = accessibleArticle.getBody();
 
             // Title label
             Label titleLabel = new Label(article.getTitle());
@@ -0,0 +1,95 @@
+package app.test;
+
+import app.HelpArticle;
+import app.User;
+import app.util.ConnectionPool;
+import app.util.DatabaseHelper;
+import app.util.Group;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compares loading a user's accessible articles with the group check done in SQL (getAllArticles)
+ * against the previous approach of fetching every article and loading its group per row.
+ *
+ * Run with H2, BouncyCastle and the compiled classes on the classpath:
+ *     java app.test.ArticleAccessBenchmark [articles] [groups]
+ */
+public class ArticleAccessBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int articleCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int groupCount = args.length > 1 ? Integer.parseInt(args[1]) : 120;
+        System.setProperty("app.db.url", "jdbc:h2:mem:articleAccessBenchmark;DB_CLOSE_DELAY=-1");
+
+        DatabaseHelper dbHelper = new DatabaseHelper();
+        dbHelper.connectToDatabase();
+        User user = new User("benchUser", "password", "Student");
+
+        // 120 groups of 50 students; the benchmark user belongs to every tenth group
+        for (int g = 0; g < groupCount; g++) {
+            Group group = new Group("benchGroup" + g);
+            group.addAdmin("benchAdmin");
+            for (int s = 0; s < 50; s++) {
+                group.addStudent("benchStudent" + g + "_" + s);
+            }
+            if (g % 10 == 0) {
+                group.addStudent(user.getUsername());
+            }
+            dbHelper.createGroup(group);
+        }
+
+        // A third of the articles belong to a group
+        for (int i = 0; i < articleCount; i++) {
+            String groupName = i % 3 == 0 ? "benchGroup" + (i % groupCount) : null;
+            dbHelper.registerArticle(new HelpArticle("Article " + i, "Description " + i,
+                    "Body of article " + i + " ".repeat(200), "Beginner",
+                    new HashSet<>(Set.of("bench")), new HashSet<>(Set.of("http://example.com")),
+                    "benchAuthor", groupName, groupName != null));
+        }
+        System.out.println("Seeded " + articleCount + " articles in " + groupCount + " groups");
+
+        int expected = dbHelper.getAllArticles(user).size();
+        int legacyCount = loadWithPerRowGroupCheck(dbHelper, user);
+        if (legacyCount != expected) {
+            throw new IllegalStateException("Result mismatch: " + legacyCount + " vs " + expected);
+        }
+        System.out.println("Accessible articles: " + expected);
+
+        double legacy = BenchmarkTimer.measureMillis("SELECT * + getGroup per row", 3, 10,
+                () -> loadWithPerRowGroupCheck(dbHelper, user));
+        double joined = BenchmarkTimer.measureMillis("getAllArticles (access checked in SQL)", 3, 10,
+                () -> dbHelper.getAllArticles(user));
+        System.out.printf("Speedup: %.1fx%n", legacy / joined);
+
+        ConnectionPool.shutdownInstance();
+    }
+
+    /**
+     * The previous getAllArticles access check: every row is fetched and its group loaded to decide access.
+     * Bodies are not decrypted here, which only favours this path.
+     */
+    private static int loadWithPerRowGroupCheck(DatabaseHelper dbHelper, User user) throws Exception {
+        int count = 0;
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM help_articles")) {
+            while (rs.next()) {
+                String groupName = rs.getString("group_name");
+                boolean hasAccess = true;
+                if (groupName != null) {
+                    Group group = dbHelper.getGroup(groupName);
+                    hasAccess = group != null && dbHelper.hasAccessToGroupArticle(user, group);
+                }
+                if (hasAccess) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,143 @@
+package app.test;
+
+import Encryption.EncryptionHelper;
+import app.HelpArticle;
+import app.util.BackupReader;
+import app.util.BackupWriter;
+
+import java.io.FileWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compares the backup file size and write/read throughput of the legacy single-line format against
+ * the chunked format at several Deflate levels. The database is left out so only the backup
+ * pipeline (serialize, compress, encrypt, write and the reverse) is measured.
+ *
+ * Run with BouncyCastle and the compiled classes on the classpath:
+ *     java app.test.BackupBenchmark [articles]
+ */
+public class BackupBenchmark {
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        int articleCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        EncryptionHelper encryptionHelper = new EncryptionHelper();
+        List<HelpArticle> articles = generateArticles(articleCount);
+        Path file = Files.createTempFile("backup-benchmark", ".bak");
+
+        try {
+            double rawMegabytes = rawSize(articles) / (1024.0 * 1024.0);
+            System.out.printf("%d articles, %.1f MB of records%n", articleCount, rawMegabytes);
+
+            double writeMillis = BenchmarkTimer.measureMillis("legacy write", 2, 5,
+                    () -> writeLegacy(file, articles, encryptionHelper));
+            double readMillis = BenchmarkTimer.measureMillis("legacy read", 2, 5,
+                    () -> readAll(file, encryptionHelper));
+            report(file, rawMegabytes, writeMillis, readMillis);
+
+            for (int level : new int[] { 0, 1, 6, 9 }) {
+                writeMillis = BenchmarkTimer.measureMillis("chunked write, level " + level, 2, 5,
+                        () -> writeChunked(file, articles, encryptionHelper, level));
+                readMillis = BenchmarkTimer.measureMillis("chunked read, level " + level, 2, 5,
+                        () -> readAll(file, encryptionHelper));
+                report(file, rawMegabytes, writeMillis, readMillis);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void report(Path file, double rawMegabytes, double writeMillis, double readMillis) throws Exception {
+        System.out.printf("    size %8.2f MB, write %7.1f MB/s, read %7.1f MB/s%n",
+                Files.size(file) / (1024.0 * 1024.0), rawMegabytes / (writeMillis / 1000), rawMegabytes / (readMillis / 1000));
+    }
+
+    /**
+     * Articles with the kind of repetitive prose, keywords and links a help system accumulates.
+     */
+    private static List<HelpArticle> generateArticles(int count) {
+        String[] sentences = {
+                "To reset your password, open the account settings page and choose Reset Password. ",
+                "If the problem persists, contact your instructor or a group administrator. ",
+                "Make sure the project builds before submitting it through the course portal. ",
+                "Each group article is visible only to members of that group. ",
+                "Use the search box to filter articles by title, description or author. "
+        };
+        List<HelpArticle> articles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder body = new StringBuilder();
+            for (int s = 0; s < 20; s++) {
+                body.append(sentences[(i + s * 7) % sentences.length]);
+            }
+            articles.add(new HelpArticle(i + 1, "Help topic " + i, "How to handle case " + i,
+                    body.toString(), i % 2 == 0 ? "Beginner" : "Intermediate",
+                    new HashSet<>(Set.of("help", "topic" + (i % 50))),
+                    new HashSet<>(Set.of("http://example.com/help/" + (i % 50))),
+                    "author" + (i % 20), i % 3 == 0 ? "group" + (i % 10) : null, i % 3 == 0));
+        }
+        return articles;
+    }
+
+    private static String toRecord(HelpArticle article) {
+        return article.getId() + "§" + article.getTitle() + "§" + article.getDescription() + "§"
+                + article.getBody() + "§" + article.getLevel() + "§"
+                + String.join(",", article.getKeywords()) + "§"
+                + String.join(",", article.getReferenceLinks()) + "§"
+                + article.getAuthorUsername() + "§"
+                + (article.getGroupName() == null ? "null" : article.getGroupName()) + "\n";
+    }
+
+    private static long rawSize(List<HelpArticle> articles) {
+        long size = 0;
+        for (HelpArticle article : articles) {
+            size += toRecord(article).getBytes(StandardCharsets.UTF_8).length;
+        }
+        return size;
+    }
+
+    /**
+     * The previous backupArticles: one string, one encryption, Base64 on a single line.
+     */
+    private static void writeLegacy(Path file, List<HelpArticle> articles, EncryptionHelper encryptionHelper) throws Exception {
+        StringBuilder serializedData = new StringBuilder();
+        for (HelpArticle article : articles) {
+            serializedData.append(toRecord(article));
+        }
+        byte[] iv = new byte[16];
+        new SecureRandom().nextBytes(iv);
+        byte[] encryptedData = encryptionHelper.encrypt(serializedData.toString().getBytes(StandardCharsets.UTF_8), iv);
+        try (FileWriter writer = new FileWriter(file.toFile())) {
+            writer.write(Base64.getEncoder().encodeToString(iv) + "\n" + Base64.getEncoder().encodeToString(encryptedData));
+        }
+    }
+
+    private static void writeChunked(Path file, List<HelpArticle> articles, EncryptionHelper encryptionHelper,
+                                     int level) throws Exception {
+        try (BackupWriter writer = new BackupWriter(file, encryptionHelper, CHUNK_SIZE, level)) {
+            for (HelpArticle article : articles) {
+                writer.write(article);
+            }
+        }
+    }
+
+    private static void readAll(Path file, EncryptionHelper encryptionHelper) throws Exception {
+        int count = 0;
+        try (BackupReader reader = new BackupReader(file, encryptionHelper)) {
+            while (reader.next() != null) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            throw new IllegalStateException("Backup read back empty.");
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package app.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import Encryption.EncryptionHelper;
+import app.HelpArticle;
+import app.util.ArticleCodec;
+import app.util.BackupReader;
+import app.util.BackupWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class BackupTest {
+
+    static EncryptionHelper encryptionHelper;
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        encryptionHelper = new EncryptionHelper();
+    }
+
+    private static HelpArticle article(long id, String groupName) {
+        return new HelpArticle(id, "Title " + id, "Description " + id, "Body " + id, "Beginner",
+                new HashSet<>(Set.of("keyword")), new HashSet<>(Set.of("http://example.com")),
+                "author", groupName, groupName != null);
+    }
+
+    private static List<HelpArticle> readAll(Path file) throws Exception {
+        List<HelpArticle> articles = new ArrayList<>();
+        try (BackupReader reader = new BackupReader(file, encryptionHelper)) {
+            HelpArticle article;
+            while ((article = reader.next()) != null) {
+                articles.add(article);
+            }
+        }
+        return articles;
+    }
+
+    @Test
+    public void testChunkedRoundTrip() throws Exception {
+        Path file = Files.createTempFile("backup-test", ".bak");
+        // A small chunk size spreads the articles over many chunks
+        try (BackupWriter writer = new BackupWriter(file, encryptionHelper, 100, 0)) {
+            for (long id = 1; id <= 50; id++) {
+                writer.write(article(id, id % 2 == 0 ? "groupA" : null));
+            }
+        }
+
+        List<HelpArticle> articles = readAll(file);
+        assertEquals(50, articles.size());
+        for (int i = 0; i < 50; i++) {
+            HelpArticle article = articles.get(i);
+            assertEquals(i + 1, article.getId());
+            assertEquals("Title " + (i + 1), article.getTitle());
+            assertEquals("Body " + (i + 1), article.getBody());
+            assertEquals((i + 1) % 2 == 0 ? "groupA" : null, article.getGroupName());
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testParallelWriterKeepsChunkOrder() throws Exception {
+        Path file = Files.createTempFile("parallel-backup-test", ".bak");
+        try (BackupWriter writer = new BackupWriter(file, encryptionHelper, 200, 6, 4, 0, 0)) {
+            for (long id = 1; id <= 500; id++) {
+                writer.write(article(id, null));
+            }
+        }
+
+        List<HelpArticle> articles = readAll(file);
+        assertEquals(500, articles.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i + 1, articles.get(i).getId());
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testCompressedRoundTripIsSmaller() throws Exception {
+        Path plain = Files.createTempFile("plain-backup-test", ".bak");
+        Path compressed = Files.createTempFile("compressed-backup-test", ".bak");
+        for (Path file : new Path[] { plain, compressed }) {
+            try (BackupWriter writer = new BackupWriter(file, encryptionHelper, 4096, file == plain ? 0 : 9)) {
+                for (long id = 1; id <= 200; id++) {
+                    writer.write(article(id, "groupA"));
+                }
+            }
+        }
+
+        assertTrue(Files.size(compressed) < Files.size(plain) / 2);
+        List<HelpArticle> articles = readAll(compressed);
+        assertEquals(200, articles.size());
+        assertEquals("Body 200", articles.get(199).getBody());
+        Files.delete(plain);
+        Files.delete(compressed);
+    }
+
+    @Test
+    public void testGroupReaderReadsOnlyThatGroup() throws Exception {
+        Path file = Files.createTempFile("indexed-backup-test", ".bak");
+        // Articles ordered by group, as backupArticles writes them
+        try (BackupWriter writer = new BackupWriter(file, encryptionHelper, 100, 6)) {
+            for (String groupName : new String[] { null, "groupA", "groupB" }) {
+                for (long id = 1; id <= 20; id++) {
+                    writer.write(article(id, groupName));
+                }
+            }
+        }
+
+        try (BackupReader reader = new BackupReader(file, encryptionHelper, "groupB")) {
+            int count = 0;
+            HelpArticle article;
+            while ((article = reader.next()) != null) {
+                assertEquals("groupB", article.getGroupName());
+                count++;
+            }
+            assertEquals(20, count);
+        }
+        try (BackupReader reader = new BackupReader(file, encryptionHelper, "missingGroup")) {
+            assertNull(reader.next());
+        }
+        assertEquals(60, readAll(file).size());
+        Files.delete(file);
+    }
+
+    @Test
+    public void testAwkwardFieldsRoundTrip() throws Exception {
+        Path file = Files.createTempFile("binary-backup-test", ".bak");
+        String body = "First line\nSecond line § with a section sign\n\n" + "x".repeat(100_000);
+        HelpArticle awkward = new HelpArticle(1, "Title § with sign", "Line\nbreak", body, "Beginner",
+                new HashSet<>(Set.of("one,two", "")), new HashSet<>(), "author", null, false);
+        try (BackupWriter writer = new BackupWriter(file, encryptionHelper, 100, 6)) {
+            writer.write(awkward);
+            writer.write(article(2, "groupA"));
+        }
+
+        List<HelpArticle> articles = readAll(file);
+        assertEquals(2, articles.size());
+        HelpArticle restored = articles.get(0);
+        assertEquals("Title § with sign", restored.getTitle());
+        assertEquals("Line\nbreak", restored.getDescription());
+        assertEquals(body, restored.getBody());
+        assertEquals(Set.of("one,two", ""), restored.getKeywords());
+        assertTrue(restored.getReferenceLinks().isEmpty());
+        assertNull(restored.getGroupName());
+        assertEquals("groupA", articles.get(1).getGroupName());
+        Files.delete(file);
+    }
+
+    @Test
+    public void testEncryptedBodyIsStoredAsBytes() throws Exception {
+        byte[] envelope = encryptionHelper.encryptEnvelope("Secret body".getBytes(StandardCharsets.UTF_8));
+        HelpArticle encrypted = article(1, "groupA");
+        encrypted.setBody(null);
+        encrypted.setEncryptedBody(envelope);
+        byte[] record = ArticleCodec.encode(encrypted);
+        assertEquals(ArticleCodec.TYPE_ENCRYPTED_ARTICLE, ArticleCodec.peekType(ByteBuffer.wrap(record)));
+        // The envelope as it is, not a third larger as Base64
+        assertTrue(record.length < ArticleCodec.encode(article(1, "groupA")).length + envelope.length);
+
+        HelpArticle decoded = ArticleCodec.decode(ByteBuffer.wrap(record));
+        assertArrayEquals(envelope, decoded.getEncryptedBody());
+        assertNull(decoded.getBody());
+        assertEquals("groupA", decoded.getGroupName());
+
+        // Records holding the envelope as Base64 text still decode as text
+        HelpArticle text = article(2, "groupA");
+        text.setBody(EncryptionHelper.toStoredText(envelope));
+        decoded = ArticleCodec.decode(ByteBuffer.wrap(ArticleCodec.encode(text)));
+        assertNull(decoded.getEncryptedBody());
+        assertEquals(EncryptionHelper.toStoredText(envelope), decoded.getBody());
+    }
+
+    @Test
+    public void testOversizedArticleIsRefused() throws Exception {
+        Path file = Files.createTempFile("oversized-backup-test", ".bak");
+        HelpArticle huge = new HelpArticle(1, "Huge", "Description", "x".repeat(64 * 1024 * 1024), "Beginner",
+                new HashSet<>(), new HashSet<>(), "author", null, false);
+        BackupWriter writer = new BackupWriter(file, encryptionHelper);
+        writer.write(article(2, null));
+        // Refused when written, not found unreadable when restored
+        assertThrows(IOException.class, () -> writer.write(huge));
+        writer.abort();
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testCorruptRecordIsRejected() throws Exception {
+        byte[] record = ArticleCodec.encode(article(1, null));
+        // Claim the title runs past the end of the record
+        ByteBuffer.wrap(record).putInt(4 + 1 + 8, record.length);
+        assertThrows(IOException.class, () -> ArticleCodec.decode(ByteBuffer.wrap(record)));
+        assertThrows(IOException.class, () -> ArticleCodec.decode(ByteBuffer.wrap(record, 0, 3)));
+    }
+
+    @Test
+    public void testTextRecordBackupIsReadable() throws Exception {
+        // A version 4 file: header, one uncompressed chunk of text records, end marker
+        byte[] iv = new byte[16];
+        String records = "D§3§null\n7§Text§Description§Body§Beginner§keyword§http://example.com§author§null\n";
+        byte[] encrypted = encryptionHelper.encrypt(records.getBytes(StandardCharsets.UTF_8), iv);
+        ByteBuffer contents = ByteBuffer.allocate(8 + 4 + 1 + 16 + 4 + 16 + encrypted.length + 4);
+        contents.put("CSE360BK".getBytes(StandardCharsets.US_ASCII)).putInt(4).put((byte) 0).putLong(1).putLong(2)
+                .putInt(encrypted.length).put(iv).put(encrypted).putInt(0);
+        Path file = Files.createTempFile("text-backup-test", ".bak");
+        Files.write(file, contents.array());
+
+        try (BackupReader reader = new BackupReader(file, encryptionHelper)) {
+            assertEquals(4, reader.getFormatVersion());
+            assertTrue(reader.isIncremental());
+            assertEquals(3, reader.nextDeletion().getArticleId());
+            assertNull(reader.nextDeletion());
+            HelpArticle article = reader.next();
+            assertEquals(7, article.getId());
+            assertEquals("Text", article.getTitle());
+            assertNull(reader.next());
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testLegacyBackupIsReadable() throws Exception {
+        byte[] iv = new byte[16];
+        String records = "7§Legacy§Description§Body§Beginner§keyword§http://example.com§author§null\n";
+        byte[] encrypted = encryptionHelper.encrypt(records.getBytes(StandardCharsets.UTF_8), iv);
+        Path file = Files.createTempFile("legacy-backup-test", ".bak");
+        Files.writeString(file, Base64.getEncoder().encodeToString(iv) + "\n"
+                + Base64.getEncoder().encodeToString(encrypted));
+
+        List<HelpArticle> articles = readAll(file);
+        assertEquals(1, articles.size());
+        assertEquals(7, articles.get(0).getId());
+        assertEquals("Legacy", articles.get(0).getTitle());
+        Files.delete(file);
+    }
+
+    @Test
+    public void testTruncatedBackupIsRejected() throws Exception {
+        Path file = Files.createTempFile("truncated-backup-test", ".bak");
+        try (BackupWriter writer = new BackupWriter(file, encryptionHelper, 100, 6)) {
+            for (long id = 1; id <= 10; id++) {
+                writer.write(article(id, null));
+            }
+        }
+        // Cut the file off part-way through the chunks
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() / 2);
+        }
+
+        assertThrows(IOException.class, () -> readAll(file));
+        Files.delete(file);
+    }
+}
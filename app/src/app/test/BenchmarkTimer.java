@@ -0,0 +1,39 @@
+package app.test;
+
+/**
+ * Minimal timing harness shared by the benchmark programs in this package.
+ * Each task is run a few times to warm up the JIT, then the mean time of the measured runs is reported.
+ * Benchmarks are plain main programs, not JUnit tests, so they do not slow down the test suite.
+ */
+public class BenchmarkTimer {
+
+    /**
+     * A unit of work to time.
+     */
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * Times a task and prints the mean milliseconds per run.
+     *
+     * @param label      The name printed next to the result.
+     * @param warmups    The number of unmeasured runs.
+     * @param iterations The number of measured runs.
+     * @param task       The work to time.
+     * @return The mean milliseconds per measured run.
+     * @throws Exception if the task fails.
+     */
+    public static double measureMillis(String label, int warmups, int iterations, Task task) throws Exception {
+        for (int i = 0; i < warmups; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        double millis = (System.nanoTime() - start) / 1_000_000.0 / iterations;
+        System.out.printf("%-48s %12.3f ms/op%n", label, millis);
+        return millis;
+    }
+}
@@ -0,0 +1,50 @@
+package app.test;
+
+import Encryption.CipherMode;
+import Encryption.EncryptionHelper;
+
+import java.security.SecureRandom;
+
+/**
+ * Measures article body encryption and decryption throughput for each cipher mode, for bodies from
+ * 1 KB to 1 MB. CBC runs on BouncyCastle; GCM runs on the JDK provider and also authenticates the body.
+ *
+ * Run with BouncyCastle and the compiled classes on the classpath:
+ *     java app.test.CipherModeBenchmark
+ */
+public class CipherModeBenchmark {
+
+    // Roughly the same number of bytes is processed per run at every size
+    private static final int BYTES_PER_RUN = 8 * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        SecureRandom random = new SecureRandom();
+        for (int size : new int[] { 1024, 16 * 1024, 128 * 1024, 1024 * 1024 }) {
+            byte[] body = new byte[size];
+            random.nextBytes(body);
+            int count = Math.max(1, BYTES_PER_RUN / size);
+            for (CipherMode mode : CipherMode.values()) {
+                EncryptionHelper helper = new EncryptionHelper(mode);
+                byte[] envelope = helper.encryptEnvelope(body);
+                String label = mode + " " + (size / 1024) + " KB";
+
+                double encryptMillis = BenchmarkTimer.measureMillis(label + " encrypt", 2, 5, () -> {
+                    for (int i = 0; i < count; i++) {
+                        helper.encryptEnvelope(body);
+                    }
+                });
+                report(encryptMillis, count, size);
+                double decryptMillis = BenchmarkTimer.measureMillis(label + " decrypt", 2, 5, () -> {
+                    for (int i = 0; i < count; i++) {
+                        helper.decryptEnvelope(envelope);
+                    }
+                });
+                report(decryptMillis, count, size);
+            }
+        }
+    }
+
+    private static void report(double millis, int count, int size) {
+        System.out.printf("    %.1f MB/s%n", (double) count * size / (1024 * 1024) / (millis / 1000.0));
+    }
+}
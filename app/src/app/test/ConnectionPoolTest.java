@@ -0,0 +1,185 @@
+package app.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import app.util.ConnectionPool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:poolTest;DB_CLOSE_DELAY=-1";
+
+    private ConnectionPool pool;
+
+    @AfterEach
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", 2, 1000, 60_000, 60_000, 0);
+        try (Connection connection = pool.getConnection()) {
+            assertTrue(connection.isValid(1));
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertTrue(connection.isValid(1));
+        }
+
+        ConnectionPool.PoolStats stats = pool.getStats();
+        assertEquals(2, stats.getBorrows());
+        assertEquals(1, stats.getCreated());
+        assertEquals(1, stats.getIdle());
+        assertEquals(0, stats.getActive());
+    }
+
+    @Test
+    public void testClosedConnectionCannotBeUsed() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", 1, 1000, 60_000, 60_000, 0);
+        Connection connection = pool.getConnection();
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, connection::createStatement);
+    }
+
+    @Test
+    public void testPoolIsBounded() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", 1, 50, 60_000, 60_000, 0);
+        try (Connection connection = pool.getConnection()) {
+            assertFalse(connection.isClosed());
+            assertThrows(SQLException.class, pool::getConnection);
+        }
+        assertEquals(1, pool.getStats().getTimeouts());
+
+        // The connection is available again once returned
+        try (Connection connection = pool.getConnection()) {
+            assertNotNull(connection);
+        }
+    }
+
+    @Test
+    public void testExpiredConnectionIsReplaced() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", 1, 1000, 60_000, 1, 0);
+        try (Connection connection = pool.getConnection()) {
+            assertFalse(connection.isClosed());
+            Thread.sleep(5);
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertNotNull(connection);
+        }
+        assertEquals(2, pool.getStats().getCreated());
+    }
+
+    @Test
+    public void testUnfinishedTransactionIsRolledBack() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", 1, 1000, 60_000, 60_000, 0);
+        try (Connection connection = pool.getConnection()) {
+            connection.createStatement().execute("CREATE TABLE IF NOT EXISTS pool_rollback (id INT)");
+            connection.setAutoCommit(false);
+            connection.createStatement().execute("INSERT INTO pool_rollback VALUES (1)");
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertTrue(connection.getAutoCommit());
+            ResultSet rs = connection.createStatement().executeQuery("SELECT COUNT(*) FROM pool_rollback");
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testPreparedStatementIsReused() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", 1, 1000, 60_000, 60_000, 0, 4);
+        for (int i = 0; i < 3; i++) {
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement("SELECT ? + 1")) {
+                pstmt.setInt(1, i);
+                ResultSet rs = pstmt.executeQuery();
+                rs.next();
+                assertEquals(i + 1, rs.getInt(1));
+            }
+        }
+
+        ConnectionPool.PoolStats stats = pool.getStats();
+        assertEquals(1, stats.getStatementMisses());
+        assertEquals(2, stats.getStatementHits());
+    }
+
+    @Test
+    public void testNestedUseOfSameStatementIsNotShared() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", 1, 1000, 60_000, 60_000, 0, 4);
+        try (Connection connection = pool.getConnection();
+             PreparedStatement outer = connection.prepareStatement("SELECT ?");
+             PreparedStatement inner = connection.prepareStatement("SELECT ?")) {
+            outer.setString(1, "outer");
+            inner.setString(1, "inner");
+            ResultSet rs = outer.executeQuery();
+            rs.next();
+            assertEquals("outer", rs.getString(1));
+        }
+        assertEquals(2, pool.getStats().getStatementMisses());
+    }
+
+    @Test
+    public void testClosedStatementCannotBeUsed() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", 1, 1000, 60_000, 60_000, 0, 4);
+        try (Connection connection = pool.getConnection()) {
+            PreparedStatement pstmt = connection.prepareStatement("SELECT 1");
+            pstmt.close();
+            assertTrue(pstmt.isClosed());
+            assertThrows(SQLException.class, pstmt::executeQuery);
+        }
+    }
+
+    @Test
+    public void testStatementCacheIsBounded() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", 1, 1000, 60_000, 60_000, 0, 2);
+        try (Connection connection = pool.getConnection()) {
+            for (String sql : new String[] { "SELECT 1", "SELECT 2", "SELECT 3", "SELECT 1" }) {
+                connection.prepareStatement(sql).close();
+            }
+        }
+        // "SELECT 1" was the least recently used when "SELECT 3" arrived, so it had to be prepared again
+        assertEquals(4, pool.getStats().getStatementMisses());
+        assertEquals(0, pool.getStats().getStatementHits());
+    }
+
+    @Test
+    public void testLeakedStatementsAreClosedWithTheLease() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "", 1, 1000, 60_000, 60_000, 0, 4);
+        PreparedStatement cached;
+        PreparedStatement nested;
+        Statement plain;
+        try (Connection connection = pool.getConnection()) {
+            cached = connection.prepareStatement("SELECT ?");
+            nested = connection.prepareStatement("SELECT ?");
+            plain = connection.createStatement();
+        }
+        // None of them can reach the next borrower's connection
+        assertTrue(cached.isClosed());
+        assertTrue(nested.isClosed());
+        assertTrue(plain.isClosed());
+        assertThrows(SQLException.class, cached::executeQuery);
+        assertThrows(SQLException.class, nested::executeQuery);
+        assertThrows(SQLException.class, () -> plain.executeQuery("SELECT 1"));
+
+        // The leaked statement was dropped from the cache rather than handed out again
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("SELECT ?")) {
+            pstmt.setInt(1, 7);
+            ResultSet rs = pstmt.executeQuery();
+            rs.next();
+            assertEquals(7, rs.getInt(1));
+        }
+        assertEquals(3, pool.getStats().getStatementMisses());
+    }
+}
@@ -0,0 +1,92 @@
+package app.test;
+
+import Encryption.EncryptionHelper;
+
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+/**
+ * Measures article body encryption throughput in operations per second. The baseline repeats what every
+ * EncryptionHelper used to do when built, registering BouncyCastle and creating a Cipher, once per
+ * operation, as opening an article did. It is compared with a shared helper backed by the per-thread
+ * Ciphers of the CryptoEngine, on one thread and on several threads at once.
+ *
+ * Run with BouncyCastle and the compiled classes on the classpath:
+ *     java app.test.CryptoEngineBenchmark [bodyBytes]
+ */
+public class CryptoEngineBenchmark {
+
+    private static final int OPS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        int bodySize = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+        byte[] body = new byte[bodySize];
+        byte[] iv = new byte[16];
+        new SecureRandom().nextBytes(body);
+        new SecureRandom().nextBytes(iv);
+        byte[] keyBytes = new byte[24];
+        for (int i = 0; i < keyBytes.length; i++) {
+            keyBytes[i] = (byte) i;
+        }
+        SecretKeySpec key = new SecretKeySpec(keyBytes, "AES");
+        System.out.println(bodySize + " byte bodies, " + Runtime.getRuntime().availableProcessors() + " processors");
+
+        report("construct per call", BenchmarkTimer.measureMillis("construct per call", 2, 5, () -> {
+            for (int i = 0; i < OPS; i++) {
+                Security.addProvider(new BouncyCastleProvider());
+                Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding", "BC");
+                cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+                byte[] encrypted = cipher.doFinal(body);
+                cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+                cipher.doFinal(encrypted);
+            }
+        }));
+
+        EncryptionHelper helper = new EncryptionHelper();
+        report("shared engine, 1 thread", BenchmarkTimer.measureMillis("shared engine, 1 thread", 2, 5, () -> {
+            for (int i = 0; i < OPS; i++) {
+                helper.decrypt(helper.encrypt(body, iv), iv);
+            }
+        }));
+
+        for (int threads : new int[] { 2, 4, 8 }) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                String label = "shared engine, " + threads + " threads";
+                double millis = BenchmarkTimer.measureMillis(label, 2, 5, () -> {
+                    List<Future<?>> results = new ArrayList<>();
+                    for (int t = 0; t < threads; t++) {
+                        results.add(executor.submit(() -> {
+                            for (int i = 0; i < OPS / threads; i++) {
+                                helper.decrypt(helper.encrypt(body, iv), iv);
+                            }
+                            return null;
+                        }));
+                    }
+                    for (Future<?> result : results) {
+                        result.get();
+                    }
+                });
+                report(label, millis);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static void report(String label, double millis) {
+        // One op is an encrypt plus a decrypt
+        System.out.printf("    %-44s %12.0f ops/s%n", label, OPS / (millis / 1000.0));
+    }
+}
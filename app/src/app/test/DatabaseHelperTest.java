@@ -3,15 +3,41 @@ package app.test;
 import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.*;
+import Encryption.CipherMode;
+import Encryption.EncryptionHelper;
+import Encryption.KeyRing;
 import app.util.DatabaseHelper;
 import app.User;
 import app.HelpArticle;
+import app.util.ArticleFilter;
+import app.util.ArticleReencryptionJob;
+import app.util.BackupReader;
+import app.util.ConnectionPool;
 import app.util.Group;
 import app.util.Invitation;
+import app.util.ProgressListener;
+import app.util.RestoreStats;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
 
 public class DatabaseHelperTest {
 
@@ -68,6 +94,366 @@ public class DatabaseHelperTest {
         assertEquals("Test Article", retrievedArticle.getTitle());
     }
 
+    @Test
+    public void testArticleSummariesOmitBody() throws Exception {
+        HelpArticle article = new HelpArticle("Summary Article", "Description", "Summary Body", "Beginner",
+                new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                "author1", null, false);
+        dbHelper.registerArticle(article);
+        User reader = new User("author1", "password", "Student");
+
+        HelpArticle summary = dbHelper.getArticleSummaries(reader).stream()
+                .filter(a -> a.getId() == article.getId()).findFirst().orElse(null);
+        assertNotNull(summary);
+        assertEquals("Summary Article", summary.getTitle());
+        assertNull(summary.getBody());
+
+        assertEquals("Summary Body", dbHelper.getArticle(article.getId(), reader).getBody());
+        dbHelper.deleteArticle(article.getId());
+    }
+
+    @Test
+    public void testArticlesPage() throws Exception {
+        User reader = new User("pageReader", "password", "Student");
+        ArticleFilter filter = new ArticleFilter("All", "All", "pageAuthor");
+        for (HelpArticle existing : dbHelper.getArticlesPage(reader, filter, 0, 100)) {
+            dbHelper.deleteArticle(existing.getId());
+        }
+        for (int i = 0; i < 5; i++) {
+            dbHelper.registerArticle(new HelpArticle("Paged " + i, "Description", "Body", i < 3 ? "Beginner" : "Expert",
+                    new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                    "pageAuthor", null, false));
+        }
+
+        List<HelpArticle> first = dbHelper.getArticlesPage(reader, filter, 0, 2);
+        List<HelpArticle> second = dbHelper.getArticlesPage(reader, filter, first.get(1).getId(), 2);
+        List<HelpArticle> third = dbHelper.getArticlesPage(reader, filter, second.get(1).getId(), 2);
+        assertEquals(2, first.size());
+        assertEquals(2, second.size());
+        assertEquals(1, third.size());
+        assertTrue(first.get(1).getId() < second.get(0).getId());
+        assertEquals("Paged 4", third.get(0).getTitle());
+
+        assertEquals(2, dbHelper.getArticlesPage(reader, new ArticleFilter("Expert", null, "pageauthor"), 0, 10).size());
+        // Any position can be fetched directly, and positions past the end find nothing
+        assertEquals("Paged 3", dbHelper.getArticleAt(reader, filter, 4).getTitle());
+        assertNull(dbHelper.getArticleAt(reader, filter, 6));
+        assertNull(dbHelper.getArticleAt(reader, filter, 0));
+        assertEquals(3L, dbHelper.countArticlesByLevel(reader, filter).get("Beginner"));
+        assertEquals(2L, dbHelper.countArticlesByLevel(reader, filter).get("Expert"));
+    }
+
+    @Test
+    public void testStreamArticles() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            dbHelper.registerArticle(new HelpArticle("Streamed " + i, "Description", "Body", "Beginner",
+                    new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                    "streamAuthor", null, false));
+        }
+
+        long previousId = 0;
+        int streamed = 0;
+        try (Stream<HelpArticle> articles = dbHelper.streamArticles()) {
+            for (HelpArticle article : (Iterable<HelpArticle>) articles::iterator) {
+                assertTrue(article.getId() > previousId);
+                previousId = article.getId();
+                if ("streamAuthor".equals(article.getAuthorUsername())) {
+                    streamed++;
+                    dbHelper.deleteArticle(article.getId());
+                }
+            }
+        }
+        assertEquals(3, streamed);
+        // The cursor's connection has been handed back
+        assertEquals(0, ConnectionPool.getInstance().getStats().getActive());
+    }
+
+    @Test
+    public void testBatchedMergeRestore() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            dbHelper.registerArticle(new HelpArticle("Restored " + i, "Description", "Body", "Beginner",
+                    new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                    "restoreAuthor", null, false));
+        }
+        File backup = File.createTempFile("restore-test", ".bak");
+        backup.deleteOnExit();
+        dbHelper.backupArticles(backup.getAbsolutePath());
+        deleteArticlesBy("restoreAuthor");
+
+        // Batch size 2 leaves a partial batch to be flushed at the end
+        RestoreStats stats = dbHelper.restoreArticles(backup.getAbsolutePath(), true, null, 2);
+        assertEquals(5, stats.getRestored());
+        assertEquals(5, countArticlesBy("restoreAuthor"));
+
+        // Everything in the backup now exists by title, so a second merge inserts nothing
+        assertEquals(0, dbHelper.restoreArticles(backup.getAbsolutePath(), true, null, 2).getRestored());
+        deleteArticlesBy("restoreAuthor");
+    }
+
+    @Test
+    public void testFailedRestoreIsRolledBack() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            dbHelper.registerArticle(new HelpArticle("Rollback " + i, "Description", "Body", "Beginner",
+                    new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                    "rollbackAuthor", null, false));
+        }
+        File backup = File.createTempFile("rollback-test", ".bak");
+        backup.deleteOnExit();
+        dbHelper.backupArticles(backup.getAbsolutePath());
+
+        // Remove two articles and rename the third, so merging it back collides on its id
+        HelpArticle renamed = null;
+        try (Stream<HelpArticle> articles = dbHelper.streamArticles()) {
+            for (HelpArticle article : (Iterable<HelpArticle>) articles::iterator) {
+                if (!"rollbackAuthor".equals(article.getAuthorUsername())) {
+                    continue;
+                }
+                if (renamed == null) {
+                    renamed = article;
+                } else {
+                    dbHelper.deleteArticle(article.getId());
+                }
+            }
+        }
+        renamed.setTitle("Renamed");
+        dbHelper.updateArticle(renamed);
+
+        assertThrows(Exception.class, () -> dbHelper.restoreArticles(backup.getAbsolutePath(), true, null, 1));
+        assertEquals(1, countArticlesBy("rollbackAuthor"));
+        deleteArticlesBy("rollbackAuthor");
+    }
+
+    @Test
+    public void testIncrementalBackupChain() throws Exception {
+        for (String title : new String[] { "Chain A", "Chain B", "Chain C" }) {
+            dbHelper.registerArticle(new HelpArticle(title, "Description", "Body", "Beginner",
+                    new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                    "chainAuthor", null, false));
+        }
+        File full = File.createTempFile("chain-full", ".bak");
+        File incremental = File.createTempFile("chain-incremental", ".bak");
+        full.deleteOnExit();
+        incremental.deleteOnExit();
+        long fullVersion = dbHelper.backupArticles(full.getAbsolutePath());
+
+        // Rename A, delete B, add D
+        try (Stream<HelpArticle> articles = dbHelper.streamArticles()) {
+            for (HelpArticle article : (Iterable<HelpArticle>) articles::iterator) {
+                if (article.getTitle().equals("Chain A")) {
+                    article.setTitle("Chain A2");
+                    dbHelper.updateArticle(article);
+                } else if (article.getTitle().equals("Chain B")) {
+                    dbHelper.deleteArticle(article.getId());
+                }
+            }
+        }
+        dbHelper.registerArticle(new HelpArticle("Chain D", "Description", "Body", "Beginner",
+                new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                "chainAuthor", null, false));
+        long incrementalVersion = dbHelper.backupArticles(incremental.getAbsolutePath(), fullVersion);
+        assertTrue(incrementalVersion > fullVersion);
+
+        // The incremental holds only the two changed articles and the deletion
+        try (BackupReader reader = new BackupReader(incremental.toPath(), new EncryptionHelper())) {
+            assertTrue(reader.isIncremental());
+            assertEquals(fullVersion, reader.getBaseVersion());
+            assertNotNull(reader.nextDeletion());
+            assertNull(reader.nextDeletion());
+            Set<String> titles = new HashSet<>();
+            HelpArticle article;
+            while ((article = reader.next()) != null) {
+                titles.add(article.getTitle());
+            }
+            assertEquals(Set.of("Chain A2", "Chain D"), titles);
+        }
+
+        deleteArticlesBy("chainAuthor");
+        dbHelper.restoreArticleChain(List.of(full.getAbsolutePath(), incremental.getAbsolutePath()));
+        Set<String> restored = new HashSet<>();
+        try (Stream<HelpArticle> articles = dbHelper.streamArticles()) {
+            articles.filter(article -> "chainAuthor".equals(article.getAuthorUsername()))
+                    .forEach(article -> restored.add(article.getTitle()));
+        }
+        assertEquals(Set.of("Chain A2", "Chain C", "Chain D"), restored);
+
+        // A chain cannot start with an incremental backup
+        assertThrows(IllegalArgumentException.class,
+                () -> dbHelper.restoreArticleChain(List.of(incremental.getAbsolutePath())));
+        deleteArticlesBy("chainAuthor");
+    }
+
+    @Test
+    public void testIncrementalBackupWaitsForOpenWrites() throws Exception {
+        dbHelper.registerArticle(new HelpArticle("Race A", "Description", "Body", "Beginner",
+                new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                "raceAuthor", null, false));
+        File full = File.createTempFile("race-full", ".bak");
+        File incremental = File.createTempFile("race-incremental", ".bak");
+        full.deleteOnExit();
+        incremental.deleteOnExit();
+        dbHelper.backupArticles(full.getAbsolutePath());
+        deleteArticlesBy("raceAuthor");
+        long sinceVersion = dbHelper.getArticleChangeVersion();
+
+        // Restore Race A and hold the transaction open after its version is taken
+        CountDownLatch restoring = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProgressListener holdOpen = (rows, totalRows, bytes, totalBytes) -> {
+            restoring.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<RestoreStats> restore = executor.submit(
+                    () -> dbHelper.restoreArticles(full.getAbsolutePath(), true, null, holdOpen));
+            assertTrue(restoring.await(10, TimeUnit.SECONDS));
+
+            // Race B commits a higher version while Race A's lower one is still open
+            dbHelper.registerArticle(new HelpArticle("Race B", "Description", "Body", "Beginner",
+                    new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                    "raceAuthor", null, false));
+            Future<Long> backup = executor.submit(
+                    () -> dbHelper.backupArticles(incremental.getAbsolutePath(), sinceVersion));
+            assertThrows(TimeoutException.class, () -> backup.get(300, TimeUnit.MILLISECONDS));
+
+            // The waiting backup does not hold up other writes until the restore ends
+            Future<?> write = executor.submit(() -> {
+                dbHelper.registerArticle(new HelpArticle("Race C", "Description", "Body", "Beginner",
+                        new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                        "raceAuthor", null, false));
+                return null;
+            });
+            write.get(10, TimeUnit.SECONDS);
+            assertFalse(backup.isDone());
+
+            release.countDown();
+            assertEquals(1, restore.get(10, TimeUnit.SECONDS).getRestored());
+            backup.get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+
+        // Both articles are in the incremental, so the next one can start from its mark without losing Race A
+        try (BackupReader reader = new BackupReader(incremental.toPath(), new EncryptionHelper())) {
+            Set<String> titles = new HashSet<>();
+            HelpArticle article;
+            while ((article = reader.next()) != null) {
+                titles.add(article.getTitle());
+            }
+            assertTrue(titles.containsAll(Set.of("Race A", "Race B")));
+        }
+        deleteArticlesBy("raceAuthor");
+    }
+
+    @Test
+    public void testDatabaseSnapshotRoundTrip() throws Exception {
+        File snapshot = File.createTempFile("snapshot-test", ".bak");
+        snapshot.deleteOnExit();
+        dbHelper.registerUser(new User("snapshotUser", "password", "Student"));
+        dbHelper.registerArticle(new HelpArticle("Snapshot A", "Description", "Body\nwith § and a second line", "Beginner",
+                new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                "snapshotAuthor", null, false));
+        dbHelper.storeHelpMessage("snapshotUser", "Generic", "Snapshot message", "snapshot");
+        long rows = dbHelper.backupDatabase(snapshot.getAbsolutePath());
+        assertTrue(rows >= 3);
+
+        // Changes after the snapshot are undone by the restore
+        dbHelper.deleteUser("snapshotUser");
+        deleteArticlesBy("snapshotAuthor");
+        dbHelper.registerUser(new User("afterSnapshotUser", "password", "Student"));
+
+        assertEquals(rows, dbHelper.restoreDatabase(snapshot.getAbsolutePath()));
+        assertTrue(dbHelper.doesUserExist("snapshotUser"));
+        assertFalse(dbHelper.doesUserExist("afterSnapshotUser"));
+        assertEquals(1, countArticlesBy("snapshotAuthor"));
+        assertTrue(dbHelper.getAllHelpMessages().stream().anyMatch(message -> message.contains("Snapshot message")));
+
+        // New rows get IDs past the restored ones
+        dbHelper.registerArticle(new HelpArticle("Snapshot B", "Description", "Body", "Beginner",
+                new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                "snapshotAuthor", null, false));
+        assertEquals(2, countArticlesBy("snapshotAuthor"));
+
+        deleteArticlesBy("snapshotAuthor");
+        dbHelper.deleteUser("snapshotUser");
+    }
+
+    @Test
+    public void testArticleBackupIsNotASnapshot() throws Exception {
+        File backup = File.createTempFile("not-a-snapshot-test", ".bak");
+        backup.deleteOnExit();
+        dbHelper.backupArticles(backup.getAbsolutePath());
+        assertThrows(java.io.IOException.class, () -> dbHelper.restoreDatabase(backup.getAbsolutePath()));
+    }
+
+    @Test
+    public void testBackupProgressAndCancellation() throws Exception {
+        File backup = File.createTempFile("progress-test", ".bak");
+        backup.deleteOnExit();
+        for (int i = 0; i < 600; i++) {
+            dbHelper.registerArticle(new HelpArticle("Progress " + i, "Description", "Body", "Beginner",
+                    new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                    "progressAuthor", null, false));
+        }
+        long before = countArticlesBy("progressAuthor");
+
+        List<long[]> reports = new ArrayList<>();
+        dbHelper.backupArticles(backup.getAbsolutePath(),
+                (rows, totalRows, bytes, totalBytes) -> reports.add(new long[] { rows, totalRows, bytes }));
+        assertTrue(reports.size() >= 2);
+        long[] last = reports.get(reports.size() - 1);
+        assertEquals(last[1], last[0]);
+        assertEquals(backup.length(), last[2]);
+
+        // Cancelling stops at the first check and removes the partial backup
+        File cancelled = new File(backup.getAbsolutePath() + ".cancelled");
+        ProgressListener cancelImmediately = new ProgressListener() {
+            @Override
+            public void onProgress(long rows, long totalRows, long bytes, long totalBytes) {
+            }
+
+            @Override
+            public boolean isCancelRequested() {
+                return true;
+            }
+        };
+        assertThrows(java.util.concurrent.CancellationException.class,
+                () -> dbHelper.backupArticles(cancelled.getAbsolutePath(), cancelImmediately));
+        assertFalse(cancelled.exists());
+
+        // A cancelled overwrite restore leaves the articles as they were
+        deleteArticlesBy("progressAuthor");
+        dbHelper.registerArticle(new HelpArticle("Progress extra", "Description", "Body", "Beginner",
+                new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                "progressAuthor", null, false));
+        assertThrows(java.util.concurrent.CancellationException.class,
+                () -> dbHelper.restoreArticles(backup.getAbsolutePath(), false, null, cancelImmediately));
+        assertEquals(1, countArticlesBy("progressAuthor"));
+        assertTrue(before >= 600);
+        deleteArticlesBy("progressAuthor");
+    }
+
+    private static long countArticlesBy(String author) throws Exception {
+        try (Stream<HelpArticle> articles = dbHelper.streamArticles()) {
+            return articles.filter(article -> author.equals(article.getAuthorUsername())).count();
+        }
+    }
+
+    private static void deleteArticlesBy(String author) throws Exception {
+        try (Stream<HelpArticle> articles = dbHelper.streamArticles()) {
+            for (HelpArticle article : (Iterable<HelpArticle>) articles::iterator) {
+                if (author.equals(article.getAuthorUsername())) {
+                    dbHelper.deleteArticle(article.getId());
+                }
+            }
+        }
+    }
+
     @Test
     public void testCreateAndRetrieveGroup() throws Exception {
         Group group = new Group("TestGroup");
@@ -80,6 +466,315 @@ public class DatabaseHelperTest {
         assertTrue(retrievedGroup.getStudents().contains("student1"));
     }
 
+    @Test
+    public void testLargeGroupMembership() throws Exception {
+        dbHelper.deleteGroup("LargeGroup");
+        Group group = new Group("LargeGroup");
+        group.addAdmin("largeAdmin");
+        for (int i = 0; i < 5000; i++) {
+            group.addStudent("largeStudent" + i);
+        }
+        dbHelper.createGroup(group);
+
+        Group retrievedGroup = dbHelper.getGroup("LargeGroup");
+        assertNotNull(retrievedGroup);
+        assertEquals(5000, retrievedGroup.getStudents().size());
+        assertTrue(retrievedGroup.getAdmins().contains("largeAdmin"));
+
+        List<Group> userGroups = dbHelper.getGroupsForUser(new User("largeStudent42", "password", "Student"));
+        assertEquals(1, userGroups.size());
+        assertEquals("LargeGroup", userGroups.get(0).getName());
+
+        retrievedGroup.removeStudent("largeStudent42");
+        retrievedGroup.addInstructor("largeInstructor");
+        dbHelper.updateGroup(retrievedGroup);
+        assertTrue(dbHelper.getGroupsForUser(new User("largeStudent42", "password", "Student")).isEmpty());
+        assertTrue(dbHelper.getGroup("LargeGroup").getInstructors().contains("largeInstructor"));
+
+        dbHelper.deleteGroup("LargeGroup");
+        assertNull(dbHelper.getGroup("LargeGroup"));
+    }
+
+    @Test
+    public void testGroupArticleMapping() throws Exception {
+        dbHelper.deleteGroup("ArticleGroupA");
+        dbHelper.deleteGroup("ArticleGroupB");
+        dbHelper.createGroup(new Group("ArticleGroupA"));
+        dbHelper.createGroup(new Group("ArticleGroupB"));
+
+        HelpArticle article = new HelpArticle("Group Article", "Description", "Body", "Beginner",
+                new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                "author1", "ArticleGroupA", true);
+        dbHelper.registerArticle(article);
+        assertTrue(dbHelper.getGroup("ArticleGroupA").getArticleIds().contains(article.getId()));
+
+        // Moving the article moves its mapping
+        article.setGroupName("ArticleGroupB");
+        dbHelper.updateArticle(article);
+        assertFalse(dbHelper.getGroup("ArticleGroupA").getArticleIds().contains(article.getId()));
+        assertTrue(dbHelper.getGroup("ArticleGroupB").getArticleIds().contains(article.getId()));
+
+        // Deleting the article removes its mapping
+        dbHelper.deleteArticle(article.getId());
+        assertFalse(dbHelper.getGroup("ArticleGroupB").getArticleIds().contains(article.getId()));
+
+        dbHelper.deleteGroup("ArticleGroupA");
+        dbHelper.deleteGroup("ArticleGroupB");
+    }
+
+    @Test
+    public void testEncryptedGroupArticleBody() throws Exception {
+        dbHelper.deleteGroup("SecretBodyGroup");
+        Group group = new Group("SecretBodyGroup");
+        group.addStudent("secretreader");
+        dbHelper.createGroup(group);
+        User reader = new User("secretreader", "password", "Student");
+
+        HelpArticle article = new HelpArticle("Secret Body Article", "Description", "Body: with \u00e9 and colons", "Beginner",
+                new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                "author1", "SecretBodyGroup", true);
+        dbHelper.registerArticle(article);
+        assertEquals("Body: with \u00e9 and colons", dbHelper.getArticle(article.getId(), reader).getBody());
+
+        // Backups carry the encrypted body as text and restore it to the binary column unchanged
+        File backupFile = File.createTempFile("encrypted-body", ".bak");
+        try {
+            dbHelper.backupArticles(backupFile.getPath());
+            dbHelper.deleteArticle(article.getId());
+            dbHelper.restoreArticles(backupFile.getPath(), true, "SecretBodyGroup");
+            HelpArticle restored = dbHelper.getAllArticles(reader).stream()
+                    .filter(a -> a.getTitle().equals("Secret Body Article")).findFirst().orElseThrow();
+            assertEquals("Body: with \u00e9 and colons", restored.getBody());
+            dbHelper.deleteArticle(restored.getId());
+        } finally {
+            backupFile.delete();
+            dbHelper.deleteGroup("SecretBodyGroup");
+        }
+    }
+
+    @Test
+    public void testRotateKeyAndResumeReencryption() throws Exception {
+        // A ring of its own, so the application's key ring is left alone
+        KeyRing keyRing = new KeyRing();
+        EncryptionHelper encryptionHelper = new EncryptionHelper(keyRing, CipherMode.GCM);
+        DatabaseHelper keyedHelper = new DatabaseHelper(encryptionHelper);
+        keyedHelper.deleteGroup("RotationGroup");
+        Group group = new Group("RotationGroup");
+        group.addStudent("rotationreader");
+        keyedHelper.createGroup(group);
+        User reader = new User("rotationreader", "password", "Student");
+        List<Long> ids = new ArrayList<>();
+        try {
+            for (int i = 0; i < 5; i++) {
+                HelpArticle article = new HelpArticle("Rotation Article " + i, "Description", "Rotated body " + i, "Beginner",
+                        new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                        "author1", "RotationGroup", true);
+                keyedHelper.registerArticle(article);
+                ids.add(article.getId());
+            }
+            int newKey = keyRing.rotate();
+
+            // Cancel once the first batch has been checkpointed; the batches already started still finish
+            ProgressListener cancelAfterFirstBatch = new ProgressListener() {
+                private boolean reported = false;
+
+                @Override
+                public void onProgress(long rows, long totalRows, long bytes, long totalBytes) {
+                    reported = true;
+                }
+
+                @Override
+                public boolean isCancelRequested() {
+                    return reported;
+                }
+            };
+            ArticleReencryptionJob job = new ArticleReencryptionJob(encryptionHelper, "RotationGroup", 1, 2, 0);
+            assertThrows(CancellationException.class, () -> job.run(cancelAfterFirstBatch));
+            assertTrue(keyVersions(ids).contains(KeyRing.LEGACY_KEY_VERSION));
+            assertTrue(keyVersions(ids).contains(newKey));
+
+            // Bodies under either key read back while the job is part way through
+            for (int i = 0; i < 5; i++) {
+                assertEquals("Rotated body " + i, keyedHelper.getArticle(ids.get(i), reader).getBody());
+            }
+
+            // The second run resumes from the checkpoint and finishes the rest
+            assertEquals(5, job.run(null));
+            assertEquals(Set.of(newKey), keyVersions(ids));
+            for (int i = 0; i < 5; i++) {
+                assertEquals("Rotated body " + i, keyedHelper.getArticle(ids.get(i), reader).getBody());
+            }
+            // Nothing is left to do once every body is under the current key
+            assertEquals(0, job.run(null));
+
+            // A ring without the new key reports the bodies under it rather than passing over them
+            EncryptionHelper withoutKey = new EncryptionHelper(new KeyRing(), CipherMode.GCM);
+            DatabaseHelper unkeyedHelper = new DatabaseHelper(withoutKey);
+            assertThrows(IOException.class, () -> unkeyedHelper.getArticle(ids.get(0), reader));
+            assertThrows(IOException.class,
+                    () -> new ArticleReencryptionJob(withoutKey, "RotationGroup", 1, 2, 0).run(null));
+
+            // and refuses to restore them, from an article backup or a snapshot, leaving everything as it was
+            File backup = File.createTempFile("rotation-backup", ".bak");
+            File snapshot = File.createTempFile("rotation-snapshot", ".bak");
+            backup.deleteOnExit();
+            snapshot.deleteOnExit();
+            keyedHelper.backupArticles(backup.getAbsolutePath());
+            keyedHelper.backupDatabase(snapshot.getAbsolutePath());
+            assertThrows(IOException.class, () -> unkeyedHelper.restoreDatabase(snapshot.getAbsolutePath()));
+            assertEquals(Set.of(newKey), keyVersions(ids));
+            for (long id : ids) {
+                keyedHelper.deleteArticle(id);
+            }
+            assertThrows(IOException.class,
+                    () -> unkeyedHelper.restoreArticles(backup.getAbsolutePath(), true, "RotationGroup"));
+            assertNull(keyedHelper.getArticle(ids.get(0), reader));
+            assertEquals(5, keyedHelper.restoreArticles(backup.getAbsolutePath(), true, "RotationGroup").getRestored());
+            assertEquals("Rotated body 0", keyedHelper.getArticle(ids.get(0), reader).getBody());
+        } finally {
+            for (long id : ids) {
+                keyedHelper.deleteArticle(id);
+            }
+            keyedHelper.deleteGroup("RotationGroup");
+        }
+    }
+
+    @Test
+    public void testRestoreDuringRotationRestartsReencryption() throws Exception {
+        KeyRing keyRing = new KeyRing();
+        EncryptionHelper encryptionHelper = new EncryptionHelper(keyRing, CipherMode.GCM);
+        DatabaseHelper keyedHelper = new DatabaseHelper(encryptionHelper);
+        keyedHelper.deleteGroup("RestartGroup");
+        Group group = new Group("RestartGroup");
+        group.addStudent("restartreader");
+        keyedHelper.createGroup(group);
+        User reader = new User("restartreader", "password", "Student");
+        List<Long> ids = new ArrayList<>();
+        File backup = File.createTempFile("restart-backup", ".bak");
+        backup.deleteOnExit();
+        try {
+            for (int i = 0; i < 4; i++) {
+                HelpArticle article = new HelpArticle("Restart Article " + i, "Description", "Restart body " + i,
+                        "Beginner", new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                        "author1", "RestartGroup", true);
+                keyedHelper.registerArticle(article);
+                ids.add(article.getId());
+            }
+            // Taken while every body is still under the legacy key
+            keyedHelper.backupArticles(backup.getAbsolutePath());
+            int newKey = keyRing.rotate();
+
+            ProgressListener cancelAfterFirstBatch = new ProgressListener() {
+                private boolean reported = false;
+
+                @Override
+                public void onProgress(long rows, long totalRows, long bytes, long totalBytes) {
+                    reported = true;
+                }
+
+                @Override
+                public boolean isCancelRequested() {
+                    return reported;
+                }
+            };
+            ArticleReencryptionJob job = new ArticleReencryptionJob(encryptionHelper, "RestartGroup", 1, 2, 0);
+            assertThrows(CancellationException.class, () -> job.run(cancelAfterFirstBatch));
+            assertTrue(keyVersions(ids).contains(newKey));
+
+            // Restoring while the job is paused brings back bodies below its checkpoint under the old key
+            for (long id : ids) {
+                keyedHelper.deleteArticle(id);
+            }
+            keyedHelper.restoreArticles(backup.getAbsolutePath(), true, "RestartGroup");
+            assertEquals(Set.of(KeyRing.LEGACY_KEY_VERSION), keyVersions(ids));
+            assertEquals(4, job.run(null));
+            assertEquals(Set.of(newKey), keyVersions(ids));
+
+            // A restore made while the job runs sends it back to the first article once it reaches the end
+            int nextKey = keyRing.rotate();
+            ProgressListener restoreAfterFirstBatch = new ProgressListener() {
+                private boolean restored = false;
+
+                @Override
+                public void onProgress(long rows, long totalRows, long bytes, long totalBytes) {
+                    if (restored) {
+                        return;
+                    }
+                    restored = true;
+                    try {
+                        for (long id : ids) {
+                            keyedHelper.deleteArticle(id);
+                        }
+                        keyedHelper.restoreArticles(backup.getAbsolutePath(), true, "RestartGroup");
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+            job.run(restoreAfterFirstBatch);
+            assertEquals(Set.of(nextKey), keyVersions(ids));
+            try (Connection connection = ConnectionPool.getInstance().getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(
+                         "SELECT COUNT(*) FROM reencryption_checkpoints WHERE scope = 'RestartGroup'");
+                 ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                assertEquals(0, rs.getInt(1));
+            }
+            assertEquals("Restart body 0", keyedHelper.getArticle(ids.get(0), reader).getBody());
+        } finally {
+            for (long id : ids) {
+                keyedHelper.deleteArticle(id);
+            }
+            keyedHelper.deleteGroup("RestartGroup");
+        }
+    }
+
+    private static Set<Integer> keyVersions(List<Long> ids) throws Exception {
+        Set<Integer> versions = new HashSet<>();
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(
+                     "SELECT encrypted_body FROM help_articles WHERE id = ?")) {
+            for (long id : ids) {
+                pstmt.setLong(1, id);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    versions.add(EncryptionHelper.peekKeyVersion(new ByteArrayInputStream(rs.getBytes(1))));
+                }
+            }
+        }
+        return versions;
+    }
+
+    @Test
+    public void testStreamLargeArticleBody() throws Exception {
+        dbHelper.deleteGroup("LargeBodyGroup");
+        Group group = new Group("LargeBodyGroup");
+        group.addStudent("largereader");
+        dbHelper.createGroup(group);
+        User reader = new User("largereader", "password", "Student");
+        HelpArticle article = new HelpArticle("Large Body Article", "Description", "small", "Beginner",
+                new HashSet<>(Set.of("test")), new HashSet<>(Set.of("http://example.com")),
+                "author1", "LargeBodyGroup", true);
+        dbHelper.registerArticle(article);
+        try {
+            StringBuilder large = new StringBuilder();
+            while (large.length() < 3 * 1024 * 1024) {
+                large.append("Line ").append(large.length()).append(" of a very long article body \u00e9\n");
+            }
+            dbHelper.updateArticleBody(article.getId(), new StringReader(large.toString()));
+
+            StringWriter body = new StringWriter();
+            assertTrue(dbHelper.readArticleBody(article.getId(), reader, body));
+            assertEquals(large.toString(), body.toString());
+            assertEquals(large.toString(), dbHelper.getArticle(article.getId(), reader).getBody());
+            // Non-members cannot read it
+            assertFalse(dbHelper.readArticleBody(article.getId(), new User("outsider", "password", "Student"), new StringWriter()));
+        } finally {
+            dbHelper.deleteArticle(article.getId());
+            dbHelper.deleteGroup("LargeBodyGroup");
+        }
+    }
+
     @Test
     public void testRegisterAndRetrieveInvitation() throws Exception {
         Set<String> roles = new HashSet<>();
@@ -3,10 +3,24 @@ package app.test;
 import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.Test;
+import Encryption.CipherMode;
 import Encryption.EncryptionHelper;
+import Encryption.KeyRing;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Paths;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class EncryptionHelperTest {
 
@@ -59,4 +73,154 @@ public class EncryptionHelperTest {
             fail("Failed to initialize EncryptionHelper");
         }
     }
+
+    @Test
+    public void testConcurrentEncryptDecrypt() throws Exception {
+        // One helper shared by many threads, as the backup workers and UI thread do
+        EncryptionHelper helper = new EncryptionHelper();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                results.add(executor.submit(() -> {
+                    SecureRandom random = new SecureRandom();
+                    for (int i = 0; i < 500; i++) {
+                        byte[] plainText = new byte[(seed * 37 + i) % 300];
+                        byte[] iv = new byte[16];
+                        random.nextBytes(plainText);
+                        random.nextBytes(iv);
+                        byte[] decrypted = helper.decrypt(helper.encrypt(plainText, iv), iv);
+                        assertTrue(Arrays.equals(plainText, decrypted));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBodyEnvelopeModes() throws Exception {
+        EncryptionHelper gcm = new EncryptionHelper();
+        EncryptionHelper cbc = new EncryptionHelper(CipherMode.CBC);
+        assertEquals(CipherMode.GCM, gcm.getBodyMode());
+        String body = "Body with unicode \u00e9 and a : colon";
+
+        String sealed = gcm.encryptBody(body);
+        assertFalse(sealed.contains(":"));
+        assertEquals(CipherMode.GCM.getVersion(), Base64.getDecoder().decode(sealed)[0]);
+        assertEquals(body, gcm.decryptBody(sealed));
+        // Either helper reads either mode; the envelope says which one was used
+        assertEquals(body, cbc.decryptBody(sealed));
+        assertEquals(body, gcm.decryptBody(cbc.encryptBody(body)));
+        assertEquals("", gcm.decryptBody(gcm.encryptBody("")));
+    }
+
+    @Test
+    public void testTamperedGcmBodyIsRejected() throws Exception {
+        EncryptionHelper helper = new EncryptionHelper();
+        byte[] envelope = helper.encryptEnvelope("Do not change me".getBytes());
+        envelope[envelope.length - 1] ^= 1;
+        assertThrows(Exception.class, () -> helper.decryptEnvelope(envelope));
+
+        byte[] unknownVersion = helper.encryptEnvelope("x".getBytes());
+        unknownVersion[0] = 99;
+        assertThrows(IllegalArgumentException.class, () -> helper.decryptEnvelope(unknownVersion));
+    }
+
+    @Test
+    public void testKeyedEnvelopes() throws Exception {
+        KeyRing keyRing = new KeyRing();
+        EncryptionHelper helper = new EncryptionHelper(keyRing, CipherMode.GCM);
+        byte[] legacy = helper.encryptEnvelope("Under the built-in key".getBytes());
+        assertEquals(CipherMode.GCM.getVersion(), legacy[0]);
+        assertEquals(KeyRing.LEGACY_KEY_VERSION, EncryptionHelper.peekKeyVersion(new ByteArrayInputStream(legacy)));
+
+        int newKey = keyRing.rotate();
+        byte[] keyed = helper.encryptEnvelope("Under the new key".getBytes());
+        assertEquals(EncryptionHelper.KEYED_ENVELOPE, keyed[0]);
+        assertEquals(newKey, EncryptionHelper.peekKeyVersion(new ByteArrayInputStream(keyed)));
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        try (OutputStream out = helper.encryptingStream(streamed)) {
+            out.write("Streamed under the new key".getBytes());
+        }
+
+        // Bodies under the old key still decrypt after the rotation
+        assertEquals("Under the built-in key", new String(helper.decryptEnvelope(legacy)));
+        assertEquals("Under the new key", new String(helper.decryptEnvelope(keyed)));
+        try (InputStream in = helper.decryptingStream(new ByteArrayInputStream(streamed.toByteArray()))) {
+            assertEquals("Streamed under the new key", new String(in.readAllBytes()));
+        }
+
+        // A ring without the key cannot read the body, and says so rather than calling it malformed
+        EncryptionHelper withoutKey = new EncryptionHelper(new KeyRing(), CipherMode.GCM);
+        assertFalse(withoutKey.getKeyRing().hasKey(newKey));
+        assertThrows(IOException.class, () -> withoutKey.decryptEnvelope(keyed));
+        assertEquals("Under the built-in key", new String(withoutKey.decryptEnvelope(legacy)));
+    }
+
+    @Test
+    public void testKeyRingLivesBesideTheDatabase() throws Exception {
+        assertEquals(Paths.get("database", "keyring.properties").toAbsolutePath(),
+                KeyRing.pathFor("jdbc:h2:./database/appDatabase"));
+        assertEquals(Paths.get("/srv/app/data/keyring.properties"),
+                KeyRing.pathFor("jdbc:h2:file:/srv/app/data/appDatabase;AUTO_SERVER=TRUE"));
+        assertEquals(Paths.get(System.getProperty("user.home"), "keyring.properties"),
+                KeyRing.pathFor("jdbc:h2:~/appDatabase"));
+        assertNull(KeyRing.pathFor("jdbc:h2:mem:keyRingTest;DB_CLOSE_DELAY=-1"));
+        assertThrows(IOException.class, () -> KeyRing.pathFor("jdbc:h2:tcp://localhost/~/appDatabase"));
+    }
+
+    @Test
+    public void testStreamingEncryptDecrypt() throws Exception {
+        // Several segments plus a partial one, and an exact multiple of the segment size
+        for (int size : new int[] { 0, 10, 64 * 1024, 200 * 1024 + 17 }) {
+            byte[] plainText = new byte[size];
+            new SecureRandom().nextBytes(plainText);
+            for (CipherMode mode : CipherMode.values()) {
+                EncryptionHelper helper = new EncryptionHelper(mode);
+                ByteArrayOutputStream envelope = new ByteArrayOutputStream();
+                try (OutputStream out = helper.encryptingStream(envelope)) {
+                    // Odd-sized writes cross segment boundaries
+                    for (int offset = 0; offset < size; offset += 7001) {
+                        out.write(plainText, offset, Math.min(7001, size - offset));
+                    }
+                }
+                byte[] sealed = envelope.toByteArray();
+                assertEquals(mode == CipherMode.CBC ? CipherMode.CBC.getVersion() : CipherMode.GCM_SEGMENTED.getVersion(), sealed[0]);
+                try (InputStream in = helper.decryptingStream(new ByteArrayInputStream(sealed))) {
+                    assertArrayEquals(plainText, in.readAllBytes());
+                }
+                assertArrayEquals(plainText, helper.decryptEnvelope(sealed));
+            }
+        }
+        // Envelopes written in one shot read back through a stream too
+        EncryptionHelper helper = new EncryptionHelper();
+        try (InputStream in = helper.decryptingStream(new ByteArrayInputStream(helper.encryptEnvelope("one shot".getBytes())))) {
+            assertEquals("one shot", new String(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    public void testTruncatedStreamIsRejected() throws Exception {
+        EncryptionHelper helper = new EncryptionHelper();
+        ByteArrayOutputStream envelope = new ByteArrayOutputStream();
+        try (OutputStream out = helper.encryptingStream(envelope)) {
+            out.write(new byte[150 * 1024]);
+        }
+        byte[] sealed = envelope.toByteArray();
+
+        // Dropping the final segment must not look like a shorter body
+        byte[] truncated = Arrays.copyOf(sealed, 1 + 12 + 2 * (5 + 64 * 1024 + 16));
+        assertThrows(IOException.class, () -> helper.decryptingStream(new ByteArrayInputStream(truncated)).readAllBytes());
+
+        byte[] tampered = sealed.clone();
+        tampered[100] ^= 1;
+        assertThrows(IOException.class, () -> helper.decryptingStream(new ByteArrayInputStream(tampered)).readAllBytes());
+    }
 }
@@ -0,0 +1,70 @@
+package app.test;
+
+import Encryption.EncryptionHelper;
+import app.HelpArticle;
+import app.util.BackupWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Measures backup write throughput with chunks compressed and encrypted on 1, 2, 4 and 8 threads.
+ * Article bodies are random words so compression does real work rather than collapsing repeats.
+ *
+ * Run with BouncyCastle and the compiled classes on the classpath:
+ *     java app.test.ParallelBackupBenchmark [articles]
+ */
+public class ParallelBackupBenchmark {
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        int articleCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        EncryptionHelper encryptionHelper = new EncryptionHelper();
+        List<HelpArticle> articles = generateArticles(articleCount);
+        Path file = Files.createTempFile("parallel-backup-benchmark", ".bak");
+        System.out.println(articleCount + " articles, " + Runtime.getRuntime().availableProcessors() + " processors");
+
+        try {
+            double baseline = 0;
+            for (int threads : new int[] { 1, 2, 4, 8 }) {
+                double millis = BenchmarkTimer.measureMillis("backup write, " + threads + " thread(s)", 2, 5, () -> {
+                    try (BackupWriter writer = new BackupWriter(file, encryptionHelper, CHUNK_SIZE, 6, threads, 0, 0)) {
+                        for (HelpArticle article : articles) {
+                            writer.write(article);
+                        }
+                    }
+                });
+                if (threads == 1) {
+                    baseline = millis;
+                }
+                System.out.printf("    speedup %.2fx%n", baseline / millis);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<HelpArticle> generateArticles(int count) {
+        String[] words = { "account", "password", "reset", "group", "instructor", "student", "article",
+                "search", "backup", "restore", "project", "submit", "portal", "settings", "help", "error",
+                "message", "login", "course", "assignment", "deadline", "grade", "review", "feedback" };
+        Random random = new Random(42);
+        List<HelpArticle> articles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder body = new StringBuilder();
+            for (int w = 0; w < 250; w++) {
+                body.append(words[random.nextInt(words.length)]).append(random.nextInt(100)).append(' ');
+            }
+            articles.add(new HelpArticle(i + 1, "Help topic " + i, "How to handle case " + i,
+                    body.toString(), "Beginner", new HashSet<>(Set.of("help")),
+                    new HashSet<>(Set.of("http://example.com/help")), "author" + (i % 20), null, false));
+        }
+        return articles;
+    }
+}
@@ -0,0 +1,86 @@
+package app.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import app.util.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Checks with EXPLAIN that the hot queries in DatabaseHelper are answered from an index rather than a table scan.
+ */
+public class QueryPlanTest {
+
+    static Connection connection;
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:queryPlanTest;DB_CLOSE_DELAY=-1", "sa", "");
+        SchemaMigrator.migrate(connection);
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+        connection.close();
+    }
+
+    private static String explain(String query) throws Exception {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN " + query)) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static void assertUsesIndex(String query, String index) throws Exception {
+        String plan = explain(query);
+        assertFalse(plan.contains("tableScan"), "Table scan in plan: " + plan);
+        assertTrue(plan.toUpperCase().contains(index.toUpperCase()), "Expected " + index + " in plan: " + plan);
+    }
+
+    @Test
+    public void testArticleTitleLookup() throws Exception {
+        // doesArticleExist, run for every restored row
+        assertUsesIndex("SELECT COUNT(*) AS count FROM help_articles WHERE title = 'x'", "idx_help_articles_title");
+    }
+
+    @Test
+    public void testArticleFilterColumns() throws Exception {
+        assertUsesIndex("SELECT * FROM help_articles a WHERE a.group_name = 'g'", "idx_help_articles_group_name");
+        assertUsesIndex("SELECT * FROM help_articles a WHERE a.level = 'Beginner'", "idx_help_articles_level");
+        assertUsesIndex("SELECT * FROM help_articles a WHERE a.author_username = 'u'", "idx_help_articles_author");
+    }
+
+    @Test
+    public void testArticlesPageUsesPrimaryKeyOrder() throws Exception {
+        String plan = explain("SELECT a.id FROM help_articles a WHERE a.id > 10 ORDER BY a.id LIMIT 50");
+        assertFalse(plan.contains("tableScan"), plan);
+        assertTrue(plan.contains("index sorted"), plan);
+    }
+
+    @Test
+    public void testBookmarkLookups() throws Exception {
+        assertUsesIndex("SELECT username FROM bookmarks WHERE article_id = 1", "idx_bookmarks_article_id");
+        assertUsesIndex("SELECT article_id FROM bookmarks WHERE username = 'u'", "PRIMARY_KEY");
+    }
+
+    @Test
+    public void testHelpMessagesOrderedByTimestamp() throws Exception {
+        String plan = explain("SELECT * FROM help_messages ORDER BY timestamp DESC");
+        assertTrue(plan.toUpperCase().contains("IDX_HELP_MESSAGES_TIMESTAMP"), plan);
+        assertTrue(plan.contains("index sorted"), plan);
+    }
+
+    @Test
+    public void testGroupMembershipLookups() throws Exception {
+        assertUsesIndex("SELECT group_name FROM group_members WHERE username = 'u'", "idx_group_members_username");
+        assertUsesIndex("SELECT 1 FROM group_members m WHERE m.group_name = 'g' AND m.username = 'u'", "PRIMARY_KEY");
+        assertUsesIndex("SELECT article_id FROM group_articles WHERE group_name = 'g'", "PRIMARY_KEY");
+    }
+}
@@ -0,0 +1,171 @@
+package app.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import Encryption.EncryptionHelper;
+import app.util.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+public class SchemaMigratorTest {
+
+    static Connection connection;
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:schemaTest;DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    public void testMigrateToLatestVersion() throws Exception {
+        int version = SchemaMigrator.migrate(connection);
+        assertEquals(SchemaMigrator.getLatestVersion(), version);
+        assertEquals(version, SchemaMigrator.getSchemaVersion(connection));
+
+        for (String table : new String[] { "USERS", "HELP_ARTICLES", "INVITATIONS", "GROUPS", "HELP_MESSAGES", "BOOKMARKS" }) {
+            try (ResultSet rs = connection.getMetaData().getTables(null, null, table, null)) {
+                assertTrue(rs.next(), "Missing table " + table);
+            }
+        }
+    }
+
+    @Test
+    public void testMigrateIsIdempotent() throws Exception {
+        SchemaMigrator.migrate(connection);
+        SchemaMigrator.migrate(connection);
+
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM schema_version")) {
+            rs.next();
+            assertEquals(SchemaMigrator.getLatestVersion(), rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testUpgradeMovesGroupsOutOfCsvColumns() throws Exception {
+        try (Connection legacy = DriverManager.getConnection("jdbc:h2:mem:schemaUpgradeTest", "sa", "");
+             Statement stmt = legacy.createStatement()) {
+            createVersionOneTables(stmt);
+            stmt.execute("INSERT INTO groups VALUES ('G1', 'admin1', 'inst1', 'inst1', 'stu1,stu2', '1')");
+            stmt.execute("INSERT INTO help_articles (id, title, group_name) VALUES (1, 'A1', 'G1'), (2, 'A2', 'G1')");
+
+            SchemaMigrator.migrate(legacy);
+
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM group_members WHERE group_name = 'G1'")) {
+                rs.next();
+                assertEquals(5, rs.getInt(1));
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT role FROM group_members WHERE username = 'stu2'")) {
+                assertTrue(rs.next());
+                assertEquals("student", rs.getString(1));
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM group_articles WHERE group_name = 'G1'")) {
+                rs.next();
+                assertEquals(2, rs.getInt(1));
+            }
+            // Existing articles get distinct change versions
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(DISTINCT version) FROM help_articles WHERE version IS NOT NULL")) {
+                rs.next();
+                assertEquals(2, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    public void testUpgradeStoresEncryptedBodiesAsBinary() throws Exception {
+        EncryptionHelper helper = new EncryptionHelper();
+        byte[] iv = new byte[16];
+        new SecureRandom().nextBytes(iv);
+        String legacyBody = Base64.getEncoder().encodeToString(iv) + ":"
+                + Base64.getEncoder().encodeToString(helper.encrypt("Secret body".getBytes(StandardCharsets.UTF_8), iv));
+
+        try (Connection legacy = DriverManager.getConnection("jdbc:h2:mem:schemaBodyUpgradeTest", "sa", "");
+             Statement stmt = legacy.createStatement()) {
+            createVersionOneTables(stmt);
+            stmt.execute("INSERT INTO groups VALUES ('G1', 'admin1', 'inst1', 'inst1', 'stu1', '1,2')");
+            stmt.execute("INSERT INTO help_articles (id, title, body, group_name) VALUES "
+                    + "(1, 'Encrypted', '" + legacyBody + "', 'G1'), (2, 'Broken', 'not:an:envelope', 'G1'), "
+                    + "(3, 'Plain', 'Plain body', NULL)");
+
+            SchemaMigrator.migrate(legacy);
+
+            try (ResultSet rs = stmt.executeQuery("SELECT body, encrypted_body FROM help_articles ORDER BY id")) {
+                assertTrue(rs.next());
+                assertNull(rs.getString("body"));
+                assertEquals("Secret body", new String(helper.decryptEnvelope(rs.getBytes("encrypted_body")), StandardCharsets.UTF_8));
+                // Text that is not an encrypted body is left alone
+                assertTrue(rs.next());
+                assertEquals("not:an:envelope", rs.getString("body"));
+                assertNull(rs.getBytes("encrypted_body"));
+                assertTrue(rs.next());
+                assertEquals("Plain body", rs.getString("body"));
+                assertNull(rs.getBytes("encrypted_body"));
+            }
+        }
+    }
+
+    @Test
+    public void testFailedMigrationCanBeRetried() throws Exception {
+        try (Connection legacy = DriverManager.getConnection("jdbc:h2:mem:schemaRetryTest", "sa", "");
+             Statement stmt = legacy.createStatement()) {
+            createVersionOneTables(stmt);
+            // A username too long for group_members fails migration 2 after its table has been created
+            stmt.execute("INSERT INTO groups VALUES ('G1', '" + "a".repeat(300) + "', NULL, NULL, 'stu1', '1,not-a-number')");
+            stmt.execute("INSERT INTO help_articles (id, title, group_name) VALUES (1, 'A1', 'G1')");
+
+            assertThrows(SQLException.class, () -> SchemaMigrator.migrate(legacy));
+            assertEquals(1, SchemaMigrator.getSchemaVersion(legacy));
+            try (ResultSet rs = legacy.getMetaData().getTables(null, null, "GROUP_MEMBERS", null)) {
+                assertTrue(rs.next());
+            }
+
+            // Once the data is fixed the same migration runs again over what the failed attempt left
+            stmt.execute("UPDATE groups SET admins = 'admin1'");
+            assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.migrate(legacy));
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM group_members WHERE group_name = 'G1'")) {
+                rs.next();
+                assertEquals(2, rs.getInt(1));
+            }
+            // Malformed CSV ids are skipped rather than failing the upgrade
+            try (ResultSet rs = stmt.executeQuery("SELECT article_id FROM group_articles WHERE group_name = 'G1'")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+                assertFalse(rs.next());
+            }
+        }
+    }
+
+    /**
+     * Creates the tables of a database at version 1, before membership was normalized.
+     */
+    private static void createVersionOneTables(Statement stmt) throws Exception {
+        stmt.execute("CREATE TABLE schema_version (version INT PRIMARY KEY, description VARCHAR(255), "
+                + "applied_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        stmt.execute("INSERT INTO schema_version (version, description) VALUES (1, 'Create initial tables')");
+        stmt.execute("CREATE TABLE help_articles (id INT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(255), "
+                + "description VARCHAR(1000), body TEXT, level VARCHAR(255), keywords VARCHAR(500), "
+                + "reference_links VARCHAR(1000), author_username VARCHAR(255), group_name VARCHAR(255))");
+        stmt.execute("CREATE TABLE groups (name VARCHAR(255) PRIMARY KEY, admins VARCHAR(1000), "
+                + "instructors VARCHAR(1000), instructor_admins VARCHAR(1000), students VARCHAR(1000), "
+                + "article_ids VARCHAR(1000))");
+        stmt.execute("CREATE TABLE bookmarks (username VARCHAR(255), article_id INT, PRIMARY KEY (username, article_id))");
+        stmt.execute("CREATE TABLE help_messages (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(255), "
+                + "message_type VARCHAR(50), message_content TEXT, search_terms VARCHAR(255), "
+                + "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+    }
+}
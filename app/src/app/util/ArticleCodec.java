@@ -0,0 +1,259 @@
+package app.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import app.HelpArticle;
+
+/**
+ * The ArticleCodec class encodes help articles as length-prefixed binary records. Every field carries
+ * its own length, so bodies may hold newlines, § or any other text without escaping, and a record is
+ * decoded by slicing its fields straight out of a ByteBuffer rather than splitting a decoded string.
+ *
+ * A record is a 4-byte length covering the rest of the record, a 1-byte type, then the fields:
+ * <ul>
+ *     <li>{@link #TYPE_ARTICLE}: an 8-byte ID, then title, description, body, level, the keywords,
+ *     the reference links, author and group.</li>
+ *     <li>{@link #TYPE_DELETION}: an 8-byte ID, then the group the deleted article belonged to.</li>
+ *     <li>{@link #TYPE_ENCRYPTED_ARTICLE}: as an article, but the body is the group article's binary
+ *     envelope rather than text, so it is carried without Base64 and restored without decoding.</li>
+ * </ul>
+ * A string is a 4-byte UTF-8 length (-1 for null) followed by its bytes; a set is a 4-byte count
+ * followed by that many strings. Readers skip record types they do not know by their length.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+public final class ArticleCodec {
+
+    public static final byte TYPE_ARTICLE = 1;
+    public static final byte TYPE_DELETION = 2;
+    public static final byte TYPE_ENCRYPTED_ARTICLE = 3;
+
+    // Record length and type byte
+    private static final int HEADER_LENGTH = 5;
+
+    private ArticleCodec() {
+    }
+
+    /**
+     * Encodes an article as one record.
+     *
+     * @param article The article to encode, with its body as stored: text, or the envelope of a group article.
+     * @return The record bytes.
+     */
+    public static byte[] encode(HelpArticle article) {
+        byte[] envelope = article.getEncryptedBody();
+        byte[][] fields = {
+                utf8(article.getTitle()),
+                utf8(article.getDescription()),
+                envelope != null ? envelope : utf8(article.getBody()),
+                utf8(article.getLevel()),
+                utf8(article.getAuthorUsername()),
+                utf8(article.getGroupName())
+        };
+        byte[][] keywords = utf8(article.getKeywords());
+        byte[][] referenceLinks = utf8(article.getReferenceLinks());
+
+        int length = 1 + 8 + sizeOf(fields) + 4 + sizeOf(keywords) + 4 + sizeOf(referenceLinks);
+        ByteBuffer record = ByteBuffer.allocate(4 + length);
+        record.putInt(length).put(envelope != null ? TYPE_ENCRYPTED_ARTICLE : TYPE_ARTICLE).putLong(article.getId());
+        putString(record, fields[0]);
+        putString(record, fields[1]);
+        putString(record, fields[2]);
+        putString(record, fields[3]);
+        putSet(record, keywords);
+        putSet(record, referenceLinks);
+        putString(record, fields[4]);
+        putString(record, fields[5]);
+        return record.array();
+    }
+
+    /**
+     * Encodes the deletion of an article as one record.
+     *
+     * @param articleId The ID of the deleted article.
+     * @param groupName The group the article belonged to, or null.
+     * @return The record bytes.
+     */
+    public static byte[] encodeDeletion(long articleId, String groupName) {
+        byte[] group = utf8(groupName);
+        int length = 1 + 8 + 4 + (group == null ? 0 : group.length);
+        ByteBuffer record = ByteBuffer.allocate(4 + length);
+        record.putInt(length).put(TYPE_DELETION).putLong(articleId);
+        putString(record, group);
+        return record.array();
+    }
+
+    /**
+     * Returns the type of the record at the buffer's position without consuming it.
+     *
+     * @param buffer The buffer positioned at a record.
+     * @return The record type.
+     * @throws IOException if the buffer holds no complete record header.
+     */
+    public static byte peekType(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_LENGTH) {
+            throw new IOException("Corrupt backup record: truncated header.");
+        }
+        return buffer.get(buffer.position() + 4);
+    }
+
+    /**
+     * Decodes the record at the buffer's position and moves past it.
+     *
+     * @param buffer The buffer positioned at a record.
+     * @return The article, or null if the record is of another type.
+     * @throws IOException if the record is truncated or its lengths are inconsistent.
+     */
+    public static HelpArticle decode(ByteBuffer buffer) throws IOException {
+        ByteBuffer record = slice(buffer);
+        byte type = record.get();
+        if (type != TYPE_ARTICLE && type != TYPE_ENCRYPTED_ARTICLE) {
+            return null;
+        }
+        long id = record.getLong();
+        String title = getString(record);
+        String description = getString(record);
+        byte[] envelope = null;
+        String body = null;
+        if (type == TYPE_ENCRYPTED_ARTICLE) {
+            envelope = getBytes(record);
+        } else {
+            body = getString(record);
+        }
+        String level = getString(record);
+        Set<String> keywords = getSet(record);
+        Set<String> referenceLinks = getSet(record);
+        String authorUsername = getString(record);
+        String groupName = getString(record);
+        HelpArticle article = new HelpArticle(id, title, description, body, level, keywords, referenceLinks,
+                authorUsername, groupName, groupName != null);
+        article.setEncryptedBody(envelope);
+        return article;
+    }
+
+    /**
+     * Decodes the deletion record at the buffer's position and moves past it.
+     *
+     * @param buffer The buffer positioned at a record.
+     * @return The deletion, or null if the record is of another type.
+     * @throws IOException if the record is truncated or its lengths are inconsistent.
+     */
+    static BackupReader.Deletion decodeDeletion(ByteBuffer buffer) throws IOException {
+        ByteBuffer record = slice(buffer);
+        if (record.get() != TYPE_DELETION) {
+            return null;
+        }
+        long articleId = record.getLong();
+        return new BackupReader.Deletion(articleId, getString(record));
+    }
+
+    /**
+     * Splits the next record off the buffer as a view of its own, and moves the buffer past it.
+     */
+    private static ByteBuffer slice(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_LENGTH) {
+            throw new IOException("Corrupt backup record: truncated header.");
+        }
+        int length = buffer.getInt();
+        if (length < 1 || length > buffer.remaining()) {
+            throw new IOException("Corrupt backup record length " + length + ".");
+        }
+        ByteBuffer record = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return record;
+    }
+
+    private static String getString(ByteBuffer record) throws IOException {
+        int length = getLength(record);
+        if (length < 0) {
+            return null;
+        }
+        String value;
+        if (record.hasArray()) {
+            // Decode in place from the backing array; no intermediate copy of the field
+            value = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+        } else {
+            value = StandardCharsets.UTF_8.decode(record.slice(record.position(), length)).toString();
+        }
+        record.position(record.position() + length);
+        return value;
+    }
+
+    private static byte[] getBytes(ByteBuffer record) throws IOException {
+        int length = getLength(record);
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        record.get(value);
+        return value;
+    }
+
+    private static Set<String> getSet(ByteBuffer record) throws IOException {
+        int count = getLength(record);
+        Set<String> values = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            values.add(getString(record));
+        }
+        return values;
+    }
+
+    /**
+     * Reads a length or count, checking it fits in what is left of the record.
+     */
+    private static int getLength(ByteBuffer record) throws IOException {
+        if (record.remaining() < 4) {
+            throw new IOException("Corrupt backup record: truncated field.");
+        }
+        int length = record.getInt();
+        if (length < -1 || length > record.remaining()) {
+            throw new IOException("Corrupt backup record field length " + length + ".");
+        }
+        return length;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[][] utf8(Collection<String> values) {
+        if (values == null) {
+            return new byte[0][];
+        }
+        byte[][] encoded = new byte[values.size()][];
+        int i = 0;
+        for (String value : values) {
+            encoded[i++] = utf8(value);
+        }
+        return encoded;
+    }
+
+    private static int sizeOf(byte[][] values) {
+        int size = 0;
+        for (byte[] value : values) {
+            size += 4 + (value == null ? 0 : value.length);
+        }
+        return size;
+    }
+
+    private static void putString(ByteBuffer record, byte[] value) {
+        if (value == null) {
+            record.putInt(-1);
+        } else {
+            record.putInt(value.length).put(value);
+        }
+    }
+
+    private static void putSet(ByteBuffer record, byte[][] values) {
+        record.putInt(values.length);
+        for (byte[] value : values) {
+            putString(record, value);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package app.util;
+
+/**
+ * The ArticleFilter class describes which articles an article listing should show.
+ * Each criterion is optional; a null value (or "All" for the level and group) matches every article.
+ * 
+ * Author:
+ *     - Jaafar Abdeen
+ */
+public class ArticleFilter {
+    private final String level;
+    private final String groupName;
+    private final String keyword;
+
+    /**
+     * Constructor for ArticleFilter.
+     *
+     * @param level     The content level to show, or null/"All" for every level.
+     * @param groupName The group whose articles to show, or null/"All" for every group.
+     * @param keyword   Text matched against title, description and author, or an article ID; null or empty for no search.
+     */
+    public ArticleFilter(String level, String groupName, String keyword) {
+        this.level = isAll(level) ? null : level;
+        this.groupName = isAll(groupName) ? null : groupName;
+        this.keyword = (keyword == null || keyword.isEmpty()) ? null : keyword;
+    }
+
+    /**
+     * Returns a filter that matches every article.
+     *
+     * @return An empty filter.
+     */
+    public static ArticleFilter all() {
+        return new ArticleFilter(null, null, null);
+    }
+
+    private static boolean isAll(String value) {
+        return value == null || "All".equalsIgnoreCase(value);
+    }
+
+    public String getLevel() {
+        return level;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public String getKeyword() {
+        return keyword;
+    }
+}
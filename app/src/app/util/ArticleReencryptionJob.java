@@ -0,0 +1,477 @@
+package app.util;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import Encryption.EncryptionHelper;
+
+/**
+ * The ArticleReencryptionJob class re-encrypts group article bodies under the key ring's current key,
+ * after {@link Encryption.KeyRing#rotate()} has made a new one. Articles are taken in id order in
+ * batches, and each batch is decrypted and encrypted again on a small pool of low-priority threads,
+ * each in its own transaction on its own pooled connection. Bodies already under the current key are
+ * skipped, so running the job again is harmless.
+ *
+ * The job is throttled to a number of rows per second so interactive queries keep their latency while
+ * it runs. After each batch, in order, the last article id done is saved in reencryption_checkpoints,
+ * so a cancelled or crashed job resumes after it; the checkpoint is removed once every article is done.
+ * A restore can bring back articles the job had already passed under an older key, so restores reset
+ * the checkpoint and the job then starts again from the first article.
+ *
+ * A row is only replaced if its version has not changed since it was read, so an edit made while the
+ * job runs is never overwritten. Replaced rows take a new version, so the next incremental backup
+ * picks them up.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+public class ArticleReencryptionJob {
+
+    public static final int DEFAULT_THREADS = 2;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_MAX_ROWS_PER_SECOND = 500;
+
+    // Batches allowed in flight per worker thread before the coordinator waits for the oldest one
+    private static final int BATCHES_IN_FLIGHT_PER_THREAD = 2;
+
+    // The last article id a restore writes into a checkpoint so the job starts again from the beginning
+    private static final long RESTART_ARTICLE_ID = -1;
+
+    private final EncryptionHelper encryptionHelper;
+    private final String groupName; // null for every group
+    private final int threads;
+    private final int batchSize;
+    private final int maxRowsPerSecond;
+    private final Object throttleLock = new Object();
+    private long nextSlotNanos;
+    private long savedArticleId; // the checkpoint's last article id as this run last saved it
+
+    /**
+     * Constructor for an ArticleReencryptionJob over every group using the default settings.
+     *
+     * @param encryptionHelper The helper whose key ring holds both the old keys and the current one.
+     */
+    public ArticleReencryptionJob(EncryptionHelper encryptionHelper) {
+        this(encryptionHelper, null, DEFAULT_THREADS, DEFAULT_BATCH_SIZE, DEFAULT_MAX_ROWS_PER_SECOND);
+    }
+
+    /**
+     * Constructor for ArticleReencryptionJob.
+     *
+     * @param encryptionHelper The helper whose key ring holds both the old keys and the current one.
+     * @param groupName        The group whose articles are re-encrypted, or null for every group.
+     * @param threads          The number of threads re-encrypting batches.
+     * @param batchSize        The number of articles re-encrypted per transaction.
+     * @param maxRowsPerSecond The most articles handled per second across all threads, or 0 for no limit.
+     */
+    public ArticleReencryptionJob(EncryptionHelper encryptionHelper, String groupName, int threads, int batchSize,
+                                  int maxRowsPerSecond) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1.");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        if (maxRowsPerSecond < 0) {
+            throw new IllegalArgumentException("Row rate cannot be negative.");
+        }
+        this.encryptionHelper = encryptionHelper;
+        this.groupName = groupName;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+    }
+
+    /**
+     * Re-encrypts every article not yet under the current key, resuming from the last checkpoint.
+     * On cancellation the batches already started are finished and checkpointed before it stops.
+     * If a restore resets the checkpoint while the job runs, the job starts again from the first article.
+     *
+     * @param listener Receives progress in articles checked, and may cancel the job; may be null.
+     * @return The number of articles re-encrypted, including any by earlier runs this one resumed.
+     * @throws CancellationException if the listener cancelled the job.
+     * @throws IOException if an article is under a key the ring does not hold; the batches before it are kept.
+     * @throws Exception if the articles cannot be read or written.
+     */
+    public long run(ProgressListener listener) throws Exception {
+        int keyVersion = encryptionHelper.getKeyRing().getCurrentVersion();
+        String scope = groupName == null ? "" : groupName;
+        long[] checkpoint = startCheckpoint(keyVersion, scope);
+        long cursor = checkpoint[0];
+        long reencrypted = checkpoint[1];
+        savedArticleId = cursor;
+        long total = countArticles(cursor);
+        long checked = 0;
+        synchronized (throttleLock) {
+            nextSlotNanos = System.nanoTime();
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "article-reencryption");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        Deque<PendingBatch> inFlight = new ArrayDeque<>();
+        boolean restarted;
+        try {
+            try {
+                while (true) {
+                    ProgressListener.checkCancelled(listener);
+                    List<Long> ids = nextBatch(cursor);
+                    if (ids.isEmpty()) {
+                        break;
+                    }
+                    cursor = ids.get(ids.size() - 1);
+                    inFlight.addLast(new PendingBatch(ids, workers.submit(() -> reencrypt(ids, keyVersion))));
+                    // Checkpoint finished batches in order, waiting for the oldest one if too many are outstanding
+                    while (!inFlight.isEmpty() && (inFlight.size() >= threads * BATCHES_IN_FLIGHT_PER_THREAD
+                            || inFlight.peekFirst().future.isDone())) {
+                        PendingBatch batch = inFlight.pollFirst();
+                        reencrypted += finish(batch, keyVersion, scope, reencrypted);
+                        checked += batch.ids.size();
+                        report(listener, checked, total);
+                    }
+                }
+            } catch (CancellationException e) {
+                // Keep the work already started rather than redoing it on the next run
+                while (!inFlight.isEmpty()) {
+                    PendingBatch batch = inFlight.pollFirst();
+                    reencrypted += finish(batch, keyVersion, scope, reencrypted);
+                }
+                throw e;
+            }
+            while (!inFlight.isEmpty()) {
+                PendingBatch batch = inFlight.pollFirst();
+                reencrypted += finish(batch, keyVersion, scope, reencrypted);
+                checked += batch.ids.size();
+                report(listener, checked, total);
+            }
+            // The checkpoint is gone or moved only if a restore reset it, and the restored rows need another pass
+            restarted = !deleteCheckpoint(keyVersion, scope, savedArticleId);
+        } finally {
+            for (PendingBatch batch : inFlight) {
+                batch.future.cancel(true);
+            }
+            workers.shutdownNow();
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        return restarted ? run(listener) : reencrypted;
+    }
+
+    private static void report(ProgressListener listener, long checked, long total) {
+        if (listener != null) {
+            listener.onProgress(checked, Math.max(total, checked), 0, -1);
+        }
+    }
+
+    /**
+     * Waits for a batch and saves its last id as the checkpoint, unless a restore has reset it.
+     *
+     * @return The number of articles the batch re-encrypted.
+     */
+    private long finish(PendingBatch batch, int keyVersion, String scope, long reencryptedBefore) throws Exception {
+        long count;
+        try {
+            count = batch.future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+        long lastId = batch.ids.get(batch.ids.size() - 1);
+        if (saveCheckpoint(keyVersion, scope, savedArticleId, lastId, reencryptedBefore + count)) {
+            savedArticleId = lastId;
+        }
+        return count;
+    }
+
+    private String scopeCondition() {
+        return groupName == null ? "" : " AND group_name = ?";
+    }
+
+    private long countArticles(long afterId) throws SQLException {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("SELECT COUNT(*) FROM help_articles WHERE id > ? "
+                     + "AND group_name IS NOT NULL AND encrypted_body IS NOT NULL" + scopeCondition())) {
+            pstmt.setLong(1, afterId);
+            if (groupName != null) {
+                pstmt.setString(2, groupName);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private List<Long> nextBatch(long afterId) throws SQLException {
+        List<Long> ids = new ArrayList<>(batchSize);
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("SELECT id FROM help_articles WHERE id > ? "
+                     + "AND group_name IS NOT NULL AND encrypted_body IS NOT NULL" + scopeCondition()
+                     + " ORDER BY id LIMIT ?")) {
+            pstmt.setLong(1, afterId);
+            int index = 2;
+            if (groupName != null) {
+                pstmt.setString(index++, groupName);
+            }
+            pstmt.setInt(index, batchSize);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Re-encrypts one batch of articles in a single transaction. Runs on a worker thread.
+     *
+     * @return The number of articles re-encrypted.
+     */
+    private long reencrypt(List<Long> ids, int keyVersion) throws Exception {
+        throttle(ids.size());
+        // Backups wait for this batch before reading their high-water mark
+        Lock versionLock = DatabaseHelper.ARTICLE_VERSION_LOCK.readLock();
+        versionLock.lock();
+        try (Connection connection = ConnectionPool.getInstance().getConnection()) {
+            connection.setAutoCommit(false);
+            List<Blob> blobs = new ArrayList<>();
+            try (PreparedStatement select = connection.prepareStatement("SELECT id, version, encrypted_body "
+                    + "FROM help_articles WHERE id BETWEEN ? AND ? AND group_name IS NOT NULL "
+                    + "AND encrypted_body IS NOT NULL" + scopeCondition());
+                 PreparedStatement update = connection.prepareStatement("UPDATE help_articles SET encrypted_body = ?, "
+                         + "version = NEXT VALUE FOR help_articles_version_seq WHERE id = ? AND version = ?")) {
+                select.setLong(1, ids.get(0));
+                select.setLong(2, ids.get(ids.size() - 1));
+                if (groupName != null) {
+                    select.setString(3, groupName);
+                }
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        Blob blob = reencryptBody(connection, rs, keyVersion);
+                        if (blob == null) {
+                            continue;
+                        }
+                        blobs.add(blob);
+                        update.setBlob(1, blob);
+                        update.setLong(2, rs.getLong("id"));
+                        update.setLong(3, rs.getLong("version"));
+                        update.addBatch();
+                    }
+                }
+                long count = 0;
+                if (!blobs.isEmpty()) {
+                    for (int updated : update.executeBatch()) {
+                        count += updated;
+                    }
+                }
+                connection.commit();
+                return count;
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                for (Blob blob : blobs) {
+                    blob.free();
+                }
+                connection.setAutoCommit(true);
+            }
+        } finally {
+            versionLock.unlock();
+        }
+    }
+
+    /**
+     * Decrypts a row's body and encrypts it again under the current key, stream to stream.
+     *
+     * @return The new envelope, or null if the body is already under the key or is not a valid envelope.
+     * @throws IOException if the body is under a key the ring does not hold, so it can never be re-encrypted.
+     */
+    private Blob reencryptBody(Connection connection, ResultSet rs, int keyVersion) throws Exception {
+        try (InputStream envelope = new BufferedInputStream(rs.getBinaryStream("encrypted_body"))) {
+            int bodyKeyVersion = EncryptionHelper.peekKeyVersion(envelope);
+            if (bodyKeyVersion == keyVersion) {
+                return null;
+            }
+            if (!encryptionHelper.getKeyRing().hasKey(bodyKeyVersion)) {
+                throw new IOException("Article " + rs.getLong("id") + " is encrypted under key version " + bodyKeyVersion
+                        + ", which the key ring does not hold.");
+            }
+            Blob blob = connection.createBlob();
+            try (InputStream plainText = encryptionHelper.decryptingStream(envelope);
+                 OutputStream out = encryptionHelper.encryptingStream(blob.setBinaryStream(1))) {
+                plainText.transferTo(out);
+            } catch (Exception e) {
+                blob.free();
+                throw e;
+            }
+            return blob;
+        } catch (IllegalArgumentException e) {
+            // Not a valid envelope; leave it as it is
+            return null;
+        }
+    }
+
+    /**
+     * Spaces batches out so the job handles at most maxRowsPerSecond rows. The slot is taken under
+     * the lock, and the wait happens outside it.
+     */
+    private void throttle(int rows) throws InterruptedException {
+        if (maxRowsPerSecond == 0) {
+            return;
+        }
+        long wait;
+        synchronized (throttleLock) {
+            long now = System.nanoTime();
+            long start = Math.max(now, nextSlotNanos);
+            nextSlotNanos = start + rows * 1_000_000_000L / maxRowsPerSecond;
+            wait = start - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Returns whether a re-encryption of every group under the given key was started and not finished.
+     *
+     * @param keyVersion The key version.
+     * @return True if a checkpoint is waiting to be resumed.
+     * @throws SQLException if the checkpoint cannot be read.
+     */
+    static boolean isPending(int keyVersion) throws SQLException {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(
+                     "SELECT 1 FROM reencryption_checkpoints WHERE key_version = ? AND scope = ''")) {
+            pstmt.setInt(1, keyVersion);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Marks every checkpoint to start again from the first article. Called by restores in their own
+     * transaction, since the rows they bring back may be under keys the job had already moved past.
+     *
+     * @param connection The restore's connection.
+     * @throws SQLException if the checkpoints cannot be updated.
+     */
+    static void restartCheckpoints(Connection connection) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement("UPDATE reencryption_checkpoints "
+                + "SET last_article_id = ?, updated_on = CURRENT_TIMESTAMP")) {
+            pstmt.setLong(1, RESTART_ARTICLE_ID);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Loads the checkpoint for a key and scope, and saves it back so the run owns it from its first batch.
+     *
+     * @return The last article id done and the articles re-encrypted so far; zeros if there is none or
+     *         a restore has reset it.
+     */
+    private static long[] startCheckpoint(int keyVersion, String scope) throws SQLException {
+        try (Connection connection = ConnectionPool.getInstance().getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                long[] checkpoint = { 0, 0 };
+                try (PreparedStatement select = connection.prepareStatement("SELECT last_article_id, reencrypted "
+                        + "FROM reencryption_checkpoints WHERE key_version = ? AND scope = ? FOR UPDATE")) {
+                    select.setInt(1, keyVersion);
+                    select.setString(2, scope);
+                    try (ResultSet rs = select.executeQuery()) {
+                        if (rs.next() && rs.getLong(1) != RESTART_ARTICLE_ID) {
+                            checkpoint = new long[] { rs.getLong(1), rs.getLong(2) };
+                        }
+                    }
+                }
+                try (PreparedStatement merge = connection.prepareStatement("MERGE INTO reencryption_checkpoints "
+                        + "(key_version, scope, last_article_id, reencrypted, updated_on) KEY (key_version, scope) "
+                        + "VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)")) {
+                    merge.setInt(1, keyVersion);
+                    merge.setString(2, scope);
+                    merge.setLong(3, checkpoint[0]);
+                    merge.setLong(4, checkpoint[1]);
+                    merge.executeUpdate();
+                }
+                connection.commit();
+                return checkpoint;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Moves the checkpoint forward if it still holds the id this run last saved.
+     *
+     * @return False if a restore has reset the checkpoint, which is then left as it is.
+     */
+    private static boolean saveCheckpoint(int keyVersion, String scope, long savedArticleId, long lastArticleId,
+                                          long reencrypted) throws SQLException {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("UPDATE reencryption_checkpoints "
+                     + "SET last_article_id = ?, reencrypted = ?, updated_on = CURRENT_TIMESTAMP "
+                     + "WHERE key_version = ? AND scope = ? AND last_article_id = ?")) {
+            pstmt.setLong(1, lastArticleId);
+            pstmt.setLong(2, reencrypted);
+            pstmt.setInt(3, keyVersion);
+            pstmt.setString(4, scope);
+            pstmt.setLong(5, savedArticleId);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Removes the checkpoint if it still holds the id this run last saved.
+     *
+     * @return False if a restore has reset the checkpoint, which is then left as it is.
+     */
+    private static boolean deleteCheckpoint(int keyVersion, String scope, long savedArticleId) throws SQLException {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("DELETE FROM reencryption_checkpoints "
+                     + "WHERE key_version = ? AND scope = ? AND last_article_id = ?")) {
+            pstmt.setInt(1, keyVersion);
+            pstmt.setString(2, scope);
+            pstmt.setLong(3, savedArticleId);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * A batch being re-encrypted on the worker pool, with the ids it covers.
+     */
+    private static final class PendingBatch {
+        private final List<Long> ids;
+        private final Future<Long> future;
+
+        PendingBatch(List<Long> ids, Future<Long> future) {
+            this.ids = ids;
+            this.future = future;
+        }
+    }
+}
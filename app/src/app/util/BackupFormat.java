@@ -0,0 +1,181 @@
+package app.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import app.HelpArticle;
+
+/**
+ * The BackupFormat class holds the layout shared by {@link BackupWriter} and {@link BackupReader}.
+ *
+ * A backup file starts with an 8-byte magic value, a 4-byte format version, (from version 2) a
+ * 1-byte compression codec and (from version 3) two 8-byte article change versions: the version an
+ * incremental backup starts after (0 for a full backup) and the version the backup is complete up to.
+ * A sequence of chunks follows. Each chunk is a 4-byte ciphertext length, a 16-byte IV and the
+ * ciphertext of a block of article records; chunks are encrypted independently so neither side ever
+ * holds more than one chunk in memory. A zero length marks the end of the chunks. No record spans two chunks,
+ * so a writer refuses a record too large for {@link #MAX_CHUNK_LENGTH} rather than write a file that cannot be read.
+ *
+ * From version 5 the records are length-prefixed binary records written by {@link ArticleCodec}, and a
+ * group article's body is its encrypted envelope as raw bytes (early version 5 files hold it as Base64 text).
+ * Earlier versions hold one §-separated text line per article, which cannot carry a body containing a
+ * newline or §; those files are still read.
+ *
+ * An incremental backup lists its deletions before any article; in text-record files each is a "D§id§group" line.
+ *
+ * With the Deflate codec each block is compressed before it is encrypted, and the encrypted payload
+ * is the 4-byte uncompressed length followed by the compressed bytes.
+ *
+ * From version 4 every chunk holds records of a single group, and the end marker is followed by an
+ * index chunk mapping each group to the file offsets of its chunks, then a 16-byte trailer holding the
+ * index chunk's offset and {@link #INDEX_MAGIC}. A single-group restore reads the trailer, then seeks
+ * straight to that group's chunks.
+ *
+ * Files without the magic value are treated as the legacy format: one Base64 IV line followed by
+ * one Base64 line holding the whole encrypted corpus.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+final class BackupFormat {
+
+    static final byte[] MAGIC = "CSE360BK".getBytes(StandardCharsets.US_ASCII);
+    static final int FORMAT_VERSION = 5;
+
+    // First version whose chunks hold ArticleCodec records instead of §-separated text lines
+    static final int BINARY_RECORDS_VERSION = 5;
+
+    // Ends a version 4 file, after the offset of the index chunk
+    static final byte[] INDEX_MAGIC = "CSE360IX".getBytes(StandardCharsets.US_ASCII);
+    static final int TRAILER_LENGTH = 16;
+
+    // Compression codecs recorded in the file header
+    static final byte CODEC_NONE = 0;
+    static final byte CODEC_DEFLATE = 1;
+
+    // Deflate level used unless the caller picks one; 0 turns compression off
+    static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    static final int IV_LENGTH = 16;
+
+    // Starts a deletion line in a text-record backup; article lines start with the numeric ID, so this cannot be mistaken for one
+    static final String DELETION_PREFIX = "D§";
+
+    // Plaintext collected before a chunk is encrypted and written
+    static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    // Upper bound on a single chunk, so a corrupt length cannot trigger a huge allocation
+    static final int MAX_CHUNK_LENGTH = 64 * 1024 * 1024;
+
+    // Largest record a writer accepts, leaving room under MAX_CHUNK_LENGTH for compression and encryption overhead
+    static final int MAX_RECORD_LENGTH = MAX_CHUNK_LENGTH - 1024 * 1024;
+
+    private BackupFormat() {
+    }
+
+    static boolean isDeletionRecord(String record) {
+        return record.startsWith(DELETION_PREFIX);
+    }
+
+    /**
+     * Parses one text record line, as written before version 5, back into an article.
+     *
+     * @param record The record line, without its newline.
+     * @return The article, or null if the line is not a complete record.
+     */
+    static HelpArticle fromRecord(String record) {
+        String[] fields = record.split("§", 9);
+        if (fields.length != 9) {
+            return null;
+        }
+        String groupName = fields[8].equals("null") ? null : fields[8]; // Interpret "null" as actual null
+        return new HelpArticle(
+                Long.parseLong(fields[0]),
+                fields[1],
+                fields[2],
+                fields[3],
+                fields[4],
+                new HashSet<>(Arrays.asList(fields[5].split(","))),
+                new HashSet<>(Arrays.asList(fields[6].split(","))),
+                fields[7],
+                groupName,
+                groupName != null);
+    }
+
+    /**
+     * Serializes the group index: the number of groups, then per group its name (a flag byte, and the
+     * name unless the flag marks ungrouped articles), its chunk count and each chunk's file offset.
+     *
+     * @param chunkOffsets The file offsets of each group's chunks; the null key holds ungrouped articles.
+     * @return The serialized index.
+     */
+    static byte[] encodeIndex(Map<String, List<Long>> chunkOffsets) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(chunkOffsets.size());
+            for (Map.Entry<String, List<Long>> entry : chunkOffsets.entrySet()) {
+                out.writeBoolean(entry.getKey() != null);
+                if (entry.getKey() != null) {
+                    out.writeUTF(entry.getKey());
+                }
+                out.writeInt(entry.getValue().size());
+                for (long offset : entry.getValue()) {
+                    out.writeLong(offset);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Parses an index written by {@link #encodeIndex(Map)}.
+     *
+     * @param index The serialized index.
+     * @return The file offsets of each group's chunks.
+     */
+    static Map<String, List<Long>> decodeIndex(byte[] index) throws IOException {
+        Map<String, List<Long>> chunkOffsets = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(index))) {
+            int groups = in.readInt();
+            for (int g = 0; g < groups; g++) {
+                String groupName = in.readBoolean() ? in.readUTF() : null;
+                int count = in.readInt();
+                List<Long> offsets = new ArrayList<>(count);
+                for (int c = 0; c < count; c++) {
+                    offsets.add(in.readLong());
+                }
+                chunkOffsets.put(groupName, offsets);
+            }
+        }
+        return chunkOffsets;
+    }
+
+    /**
+     * Reads from the channel until the (freshly cleared) buffer is full.
+     *
+     * @return False if the channel was already at end of file; true once the buffer is full.
+     * @throws IOException if the channel ends part-way through the buffer.
+     */
+    static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (buffer.position() == 0) {
+                    return false;
+                }
+                throw new IOException("Backup file is truncated.");
+            }
+        }
+        return true;
+    }
+}
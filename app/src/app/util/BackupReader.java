@@ -0,0 +1,342 @@
+package app.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import Encryption.EncryptionHelper;
+import app.HelpArticle;
+
+/**
+ * The BackupReader class reads articles back out of a backup file one at a time.
+ * Chunked backups (see {@link BackupFormat}) are decrypted and decompressed one chunk at a time as
+ * the records are consumed. From version 5 the records are binary (see {@link ArticleCodec}); the §-separated
+ * text records of earlier versions are still read. Legacy single-line backups are still accepted, but are
+ * decrypted in one piece.
+ *
+ * A reader opened for a single group uses the index at the end of a version 4 file to read only that
+ * group's chunks. Older files have no index, so every chunk is read; callers still filter by group.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+public class BackupReader implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final MappedFile mapped;
+    private final EncryptionHelper encryptionHelper;
+    private final int formatVersion;
+    private final long fileSize;
+    private long baseVersion = 0;
+    private long highVersion = 0;
+    private ChunkCodec codec; // null for legacy backups
+    private String[] records = new String[0]; // text records, before version 5
+    private int nextRecord = 0;
+    private ByteBuffer binaryRecords = ByteBuffer.allocate(0); // binary records, from version 5
+    private boolean finished = false;
+    private Iterator<Long> selectedChunks; // null when reading every chunk in order
+
+    /**
+     * Constructor for BackupReader.
+     *
+     * @param file             The backup file to read.
+     * @param encryptionHelper The helper used to decrypt the backup.
+     * @throws Exception if the file cannot be opened, has an unsupported version, or a legacy backup cannot be decrypted.
+     */
+    public BackupReader(Path file, EncryptionHelper encryptionHelper) throws Exception {
+        this(file, encryptionHelper, null);
+    }
+
+    /**
+     * Constructor for BackupReader that reads only one group's chunks when the file has a group index.
+     *
+     * @param file             The backup file to read.
+     * @param encryptionHelper The helper used to decrypt the backup.
+     * @param groupName        The group to read, or null to read every chunk.
+     * @throws Exception if the file cannot be opened, has an unsupported version or a damaged index, or a legacy backup cannot be decrypted.
+     */
+    public BackupReader(Path file, EncryptionHelper encryptionHelper, String groupName) throws Exception {
+        this.encryptionHelper = encryptionHelper;
+        FileChannel opened = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.fileSize = opened.size();
+            this.mapped = new MappedFile(opened, MappedFile.DEFAULT_SEGMENT_SIZE);
+            boolean chunked = fileSize >= BackupFormat.MAGIC.length + 4 && startsWithMagic(mapped.take(BackupFormat.MAGIC.length));
+            if (!chunked) {
+                // Legacy backup: Base64 IV on the first line, Base64 ciphertext of every record on the second
+                readLegacy(opened);
+                this.formatVersion = 0;
+            } else {
+                this.formatVersion = mapped.take(4).getInt();
+                if (formatVersion < 1 || formatVersion > BackupFormat.FORMAT_VERSION) {
+                    throw new IOException("Unsupported backup format version " + formatVersion + ".");
+                }
+                // Version 1 files have no codec byte and are never compressed
+                byte codecByte = formatVersion >= 2 ? mapped.take(1).get() : BackupFormat.CODEC_NONE;
+                codec = ChunkCodec.forCodec(encryptionHelper, codecByte);
+                // Earlier versions are always full backups
+                if (formatVersion >= 3) {
+                    ByteBuffer versions = mapped.take(16);
+                    baseVersion = versions.getLong();
+                    highVersion = versions.getLong();
+                }
+                if (formatVersion >= 4 && groupName != null) {
+                    List<Long> offsets = readIndex().get(groupName);
+                    selectedChunks = offsets == null ? Collections.emptyIterator() : offsets.iterator();
+                }
+            }
+        } catch (Exception e) {
+            opened.close();
+            if (codec != null) {
+                codec.end();
+            }
+            throw e;
+        }
+        this.channel = opened;
+    }
+
+    private static boolean startsWithMagic(ByteBuffer magic) {
+        byte[] bytes = new byte[BackupFormat.MAGIC.length];
+        magic.get(bytes);
+        return Arrays.equals(bytes, BackupFormat.MAGIC);
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Returns how far into the file the reader has got. A legacy backup is read whole when opened.
+     *
+     * @return The number of bytes read so far.
+     * @throws IOException if the file position cannot be read.
+     */
+    public long getBytesRead() throws IOException {
+        return codec == null ? fileSize : mapped.position();
+    }
+
+    /**
+     * Returns the format version of the file, or 0 for a legacy backup.
+     *
+     * @return The backup format version.
+     */
+    public int getFormatVersion() {
+        return formatVersion;
+    }
+
+    /**
+     * Returns whether this is an incremental backup, holding only the changes after {@link #getBaseVersion()}.
+     *
+     * @return True for an incremental backup, false for a full one.
+     */
+    public boolean isIncremental() {
+        return baseVersion > 0;
+    }
+
+    /**
+     * Returns the article change version an incremental backup starts after.
+     *
+     * @return The base version, or 0 for a full backup.
+     */
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    /**
+     * Returns the article change version the backup is complete up to.
+     *
+     * @return The high version, or 0 if the backup predates change tracking.
+     */
+    public long getHighVersion() {
+        return highVersion;
+    }
+
+    /**
+     * Returns the next deletion recorded in an incremental backup. Deletions precede every article,
+     * so read them all before calling {@link #next()}, which skips any that are left.
+     *
+     * @return The next deletion, or null once the deletions have been read.
+     * @throws Exception if a chunk cannot be read or decrypted.
+     */
+    public Deletion nextDeletion() throws Exception {
+        while (true) {
+            if (binaryRecords.hasRemaining()) {
+                if (ArticleCodec.peekType(binaryRecords) != ArticleCodec.TYPE_DELETION) {
+                    return null;
+                }
+                return ArticleCodec.decodeDeletion(binaryRecords);
+            }
+            if (nextRecord < records.length) {
+                String record = records[nextRecord];
+                if (!BackupFormat.isDeletionRecord(record)) {
+                    return null;
+                }
+                nextRecord++;
+                String[] fields = record.substring(BackupFormat.DELETION_PREFIX.length()).split("§", 2);
+                return new Deletion(Long.parseLong(fields[0]), fields[1].equals("null") ? null : fields[1]);
+            }
+            if (!readChunk()) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns the next article in the backup, decrypting the next chunk when the current one is used up.
+     *
+     * @return The next article, or null once every article has been read.
+     * @throws Exception if a chunk cannot be read or decrypted.
+     */
+    public HelpArticle next() throws Exception {
+        while (true) {
+            while (binaryRecords.hasRemaining()) {
+                HelpArticle article = ArticleCodec.decode(binaryRecords);
+                if (article != null) {
+                    return article;
+                }
+            }
+            while (nextRecord < records.length) {
+                HelpArticle article = BackupFormat.fromRecord(records[nextRecord++]);
+                if (article != null) {
+                    return article;
+                }
+            }
+            if (!readChunk()) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Reads and decrypts the next chunk into the record buffer.
+     *
+     * @return False once the end marker, or the last selected chunk, has been reached.
+     */
+    private boolean readChunk() throws Exception {
+        if (finished || codec == null) {
+            return false;
+        }
+        if (selectedChunks != null) {
+            if (!selectedChunks.hasNext()) {
+                finished = true;
+                return false;
+            }
+            mapped.position(selectedChunks.next());
+        }
+        // Decrypted into the codec's reusable buffer, which the next chunk overwrites
+        ByteBuffer payload = codec.read(mapped);
+        if (payload == null) {
+            finished = true;
+            return false;
+        }
+        if (formatVersion >= BackupFormat.BINARY_RECORDS_VERSION) {
+            binaryRecords = payload;
+        } else {
+            records = new String(payload.array(), 0, payload.limit(), StandardCharsets.UTF_8).split("\n");
+            nextRecord = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the group index through the trailer at the end of the file, leaving the reader back at the first chunk.
+     */
+    private Map<String, List<Long>> readIndex() throws Exception {
+        long firstChunk = mapped.position();
+        if (fileSize < firstChunk + BackupFormat.TRAILER_LENGTH) {
+            throw new IOException("Backup file is truncated: missing index.");
+        }
+        mapped.position(fileSize - BackupFormat.TRAILER_LENGTH);
+        ByteBuffer trailer = mapped.take(BackupFormat.TRAILER_LENGTH);
+        long indexOffset = trailer.getLong();
+        byte[] magic = new byte[BackupFormat.INDEX_MAGIC.length];
+        trailer.get(magic);
+        if (!Arrays.equals(magic, BackupFormat.INDEX_MAGIC) || indexOffset < firstChunk || indexOffset >= fileSize) {
+            throw new IOException("Backup file is truncated: missing index.");
+        }
+
+        mapped.position(indexOffset);
+        ByteBuffer index = codec.read(mapped);
+        if (index == null) {
+            throw new IOException("Backup index is empty.");
+        }
+        mapped.position(firstChunk);
+        return BackupFormat.decodeIndex(Arrays.copyOf(index.array(), index.limit()));
+    }
+
+    /**
+     * Decodes a legacy backup straight from the mapping, without reading the Base64 text into strings first.
+     */
+    private void readLegacy(FileChannel source) throws Exception {
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Legacy backup is too large to read.");
+        }
+        // Legacy files are one ciphertext, so map the whole file as a single segment
+        ByteBuffer contents = new MappedFile(source, Math.max(fileSize, 1)).take((int) fileSize);
+        int newline = -1;
+        for (int i = 0; i < contents.limit(); i++) {
+            if (contents.get(i) == '\n') {
+                newline = i;
+                break;
+            }
+        }
+        if (newline < 0) {
+            throw new IOException("Not a backup file.");
+        }
+        int end = contents.limit();
+        // Ignore a trailing line break after the ciphertext, as readLine did
+        while (end > newline + 1 && (contents.get(end - 1) == '\n' || contents.get(end - 1) == '\r')) {
+            end--;
+        }
+        int ivEnd = newline > 0 && contents.get(newline - 1) == '\r' ? newline - 1 : newline;
+        if (end == newline + 1) {
+            throw new IOException("Not a backup file.");
+        }
+        ByteBuffer iv = Base64.getDecoder().decode(contents.slice(0, ivEnd));
+        ByteBuffer encrypted = Base64.getDecoder().decode(contents.slice(newline + 1, end - newline - 1));
+        byte[] ivBytes = new byte[iv.remaining()];
+        iv.get(ivBytes);
+        byte[] decrypted = new byte[encrypted.remaining()];
+        int length = encryptionHelper.decrypt(encrypted, ivBytes, ByteBuffer.wrap(decrypted));
+        records = new String(decrypted, 0, length, StandardCharsets.UTF_8).split("\n");
+        finished = true;
+    }
+
+    /**
+     * An article deleted after the incremental backup's base version.
+     */
+    public static final class Deletion {
+        private final long articleId;
+        private final String groupName;
+
+        Deletion(long articleId, String groupName) {
+            this.articleId = articleId;
+            this.groupName = groupName;
+        }
+
+        public long getArticleId() {
+            return articleId;
+        }
+
+        public String getGroupName() {
+            return groupName;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (codec != null) {
+            codec.end();
+        }
+        channel.close();
+    }
+}
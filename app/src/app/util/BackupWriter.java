@@ -0,0 +1,375 @@
+package app.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import Encryption.EncryptionHelper;
+import app.HelpArticle;
+
+/**
+ * The BackupWriter class writes articles to a backup file in the chunked format described by
+ * {@link BackupFormat}. Records are collected until a chunk is full, then the chunk is compressed,
+ * encrypted under its own random IV and written through a file channel, so memory use is bounded by
+ * the chunk size rather than the size of the corpus.
+ *
+ * Every chunk holds records of one group, and the file ends with an index of each group's chunk
+ * offsets. Callers should write articles ordered by group, since each change of group closes the
+ * current chunk early.
+ *
+ * With more than one thread, full chunks are compressed and encrypted on a worker pool while the
+ * caller keeps collecting records. Finished chunks are written by the caller in the order they were
+ * started, and only a few chunks per thread are in flight at once.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+public class BackupWriter implements AutoCloseable {
+
+    // Chunks allowed in flight per worker thread before the caller waits for the oldest one
+    private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 2;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int chunkSize;
+    private final int compressionLevel;
+    private final ByteArrayOutputStream pending;
+    private final ChunkCodec codec; // used on the caller's thread for the index, and for every chunk when there are no workers
+    private final ExecutorService workers; // null when encoding on the caller's thread
+    private final int maxInFlight;
+    private final Deque<PendingChunk> inFlight = new ArrayDeque<>();
+    private final Map<String, List<Long>> chunkOffsets = new LinkedHashMap<>(); // null key for ungrouped articles
+    private String pendingGroup = null;
+    private long position = 0;
+    private final ThreadLocal<ChunkCodec> workerCodecs;
+    private final List<ChunkCodec> allWorkerCodecs = new CopyOnWriteArrayList<>();
+    private long articlesWritten = 0;
+    private boolean closed = false;
+    private boolean failed = false;
+    private boolean articlesStarted = false;
+
+    /**
+     * Constructor for BackupWriter using the default chunk size and compression level.
+     *
+     * @param file             The backup file to create or overwrite.
+     * @param encryptionHelper The helper used to encrypt each chunk.
+     * @throws IOException if the file cannot be opened.
+     */
+    public BackupWriter(Path file, EncryptionHelper encryptionHelper) throws IOException {
+        this(file, encryptionHelper, BackupFormat.DEFAULT_CHUNK_SIZE, BackupFormat.DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Constructor for a single-threaded BackupWriter writing a full backup.
+     *
+     * @param file             The backup file to create or overwrite.
+     * @param encryptionHelper The helper used to encrypt each chunk.
+     * @param chunkSize        The number of plaintext bytes collected before a chunk is written.
+     * @param compressionLevel The Deflate level from 1 (fastest) to 9 (smallest), or 0 to store chunks uncompressed.
+     * @throws IOException if the file cannot be opened.
+     */
+    public BackupWriter(Path file, EncryptionHelper encryptionHelper, int chunkSize, int compressionLevel) throws IOException {
+        this(file, encryptionHelper, chunkSize, compressionLevel, 1, 0, 0);
+    }
+
+    /**
+     * Constructor for BackupWriter.
+     *
+     * @param file             The backup file to create or overwrite.
+     * @param encryptionHelper The helper used to encrypt chunks on the caller's thread.
+     * @param chunkSize        The number of plaintext bytes collected before a chunk is written.
+     * @param compressionLevel The Deflate level from 1 (fastest) to 9 (smallest), or 0 to store chunks uncompressed.
+     * @param threads          The number of threads compressing and encrypting chunks; 1 does it on the caller's thread.
+     * @param baseVersion      The change version an incremental backup starts after, or 0 for a full backup.
+     * @param highVersion      The change version the backup is complete up to.
+     * @throws IOException if the file cannot be opened.
+     */
+    public BackupWriter(Path file, EncryptionHelper encryptionHelper, int chunkSize, int compressionLevel,
+                        int threads, long baseVersion, long highVersion) throws IOException {
+        if (chunkSize < 1 || chunkSize > BackupFormat.MAX_CHUNK_LENGTH / 2) {
+            throw new IllegalArgumentException("Chunk size out of range: " + chunkSize);
+        }
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Compression level must be between 0 and 9.");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1.");
+        }
+        this.file = file;
+        // Opened before the worker pool exists, so a failure here leaves nothing to clean up
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.chunkSize = chunkSize;
+        this.compressionLevel = compressionLevel;
+        this.pending = new ByteArrayOutputStream(chunkSize + chunkSize / 4);
+        this.maxInFlight = threads * CHUNKS_IN_FLIGHT_PER_THREAD;
+        this.codec = new ChunkCodec(encryptionHelper, compressionLevel);
+        if (threads == 1) {
+            this.workers = null;
+            this.workerCodecs = null;
+        } else {
+            this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "backup-chunk-encoder");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // The helper is thread-safe, but each worker needs its own Deflater
+            this.workerCodecs = ThreadLocal.withInitial(() -> {
+                ChunkCodec workerCodec = new ChunkCodec(encryptionHelper, this.compressionLevel);
+                allWorkerCodecs.add(workerCodec);
+                return workerCodec;
+            });
+        }
+
+        try {
+            ByteBuffer fileHeader = ByteBuffer.allocate(BackupFormat.MAGIC.length + 21);
+            fileHeader.put(BackupFormat.MAGIC).putInt(BackupFormat.FORMAT_VERSION)
+                    .put(codec.getCodec())
+                    .putLong(baseVersion).putLong(highVersion).flip();
+            writeFully(fileHeader);
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends an article to the backup, writing out a chunk once enough records have been collected.
+     *
+     * @param article The article to back up, with its body as stored.
+     * @throws IOException if the article is too large for a chunk, so it could never be restored.
+     * @throws Exception if the chunk cannot be encrypted or written.
+     */
+    public void write(HelpArticle article) throws Exception {
+        byte[] record = ArticleCodec.encode(article);
+        if (record.length > BackupFormat.MAX_RECORD_LENGTH) {
+            throw new IOException("Article " + article.getId() + " takes " + record.length + " bytes, more than the "
+                    + BackupFormat.MAX_RECORD_LENGTH + " a backup record can hold.");
+        }
+        articlesStarted = true;
+        articlesWritten++;
+        append(article.getGroupName(), record);
+    }
+
+    /**
+     * Records the deletion of an article in an incremental backup. Deletions must be written before any article.
+     *
+     * @param articleId The ID of the deleted article.
+     * @param groupName The group the article belonged to, or null.
+     * @throws Exception if the chunk cannot be encrypted or written.
+     */
+    public void writeDeletion(long articleId, String groupName) throws Exception {
+        if (articlesStarted) {
+            throw new IllegalStateException("Deletions must be written before any article.");
+        }
+        append(groupName, ArticleCodec.encodeDeletion(articleId, groupName));
+    }
+
+    private void append(String groupName, byte[] record) throws Exception {
+        try {
+            // Keep each chunk to a single group so the index can point at it, and within what a reader accepts
+            if (pending.size() > 0 && (!Objects.equals(groupName, pendingGroup)
+                    || pending.size() + record.length > BackupFormat.MAX_RECORD_LENGTH)) {
+                flushChunk();
+            }
+            pendingGroup = groupName;
+            pending.writeBytes(record);
+            if (pending.size() >= chunkSize) {
+                flushChunk();
+            }
+        } catch (Exception e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    public long getArticlesWritten() {
+        return articlesWritten;
+    }
+
+    /**
+     * Returns the number of bytes written to the file so far. Chunks still being encoded are not counted.
+     *
+     * @return The current file length.
+     */
+    public long getBytesWritten() {
+        return position;
+    }
+
+    /**
+     * Hands the collected records off to be encoded: directly on this thread, or to the worker pool.
+     */
+    private void flushChunk() throws Exception {
+        if (pending.size() == 0) {
+            return;
+        }
+        byte[] raw = pending.toByteArray();
+        pending.reset();
+
+        if (workers == null) {
+            writeChunk(pendingGroup, codec.encode(raw));
+            return;
+        }
+        inFlight.addLast(new PendingChunk(pendingGroup, workers.submit(() -> workerCodecs.get().encode(raw))));
+        // Write finished chunks in order, waiting for the oldest one if too many are outstanding
+        while (!inFlight.isEmpty() && (inFlight.size() > maxInFlight || inFlight.peekFirst().future.isDone())) {
+            writeOldest();
+        }
+    }
+
+    private void writeOldest() throws Exception {
+        PendingChunk oldest = inFlight.pollFirst();
+        try {
+            writeChunk(oldest.groupName, oldest.future.get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private void writeChunk(String groupName, byte[] chunk) throws IOException {
+        chunkOffsets.computeIfAbsent(groupName, key -> new ArrayList<>()).add(position);
+        writeFully(ByteBuffer.wrap(chunk));
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+
+    /**
+     * Abandons the backup after a failure elsewhere, closing and deleting the incomplete file.
+     */
+    public void abort() {
+        failed = true;
+        try {
+            close();
+            Files.deleteIfExists(file);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the last partial chunk and the end marker, then closes the file. After a failed write
+     * the end marker is left off, so the incomplete file is rejected as truncated when read. If the
+     * end of the file cannot be written, the file is deleted.
+     *
+     * @throws IOException if the final chunk cannot be encrypted or written, or the thread is interrupted
+     *                     while waiting for the workers.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Exception finishFailure = null;
+        try {
+            if (!failed) {
+                finish();
+            }
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            finishFailure = e;
+            throw e;
+        } finally {
+            boolean workersStopped = true;
+            InterruptedIOException interrupted = null;
+            if (workers != null) {
+                for (PendingChunk chunk : inFlight) {
+                    chunk.future.cancel(true);
+                }
+                workers.shutdownNow();
+                try {
+                    // Let any cancelled chunk finish before its Deflater is released
+                    workersStopped = workers.awaitTermination(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    workersStopped = false;
+                    interrupted = new InterruptedIOException("Interrupted while stopping the backup workers.");
+                    interrupted.initCause(e);
+                }
+                if (workersStopped) {
+                    for (ChunkCodec workerCodec : allWorkerCodecs) {
+                        workerCodec.end();
+                    }
+                }
+            }
+            codec.end();
+            channel.close();
+            if (finishFailure != null) {
+                // Without its index and trailer the file can never be restored, so do not leave it behind
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    finishFailure.addSuppressed(e);
+                }
+            }
+            if (interrupted != null) {
+                throw interrupted;
+            }
+        }
+    }
+
+    /**
+     * Writes out the remaining chunks, the end marker, the index and the trailer.
+     */
+    private void finish() throws IOException {
+        try {
+            flushChunk();
+            while (!inFlight.isEmpty()) {
+                writeOldest();
+            }
+            writeFully(ByteBuffer.allocate(4).putInt(0).flip());
+
+            // Index chunk, then the trailer pointing back at it
+            long indexOffset = position;
+            writeFully(ByteBuffer.wrap(codec.encode(BackupFormat.encodeIndex(chunkOffsets))));
+            writeFully(ByteBuffer.allocate(BackupFormat.TRAILER_LENGTH).putLong(indexOffset)
+                    .put(BackupFormat.INDEX_MAGIC).flip());
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while finishing the backup.");
+            interrupted.initCause(e);
+            throw interrupted;
+        } catch (Exception e) {
+            throw new IOException("Could not encode the final backup chunks.", e);
+        }
+    }
+
+    /**
+     * A chunk being encoded on the worker pool, with the group its records belong to.
+     */
+    private static final class PendingChunk {
+        private final String groupName;
+        private final Future<byte[]> future;
+
+        PendingChunk(String groupName, Future<byte[]> future) {
+            this.groupName = groupName;
+            this.future = future;
+        }
+    }
+}
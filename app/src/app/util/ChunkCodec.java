@@ -0,0 +1,259 @@
+package app.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import Encryption.EncryptionHelper;
+
+/**
+ * The ChunkCodec class turns blocks of plaintext into the framed chunks used by backup and snapshot
+ * files, and back: a 4-byte ciphertext length, a 16-byte IV and the ciphertext. With compression on,
+ * the block is deflated before it is encrypted and the encrypted payload starts with the 4-byte
+ * uncompressed length. A zero length marks the end of the chunks (see {@link BackupFormat}).
+ *
+ * Each instance keeps its own Deflater or Inflater and reusable buffers, so it must be used by one
+ * thread at a time. Call {@link #end()} once finished to release the native zlib state.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+final class ChunkCodec {
+
+    private final EncryptionHelper encryptionHelper;
+    private final int compressionLevel;
+    private final SecureRandom random = new SecureRandom();
+    private final ByteBuffer header = ByteBuffer.allocate(4 + BackupFormat.IV_LENGTH);
+    private Deflater deflater; // created on first encode
+    private Inflater inflater; // created on first decode
+    private byte[] compressed = new byte[0];
+    private byte[] decrypted = new byte[0]; // reused by mapped reads
+    private byte[] inflated = new byte[0]; // reused by mapped reads
+
+    /**
+     * Constructor for ChunkCodec.
+     *
+     * @param encryptionHelper The helper used to encrypt and decrypt chunks.
+     * @param compressionLevel The Deflate level from 1 (fastest) to 9 (smallest), or 0 for uncompressed chunks.
+     */
+    ChunkCodec(EncryptionHelper encryptionHelper, int compressionLevel) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Compression level must be between 0 and 9.");
+        }
+        this.encryptionHelper = encryptionHelper;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Returns the codec byte recorded in a file header for chunks written by this codec.
+     *
+     * @return {@link BackupFormat#CODEC_DEFLATE} when compressing, otherwise {@link BackupFormat#CODEC_NONE}.
+     */
+    byte getCodec() {
+        return compressionLevel == 0 ? BackupFormat.CODEC_NONE : BackupFormat.CODEC_DEFLATE;
+    }
+
+    /**
+     * Creates a codec for reading chunks written with the given codec byte.
+     *
+     * @param encryptionHelper The helper used to decrypt chunks.
+     * @param codec            The codec byte from the file header.
+     * @return A codec that decompresses when the file's chunks are compressed.
+     * @throws IOException if the codec is not one this build understands.
+     */
+    static ChunkCodec forCodec(EncryptionHelper encryptionHelper, byte codec) throws IOException {
+        if (codec == BackupFormat.CODEC_DEFLATE) {
+            return new ChunkCodec(encryptionHelper, BackupFormat.DEFAULT_COMPRESSION_LEVEL);
+        }
+        if (codec != BackupFormat.CODEC_NONE) {
+            throw new IOException("Unsupported backup compression codec " + codec + ".");
+        }
+        return new ChunkCodec(encryptionHelper, 0);
+    }
+
+    /**
+     * Compresses and encrypts a block under a fresh IV.
+     *
+     * @param raw The plaintext block.
+     * @return The chunk as written to the file: ciphertext length, IV, ciphertext.
+     * @throws IOException if the chunk would be larger than a reader accepts.
+     * @throws Exception if the block cannot be encrypted.
+     */
+    byte[] encode(byte[] raw) throws Exception {
+        if (raw.length > BackupFormat.MAX_CHUNK_LENGTH) {
+            throw new IOException("Backup chunk of " + raw.length + " bytes is larger than a backup can hold.");
+        }
+        byte[] iv = new byte[BackupFormat.IV_LENGTH];
+        random.nextBytes(iv);
+        byte[] encrypted = encryptionHelper.encrypt(compressionLevel == 0 ? raw : compress(raw), iv);
+        if (encrypted.length > BackupFormat.MAX_CHUNK_LENGTH) {
+            throw new IOException("Encrypted backup chunk of " + encrypted.length + " bytes is larger than a backup can hold.");
+        }
+
+        return ByteBuffer.allocate(4 + BackupFormat.IV_LENGTH + encrypted.length)
+                .putInt(encrypted.length).put(iv).put(encrypted).array();
+    }
+
+    /**
+     * Reads the chunk at the channel's position and returns its decrypted, decompressed block.
+     *
+     * @param source The channel to read from.
+     * @return The plaintext block, or null at the end marker.
+     * @throws Exception if the chunk is truncated, corrupt or cannot be decrypted.
+     */
+    byte[] read(ReadableByteChannel source) throws Exception {
+        header.clear().limit(4);
+        if (!BackupFormat.readFully(source, header)) {
+            throw new IOException("Backup file is truncated: missing end marker.");
+        }
+        int length = header.getInt(0);
+        if (length == 0) {
+            return null;
+        }
+        if (length < 0 || length > BackupFormat.MAX_CHUNK_LENGTH) {
+            throw new IOException("Corrupt backup chunk length " + length + ".");
+        }
+
+        header.clear().position(4);
+        if (!BackupFormat.readFully(source, header)) {
+            throw new IOException("Backup file is truncated.");
+        }
+        byte[] iv = Arrays.copyOfRange(header.array(), 4, 4 + BackupFormat.IV_LENGTH);
+        ByteBuffer encrypted = ByteBuffer.allocate(length);
+        if (!BackupFormat.readFully(source, encrypted)) {
+            throw new IOException("Backup file is truncated.");
+        }
+
+        byte[] decrypted = encryptionHelper.decrypt(encrypted.array(), iv);
+        return compressionLevel == 0 ? decrypted : decompress(decrypted);
+    }
+
+    /**
+     * Reads the chunk at the mapped file's position, decrypting straight from the mapping into a
+     * buffer this codec reuses for every chunk.
+     *
+     * @param source The mapped backup file, positioned at a chunk.
+     * @return A view of the plaintext block, valid until the next read; or null at the end marker.
+     * @throws Exception if the chunk is truncated, corrupt or cannot be decrypted.
+     */
+    ByteBuffer read(MappedFile source) throws Exception {
+        if (source.remaining() < 4) {
+            throw new IOException("Backup file is truncated: missing end marker.");
+        }
+        int length = source.take(4).getInt();
+        if (length == 0) {
+            return null;
+        }
+        if (length < 0 || length > BackupFormat.MAX_CHUNK_LENGTH) {
+            throw new IOException("Corrupt backup chunk length " + length + ".");
+        }
+        byte[] iv = new byte[BackupFormat.IV_LENGTH];
+        source.take(BackupFormat.IV_LENGTH).get(iv);
+        ByteBuffer encrypted = source.take(length);
+
+        // Padding only ever shrinks the plaintext, so the ciphertext length is enough room
+        if (decrypted.length < length) {
+            decrypted = new byte[length];
+        }
+        int decryptedLength = encryptionHelper.decrypt(encrypted, iv, ByteBuffer.wrap(decrypted));
+        if (compressionLevel == 0) {
+            return ByteBuffer.wrap(decrypted, 0, decryptedLength);
+        }
+
+        if (decryptedLength < 4) {
+            throw new IOException("Corrupt compressed chunk.");
+        }
+        int rawLength = ByteBuffer.wrap(decrypted).getInt();
+        if (rawLength < 0 || rawLength > BackupFormat.MAX_CHUNK_LENGTH) {
+            throw new IOException("Corrupt compressed chunk length " + rawLength + ".");
+        }
+        if (inflated.length < rawLength) {
+            inflated = new byte[rawLength];
+        }
+        inflate(decrypted, 4, decryptedLength - 4, inflated, rawLength);
+        return ByteBuffer.wrap(inflated, 0, rawLength);
+    }
+
+    /**
+     * Deflates the block, prefixed with its uncompressed length so the reader can size its buffer.
+     */
+    private byte[] compress(byte[] raw) {
+        if (deflater == null) {
+            deflater = new Deflater(compressionLevel);
+        }
+        // Deflate output for incompressible input exceeds the input by a few bytes per 16 KB block
+        int bound = raw.length + raw.length / 1000 + 64;
+        if (compressed.length < 4 + bound) {
+            compressed = new byte[4 + bound];
+        }
+        ByteBuffer.wrap(compressed).putInt(raw.length);
+
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        int length = 4;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        return Arrays.copyOf(compressed, length);
+    }
+
+    /**
+     * Inflates a compressed block: a 4-byte uncompressed length followed by Deflate data.
+     */
+    private byte[] decompress(byte[] payload) throws IOException {
+        int length = ByteBuffer.wrap(payload).getInt();
+        if (length < 0 || length > BackupFormat.MAX_CHUNK_LENGTH) {
+            throw new IOException("Corrupt compressed chunk length " + length + ".");
+        }
+        byte[] raw = new byte[length];
+        inflate(payload, 4, payload.length - 4, raw, length);
+        return raw;
+    }
+
+    /**
+     * Inflates exactly length bytes into output, failing unless the data holds exactly that many.
+     */
+    private void inflate(byte[] input, int offset, int inputLength, byte[] output, int length) throws IOException {
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        inflater.reset();
+        inflater.setInput(input, offset, inputLength);
+        try {
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int n = inflater.inflate(output, inflated, length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != length) {
+                throw new IOException("Compressed chunk does not match its recorded length.");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed chunk.", e);
+        }
+    }
+
+    /**
+     * Releases the Deflater and Inflater. The codec must not be used afterwards.
+     */
+    void end() {
+        if (deflater != null) {
+            deflater.end();
+        }
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+}
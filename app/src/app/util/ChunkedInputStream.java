@@ -0,0 +1,105 @@
+package app.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * The ChunkedInputStream class reads back a logical byte stream written by {@link ChunkedOutputStream},
+ * decrypting one chunk at a time as the bytes are consumed. The stream ends at the end marker; a file
+ * that stops before it is reported as truncated.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+final class ChunkedInputStream extends InputStream {
+
+    private final ReadableByteChannel channel;
+    private final ChunkCodec codec;
+    private byte[] chunk = new byte[0];
+    private int position = 0;
+    private boolean finished = false;
+    private boolean closed = false;
+
+    /**
+     * Constructor for ChunkedInputStream.
+     *
+     * @param channel The channel positioned at the first chunk; it is closed with the stream.
+     * @param codec   The codec that decrypts and decompresses each chunk; it is released with the stream.
+     */
+    ChunkedInputStream(ReadableByteChannel channel, ChunkCodec codec) {
+        this.channel = channel;
+        this.codec = codec;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return chunk[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(length, chunk.length - position);
+        System.arraycopy(chunk, position, bytes, offset, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return chunk.length - position;
+    }
+
+    /**
+     * Makes sure unread bytes are buffered, decrypting the next chunk when the current one is used up.
+     *
+     * @return False once the end marker has been reached.
+     */
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed.");
+        }
+        while (position == chunk.length) {
+            if (finished) {
+                return false;
+            }
+            byte[] next;
+            try {
+                next = codec.read(channel);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Could not decrypt backup chunk.", e);
+            }
+            if (next == null) {
+                finished = true;
+                return false;
+            }
+            chunk = next;
+            position = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Releases the codec and closes the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        codec.end();
+        channel.close();
+    }
+}
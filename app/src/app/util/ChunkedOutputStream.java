@@ -0,0 +1,130 @@
+package app.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * The ChunkedOutputStream class writes one logical byte stream as a sequence of chunks encoded by a
+ * {@link ChunkCodec}, so a stream of any length is encrypted without ever being held in memory whole.
+ *
+ * {@link #finish()} writes the last partial chunk and the end marker. A stream closed without being
+ * finished has no end marker, so the incomplete file is rejected as truncated when read back.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+final class ChunkedOutputStream extends OutputStream {
+
+    private final WritableByteChannel channel;
+    private final ChunkCodec codec;
+    private final byte[] buffer;
+    private int count = 0;
+    private long bytesWritten = 0;
+    private boolean finished = false;
+    private boolean closed = false;
+
+    /**
+     * Constructor for ChunkedOutputStream.
+     *
+     * @param channel   The channel chunks are written to; it is closed with the stream.
+     * @param codec     The codec that compresses and encrypts each chunk; it is released with the stream.
+     * @param chunkSize The number of plaintext bytes collected before a chunk is written.
+     */
+    ChunkedOutputStream(WritableByteChannel channel, ChunkCodec codec, int chunkSize) {
+        if (chunkSize < 1 || chunkSize > BackupFormat.MAX_CHUNK_LENGTH / 2) {
+            throw new IllegalArgumentException("Chunk size out of range: " + chunkSize);
+        }
+        this.channel = channel;
+        this.codec = codec;
+        this.buffer = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (count == buffer.length) {
+            flushChunk();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        while (length > 0) {
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            int n = Math.min(length, buffer.length - count);
+            System.arraycopy(bytes, offset, buffer, count, n);
+            count += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Returns the number of bytes written to the channel so far, not counting the chunk being collected.
+     *
+     * @return The bytes written through this stream.
+     */
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Writes the last partial chunk and the end marker. Nothing may be written afterwards.
+     *
+     * @throws IOException if the chunk cannot be encrypted or written.
+     */
+    void finish() throws IOException {
+        ensureOpen();
+        flushChunk();
+        writeFully(ByteBuffer.allocate(4).putInt(0).flip());
+        finished = true;
+    }
+
+    private void flushChunk() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        byte[] chunk;
+        try {
+            chunk = codec.encode(Arrays.copyOf(buffer, count));
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Could not encrypt backup chunk.", e);
+        }
+        count = 0;
+        writeFully(ByteBuffer.wrap(chunk));
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            bytesWritten += channel.write(source);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed || finished) {
+            throw new IOException("Stream is already " + (closed ? "closed." : "finished."));
+        }
+    }
+
+    /**
+     * Releases the codec and closes the channel, without finishing the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        codec.end();
+        channel.close();
+    }
+}
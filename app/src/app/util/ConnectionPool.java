@@ -0,0 +1,732 @@
+package app.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ConnectionPool class hands out pooled JDBC connections to the application database.
+ * Connections are created on demand up to a fixed maximum and returned to the pool when the
+ * caller closes them, so opening a page or running a query never pays the cost of a fresh connect.
+ *
+ * A background housekeeper evicts connections that have been idle too long or have outlived their
+ * maximum lifetime, and reports connections that have been borrowed for longer than the leak threshold.
+ * Borrow latency and pool usage are recorded and exposed through {@link #getStats()}.
+ *
+ * Each physical connection also keeps a bounded LRU cache of its prepared statements keyed by SQL text.
+ * Closing a statement prepared through a pooled connection clears its parameters and keeps it for the
+ * next caller preparing the same SQL on that connection, so hot lookups skip parsing and planning.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+public class ConnectionPool {
+
+    // Defaults used for the application-wide pool
+    static final int DEFAULT_MAX_SIZE = 8;
+    static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 10_000;
+    static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 5 * 60_000;
+    static final long DEFAULT_MAX_LIFETIME_MILLIS = 30 * 60_000;
+    static final long DEFAULT_LEAK_THRESHOLD_MILLIS = 60_000;
+    static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+    static final long HOUSEKEEPING_INTERVAL_MILLIS = 15_000;
+
+    private static ConnectionPool instance;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final long leakThresholdMillis;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown = false;
+
+    // Metrics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong borrowNanosTotal = new AtomicLong();
+    private final AtomicLong borrowNanosMax = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    /**
+     * Constructor for ConnectionPool.
+     *
+     * @param url                 The JDBC URL of the database.
+     * @param user                The database user.
+     * @param password            The database password.
+     * @param maxSize             The maximum number of connections open at once.
+     * @param borrowTimeoutMillis How long a caller waits for a free connection before failing.
+     * @param idleTimeoutMillis   How long an unused connection is kept before it is closed.
+     * @param maxLifetimeMillis   How long any connection is kept before it is replaced.
+     * @param leakThresholdMillis How long a connection may be borrowed before it is reported as leaked (0 disables leak detection).
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMillis,
+                          long idleTimeoutMillis, long maxLifetimeMillis, long leakThresholdMillis) {
+        this(url, user, password, maxSize, borrowTimeoutMillis, idleTimeoutMillis, maxLifetimeMillis,
+                leakThresholdMillis, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructor for ConnectionPool with an explicit prepared-statement cache size.
+     *
+     * @param url                 The JDBC URL of the database.
+     * @param user                The database user.
+     * @param password            The database password.
+     * @param maxSize             The maximum number of connections open at once.
+     * @param borrowTimeoutMillis How long a caller waits for a free connection before failing.
+     * @param idleTimeoutMillis   How long an unused connection is kept before it is closed.
+     * @param maxLifetimeMillis   How long any connection is kept before it is replaced.
+     * @param leakThresholdMillis How long a connection may be borrowed before it is reported as leaked (0 disables leak detection).
+     * @param statementCacheSize  How many prepared statements each connection keeps for reuse (0 disables the cache).
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMillis,
+                          long idleTimeoutMillis, long maxLifetimeMillis, long leakThresholdMillis,
+                          int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1.");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.permits = new Semaphore(maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.min(HOUSEKEEPING_INTERVAL_MILLIS, idleTimeoutMillis / 2);
+        if (leakThresholdMillis > 0) {
+            interval = Math.min(interval, leakThresholdMillis / 2);
+        }
+        interval = Math.max(1, interval);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the application-wide pool for the application database, creating it on first use.
+     *
+     * @return The shared ConnectionPool.
+     * @throws SQLException if the JDBC driver cannot be loaded.
+     */
+    public static synchronized ConnectionPool getInstance() throws SQLException {
+        if (instance == null || instance.shutdown) {
+            try {
+                Class.forName(DatabaseHelper.JDBC_DRIVER); // Load the JDBC driver
+            } catch (ClassNotFoundException e) {
+                throw new SQLException("JDBC Driver not found: " + e.getMessage(), e);
+            }
+            instance = new ConnectionPool(DatabaseHelper.DB_URL, DatabaseHelper.USER, DatabaseHelper.PASS,
+                    DEFAULT_MAX_SIZE, DEFAULT_BORROW_TIMEOUT_MILLIS, DEFAULT_IDLE_TIMEOUT_MILLIS,
+                    DEFAULT_MAX_LIFETIME_MILLIS, DEFAULT_LEAK_THRESHOLD_MILLIS);
+        }
+        return instance;
+    }
+
+    /**
+     * Shuts down the application-wide pool if it has been created.
+     */
+    public static synchronized void shutdownInstance() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing the returned connection hands it back to the pool.
+     *
+     * @return A pooled connection.
+     * @throws SQLException if the pool is shut down, no connection frees up in time, or connecting fails.
+     */
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down.");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + " ms waiting for a pooled connection.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection.", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = new PooledConnection(DriverManager.getConnection(url, user, password));
+                createdCount.incrementAndGet();
+            }
+            Lease lease = new Lease(pooled);
+            leases.add(lease);
+            recordBorrow(System.nanoTime() - start);
+            return lease.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the most recently used idle connection, discarding any that have expired or gone bad.
+     */
+    private PooledConnection takeIdle() {
+        while (true) {
+            PooledConnection pooled;
+            synchronized (idle) {
+                pooled = idle.pollFirst();
+            }
+            if (pooled == null) {
+                return null;
+            }
+            if (isExpired(pooled, System.currentTimeMillis()) || !pooled.isUsable()) {
+                evict(pooled);
+                continue;
+            }
+            return pooled;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool once its lease is closed.
+     */
+    private void release(Lease lease) {
+        if (!leases.remove(lease)) {
+            return;
+        }
+        PooledConnection pooled = lease.pooled;
+        try {
+            boolean reusable = !shutdown && pooled.reset() && !isExpired(pooled, System.currentTimeMillis());
+            if (reusable) {
+                pooled.lastUsedAt = System.currentTimeMillis();
+                synchronized (idle) {
+                    idle.addFirst(pooled);
+                }
+            } else {
+                evict(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isExpired(PooledConnection pooled, long now) {
+        return now - pooled.createdAt >= maxLifetimeMillis;
+    }
+
+    private void evict(PooledConnection pooled) {
+        evictedCount.incrementAndGet();
+        pooled.closeQuietly();
+    }
+
+    private void recordBorrow(long nanos) {
+        borrowCount.incrementAndGet();
+        borrowNanosTotal.addAndGet(nanos);
+        borrowNanosMax.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Evicts idle and expired connections and reports leases held past the leak threshold.
+     */
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        synchronized (idle) {
+            Iterator<PooledConnection> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                PooledConnection pooled = iterator.next();
+                if (now - pooled.lastUsedAt >= idleTimeoutMillis || isExpired(pooled, now)) {
+                    iterator.remove();
+                    evict(pooled);
+                }
+            }
+        }
+        if (leakThresholdMillis <= 0) {
+            return;
+        }
+        for (Lease lease : leases) {
+            if (!lease.leakReported && now - lease.borrowedAt >= leakThresholdMillis) {
+                lease.leakReported = true;
+                leakCount.incrementAndGet();
+                System.err.println("Possible connection leak: connection borrowed " + (now - lease.borrowedAt)
+                        + " ms ago has not been returned to the pool.");
+                lease.borrowSite.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops the housekeeper. Borrowed connections are closed when returned.
+     */
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        synchronized (idle) {
+            for (PooledConnection pooled : idle) {
+                pooled.closeQuietly();
+            }
+            idle.clear();
+        }
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Returns a snapshot of the pool's usage and borrow-latency metrics.
+     *
+     * @return The current pool statistics.
+     */
+    public PoolStats getStats() {
+        int idleCount;
+        synchronized (idle) {
+            idleCount = idle.size();
+        }
+        long borrows = borrowCount.get();
+        return new PoolStats(maxSize, leases.size(), idleCount, borrows, createdCount.get(), evictedCount.get(),
+                timeoutCount.get(), leakCount.get(),
+                borrows == 0 ? 0 : borrowNanosTotal.get() / borrows, borrowNanosMax.get(),
+                statementHits.get(), statementMisses.get());
+    }
+
+    /**
+     * A physical connection owned by the pool, together with its prepared-statement cache.
+     */
+    private final class PooledConnection {
+        private final Connection connection;
+        private final int isolation; // the driver's default, restored after a borrower changes it
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastUsedAt = createdAt;
+
+        // Access-ordered, so the eldest entry is the least recently prepared statement
+        private final Map<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= statementCacheSize) {
+                    return false;
+                }
+                eldest.getValue().uncache();
+                return true;
+            }
+        };
+
+        // Statements handed out during the current lease and not yet closed, so reset() can close any left open
+        private final Set<StatementHandle> openHandles = new HashSet<>();
+        private final List<Statement> openStatements = new ArrayList<>();
+
+        PooledConnection(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.isolation = connection.getTransactionIsolation();
+        }
+
+        boolean isUsable() {
+            try {
+                return !connection.isClosed();
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Returns a prepared statement for the SQL, reusing the cached one when it is not already in use.
+         *
+         * @param sql               The SQL text.
+         * @param autoGeneratedKeys The generated-keys flag, or null for the plain overload.
+         */
+        PreparedStatement prepare(String sql, Integer autoGeneratedKeys) throws SQLException {
+            String key = autoGeneratedKeys == null ? sql : autoGeneratedKeys + ":" + sql;
+            CachedStatement cached = statements.get(key);
+            if (cached != null && !cached.inUse) {
+                statementHits.incrementAndGet();
+                return cached.checkOut();
+            }
+
+            statementMisses.incrementAndGet();
+            PreparedStatement statement = autoGeneratedKeys == null
+                    ? connection.prepareStatement(sql)
+                    : connection.prepareStatement(sql, autoGeneratedKeys);
+            CachedStatement created = new CachedStatement(key, statement);
+            // A statement already checked out for the same SQL (a nested use) is left in the cache untouched
+            if (cached == null && statementCacheSize > 0) {
+                statements.put(key, created);
+            } else {
+                created.cached = false;
+            }
+            return created.checkOut();
+        }
+
+        /**
+         * Remembers a statement created on the connection outside the cache, forgetting any already closed.
+         */
+        void track(Statement statement) throws SQLException {
+            Iterator<Statement> iterator = openStatements.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isClosed()) {
+                    iterator.remove();
+                }
+            }
+            openStatements.add(statement);
+        }
+
+        /**
+         * Rolls back any unfinished transaction and restores the isolation level so the next borrower starts clean.
+         * Statements the borrower never closed are closed first, and leaked cached ones are dropped from the
+         * cache, so a handle kept past the lease cannot run on the next borrower's connection.
+         */
+        boolean reset() {
+            try {
+                if (connection.isClosed()) {
+                    return false;
+                }
+                for (StatementHandle handle : new ArrayList<>(openHandles)) {
+                    handle.discard();
+                }
+                for (Statement statement : openStatements) {
+                    statement.close();
+                }
+                openStatements.clear();
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                if (connection.getTransactionIsolation() != isolation) {
+                    connection.setTransactionIsolation(isolation);
+                }
+                connection.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void closeQuietly() {
+            // Closing the connection also closes every statement it prepared
+            statements.clear();
+            openHandles.clear();
+            openStatements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * A prepared statement owned by the connection. While cached, closing a checked-out handle
+         * clears the parameters and makes the statement available to the next caller instead of closing it.
+         */
+        private final class CachedStatement {
+            private final String key;
+            private final PreparedStatement statement;
+            private boolean cached = true;
+            private boolean inUse = false;
+
+            CachedStatement(String key, PreparedStatement statement) {
+                this.key = key;
+                this.statement = statement;
+            }
+
+            PreparedStatement checkOut() {
+                inUse = true;
+                StatementHandle handle = new StatementHandle(this);
+                openHandles.add(handle);
+                return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                        new Class<?>[] { PreparedStatement.class }, handle);
+            }
+
+            /**
+             * Called when a handle is closed.
+             */
+            void checkIn() {
+                inUse = false;
+                if (!cached) {
+                    closeQuietly();
+                    return;
+                }
+                try {
+                    statement.clearParameters();
+                    statement.clearBatch();
+                    statement.clearWarnings();
+                } catch (SQLException e) {
+                    statements.remove(key, this);
+                    closeQuietly();
+                }
+            }
+
+            /**
+             * Removes the statement from the cache; it is closed now if idle, or when its handle is closed.
+             */
+            void uncache() {
+                cached = false;
+                if (!inUse) {
+                    closeQuietly();
+                }
+            }
+
+            /**
+             * Called when a lease ends with a handle still open. The statement may still hold the
+             * borrower's results or parameters, so it is closed rather than returned to the cache.
+             */
+            void discard() {
+                inUse = false;
+                cached = false;
+                statements.remove(key, this);
+                closeQuietly();
+            }
+
+            private void closeQuietly() {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        /**
+         * One checkout of a cached statement. Refuses further use once closed.
+         */
+        private final class StatementHandle implements InvocationHandler {
+            private final CachedStatement cached;
+            private boolean closed = false;
+
+            StatementHandle(CachedStatement cached) {
+                this.cached = cached;
+            }
+
+            /**
+             * Closes the handle and its statement when the lease ends with the handle still open.
+             */
+            void discard() {
+                closed = true;
+                openHandles.remove(this);
+                cached.discard();
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!closed) {
+                            closed = true;
+                            openHandles.remove(this);
+                            cached.checkIn();
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed || cached.statement.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Cached" + cached.statement;
+                    default:
+                        if (closed) {
+                            throw new SQLException("Statement has already been closed.");
+                        }
+                        try {
+                            return method.invoke(cached.statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            }
+        }
+    }
+
+    /**
+     * One borrow of a pooled connection. The proxy handed to the caller turns {@code close()} into a
+     * return to the pool and refuses further use once returned.
+     */
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Connection proxy;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final Throwable borrowSite = leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+        private volatile boolean closed = false;
+        private volatile boolean leakReported = false;
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pooled.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.connection;
+                default:
+                    if (closed) {
+                        throw new SQLException("Connection has already been returned to the pool.");
+                    }
+                    if (method.getName().equals("prepareStatement") && isCacheable(args)) {
+                        return pooled.prepare((String) args[0], args.length == 2 ? (Integer) args[1] : null);
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(pooled.connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Statement) {
+                        pooled.track((Statement) result);
+                    }
+                    return result;
+            }
+        }
+
+        /**
+         * Only the plain and generated-keys overloads are cached; the column-index and cursor-type overloads pass through.
+         */
+        private boolean isCacheable(Object[] args) {
+            return args.length == 1 || (args.length == 2 && args[1] instanceof Integer);
+        }
+    }
+
+    /**
+     * A point-in-time view of the pool's metrics.
+     */
+    public static final class PoolStats {
+        private final int maxSize;
+        private final int active;
+        private final int idle;
+        private final long borrows;
+        private final long created;
+        private final long evicted;
+        private final long timeouts;
+        private final long leaks;
+        private final long averageBorrowNanos;
+        private final long maxBorrowNanos;
+        private final long statementHits;
+        private final long statementMisses;
+
+        PoolStats(int maxSize, int active, int idle, long borrows, long created, long evicted,
+                  long timeouts, long leaks, long averageBorrowNanos, long maxBorrowNanos,
+                  long statementHits, long statementMisses) {
+            this.maxSize = maxSize;
+            this.active = active;
+            this.idle = idle;
+            this.borrows = borrows;
+            this.created = created;
+            this.evicted = evicted;
+            this.timeouts = timeouts;
+            this.leaks = leaks;
+            this.averageBorrowNanos = averageBorrowNanos;
+            this.maxBorrowNanos = maxBorrowNanos;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public long getBorrows() {
+            return borrows;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public long getEvicted() {
+            return evicted;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getLeaks() {
+            return leaks;
+        }
+
+        public long getAverageBorrowNanos() {
+            return averageBorrowNanos;
+        }
+
+        public long getMaxBorrowNanos() {
+            return maxBorrowNanos;
+        }
+
+        public long getStatementHits() {
+            return statementHits;
+        }
+
+        public long getStatementMisses() {
+            return statementMisses;
+        }
+
+        @Override
+        public String toString() {
+            return "active=" + active + ", idle=" + idle + ", max=" + maxSize + ", borrows=" + borrows
+                    + ", created=" + created + ", evicted=" + evicted + ", timeouts=" + timeouts + ", leaks=" + leaks
+                    + ", avgBorrowMicros=" + averageBorrowNanos / 1000 + ", maxBorrowMicros=" + maxBorrowNanos / 1000
+                    + ", statementHits=" + statementHits + ", statementMisses=" + statementMisses;
+        }
+    }
+}
@@ -5,16 +5,32 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.nio.charset.StandardCharsets;
-import java.security.SecureRandom;
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.nio.file.Paths;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.Base64;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import Encryption.EncryptionHelper;
+import Encryption.KeyRing;
 import app.HelpArticle;
 import app.User;
 
@@ -27,16 +43,48 @@ import app.User;
  */
 public class DatabaseHelper {
 
-    // JDBC driver name and database URL 
+    // JDBC driver name and database URL (the URL can be overridden with -Dapp.db.url, e.g. for benchmarks;
+    // the key ring is kept beside the database, see KeyRing.getDefault())
     static final String JDBC_DRIVER = "org.h2.Driver";   
-    static final String DB_URL = "jdbc:h2:./database/appDatabase";  
+    static final String DB_URL = System.getProperty("app.db.url", "jdbc:h2:./database/appDatabase");  
 
     //  Database credentials 
     static final String USER = "CSE360Project1"; 
     static final String PASS = "GroupTh23"; 
 
-    private Connection connection = null;
-    private Statement statement = null;
+    // Matches articles (aliased "a") the user bound to the placeholder may read: ungrouped ones, and
+    // group articles where the user holds any role in the group. Same rule as hasAccessToGroupArticle.
+    private static final String ARTICLE_ACCESS_CONDITION = "(a.group_name IS NULL OR EXISTS ("
+            + "SELECT 1 FROM group_members m WHERE m.group_name = a.group_name AND m.username = ?))";
+
+    // Columns read for article listings; everything except the body
+    private static final String ARTICLE_SUMMARY_COLUMNS =
+            "a.id, a.title, a.description, a.level, a.keywords, a.reference_links, a.author_username, a.group_name";
+
+    // Rows fetched per round trip when streaming whole tables
+    static final int STREAM_FETCH_SIZE = 500;
+
+    // Rows sent per JDBC batch when restoring a backup
+    static final int DEFAULT_RESTORE_BATCH_SIZE = 1000;
+
+    // Rows between progress reports and cancellation checks during a backup or restore
+    static final int PROGRESS_INTERVAL = 500;
+
+    // Threads compressing and encrypting backup chunks
+    static final int BACKUP_THREADS = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    // Held shared by every write that takes article change versions, until it commits, and exclusively while
+    // the high-water mark for a backup is read. A restore holds it for its whole transaction.
+    static final ReadWriteLock ARTICLE_VERSION_LOCK = new ReentrantReadWriteLock();
+
+    // How long reading the high-water mark waits for writes in progress, and how often it checks
+    private static final long VERSION_LOCK_TIMEOUT_MILLIS = 60_000;
+    private static final long VERSION_LOCK_POLL_MILLIS = 20;
+
+    // Records a deleted article for incremental backups; run just before the article's row is deleted
+    private static final String TOMBSTONE_ARTICLE = "MERGE INTO article_tombstones (article_id, group_name, version) "
+            + "KEY (article_id) SELECT id, group_name, NEXT VALUE FOR help_articles_version_seq FROM help_articles WHERE id = ?";
+
     private EncryptionHelper encryptionHelper;
 
     /**
@@ -49,81 +97,35 @@ public class DatabaseHelper {
         encryptionHelper = new EncryptionHelper();
     }
 
+    /**
+     * Constructor for DatabaseHelper using the given encryption helper and its key ring.
+     *
+     * @param encryptionHelper The helper used to encrypt and decrypt group article bodies.
+     */
+    public DatabaseHelper(EncryptionHelper encryptionHelper) {
+        this.encryptionHelper = encryptionHelper;
+    }
+
     /**
      * Connects to the database.
+     * Connections are drawn from the shared {@link ConnectionPool}, and the schema is brought up to date
+     * by {@link SchemaMigrator} the first time any helper connects, so after startup this costs nothing.
      *
      * @throws SQLException if an error occurs while connecting to the database.
      */
     public void connectToDatabase() throws SQLException {
-        try {
-            Class.forName(JDBC_DRIVER); // Load the JDBC driver
-            connection = DriverManager.getConnection(DB_URL, USER, PASS);
-            statement = connection.createStatement(); 
-            createTables();  // Create the necessary tables if they don't exist
-        } catch (ClassNotFoundException e) {
-            System.err.println("JDBC Driver not found: " + e.getMessage());
-        }
+        SchemaMigrator.migrateOnce();
     }
 
     /**
-     * Creates the necessary tables if they don't already exist.
+     * Borrows a connection from the shared pool. Closing it returns it to the pool.
+     * Statements prepared through it are cached per connection, so closing them after each call is cheap.
      *
-     * @throws SQLException if an error occurs during table creation.
-     */
-    private void createTables() throws SQLException {
-        String userTable = "CREATE TABLE IF NOT EXISTS users ("
-                + "username VARCHAR(255) PRIMARY KEY, "
-                + "password_hash VARCHAR(255), "
-                + "email VARCHAR(255), "
-                + "first_name VARCHAR(255), "
-                + "middle_name VARCHAR(255), "
-                + "last_name VARCHAR(255), "
-                + "preferred_name VARCHAR(255), "
-                + "roles VARCHAR(255), "
-                + "level VARCHAR(255))";
-        statement.execute(userTable);
-
-        String articleTable = "CREATE TABLE IF NOT EXISTS help_articles ("
-                + "id INT AUTO_INCREMENT PRIMARY KEY, "
-                + "title VARCHAR(255), "
-                + "description VARCHAR(1000), "
-                + "body TEXT, "
-                + "level VARCHAR(255), "
-                + "keywords VARCHAR(500), "
-                + "reference_links VARCHAR(1000), "
-                + "author_username VARCHAR(255), "
-                + "group_name VARCHAR(255))";
-        statement.execute(articleTable);
-
-        String invitationTable = "CREATE TABLE IF NOT EXISTS invitations ("
-                + "token VARCHAR(255) PRIMARY KEY, "
-                + "roles VARCHAR(255))";
-        statement.execute(invitationTable);
-
-        String groupTable = "CREATE TABLE IF NOT EXISTS groups ("
-                + "name VARCHAR(255) PRIMARY KEY, "
-                + "admins VARCHAR(1000), "
-                + "instructors VARCHAR(1000), "
-                + "instructor_admins VARCHAR(1000), "
-                + "students VARCHAR(1000), "
-                + "article_ids VARCHAR(1000))";
-        statement.execute(groupTable);
-        
-        String messagesTable = "CREATE TABLE IF NOT EXISTS help_messages ("
-                + "id INT AUTO_INCREMENT PRIMARY KEY, "
-                + "username VARCHAR(255), "
-                + "message_type VARCHAR(50), "
-                + "message_content TEXT, "
-                + "search_terms VARCHAR(255), "
-                + "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP)";
-        statement.execute(messagesTable);
-        
-        String bookmarksTable = "CREATE TABLE IF NOT EXISTS bookmarks ("
-                + "username VARCHAR(255), "
-                + "article_id INT, "
-                + "PRIMARY KEY (username, article_id))";
-        statement.execute(bookmarksTable);
-        
+     * @return A pooled connection to the application database.
+     * @throws SQLException if no connection can be obtained.
+     */
+    private Connection getConnection() throws SQLException {
+        return ConnectionPool.getInstance().getConnection();
     }
 
     /**
@@ -134,7 +136,8 @@ public class DatabaseHelper {
      */
     public void registerUser(User user) throws Exception {
         String insertUser = "INSERT INTO users (username, password_hash, email, first_name, middle_name, last_name, preferred_name, roles, level) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(insertUser)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(insertUser)) {
             pstmt.setString(1, user.getUsername());
             pstmt.setString(2, user.getPassword());
             pstmt.setString(3, user.getEmail());
@@ -157,7 +160,8 @@ public class DatabaseHelper {
     public Collection<User> getAllUsers() throws SQLException {
         String query = "SELECT * FROM users";
         Collection<User> users = new ArrayList<>();
-        try (Statement stmt = connection.createStatement();
+        try (Connection connection = getConnection();
+             Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(query)) {
             while (rs.next()) {
                 User user = new User(
@@ -186,7 +190,8 @@ public class DatabaseHelper {
      */
     public User getUser(String username) throws SQLException {
         String query = "SELECT * FROM users WHERE username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, username);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
@@ -216,7 +221,8 @@ public class DatabaseHelper {
      */
     public void updateUser(User user) throws SQLException {
         String updateQuery = "UPDATE users SET password_hash = ?, email = ?, first_name = ?, middle_name = ?, last_name = ?, preferred_name = ?, roles = ?, level = ? WHERE username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(updateQuery)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(updateQuery)) {
             pstmt.setString(1, user.getPassword());
             pstmt.setString(2, user.getEmail());
             pstmt.setString(3, user.getFirstName());
@@ -238,7 +244,8 @@ public class DatabaseHelper {
      */
     public void deleteUser(String username) throws SQLException {
         String deleteQuery = "DELETE FROM users WHERE username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(deleteQuery)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(deleteQuery)) {
             pstmt.setString(1, username);
             pstmt.executeUpdate();
         }
@@ -253,7 +260,8 @@ public class DatabaseHelper {
      */
     public boolean doesUserExist(String username) throws SQLException {
         String query = "SELECT COUNT(*) AS count FROM users WHERE username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, username);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
@@ -274,7 +282,8 @@ public class DatabaseHelper {
      */
     public void storeHelpMessage(String username, String messageType, String messageContent, String searchTerms) {
         String insertMessage = "INSERT INTO help_messages (username, message_type, message_content, search_terms) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(insertMessage)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(insertMessage)) {
             pstmt.setString(1, username);
             pstmt.setString(2, messageType);
             pstmt.setString(3, messageContent);
@@ -293,7 +302,8 @@ public class DatabaseHelper {
     public List<String> getAllHelpMessages() {
         List<String> messages = new ArrayList<>();
         String query = "SELECT * FROM help_messages ORDER BY timestamp DESC";
-        try (Statement stmt = connection.createStatement();
+        try (Connection connection = getConnection();
+             Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(query)) {
             while (rs.next()) {
                 String message = "[" + rs.getTimestamp("timestamp") + "] "
@@ -313,20 +323,27 @@ public class DatabaseHelper {
 
     /**
      * Creates a new group in the database.
+     * The group row, its memberships and its article mappings are written in one transaction.
      *
      * @param group The Group object to be created.
      * @throws SQLException if an error occurs during group insertion.
      */
     public void createGroup(Group group) throws SQLException {
-        String insertGroup = "INSERT INTO groups (name, admins, instructors, instructor_admins, students, article_ids) VALUES (?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(insertGroup)) {
-            pstmt.setString(1, group.getName());
-            pstmt.setString(2, String.join(",", group.getAdmins()));
-            pstmt.setString(3, String.join(",", group.getInstructors()));
-            pstmt.setString(4, String.join(",", group.getInstructorAdmins()));
-            pstmt.setString(5, String.join(",", group.getStudents()));
-            pstmt.setString(6, group.getArticleIds().stream().map(Object::toString).reduce((a,b)->a+","+b).orElse(""));
-            pstmt.executeUpdate();
+        String insertGroup = "INSERT INTO groups (name) VALUES (?)";
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = connection.prepareStatement(insertGroup)) {
+                    pstmt.setString(1, group.getName());
+                    pstmt.executeUpdate();
+                }
+                insertGroupMembers(connection, group.getName(), membershipRows(group));
+                insertGroupArticles(connection, group.getName(), group.getArticleIds());
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         }
     }
 
@@ -338,42 +355,10 @@ public class DatabaseHelper {
      * @throws SQLException if an error occurs during group retrieval.
      */
     public Group getGroup(String name) throws SQLException {
-        String query = "SELECT * FROM groups WHERE name = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, name);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    Group group = new Group(name);
-                    String admins = rs.getString("admins");
-                    String instructors = rs.getString("instructors");
-                    String instructorAdmins = rs.getString("instructor_admins");
-                    String students = rs.getString("students");
-                    String articleIds = rs.getString("article_ids");
-
-                    if (admins != null && !admins.isEmpty()) {
-                        group.getAdmins().addAll(Set.of(admins.split(",")));
-                    }
-                    if (instructors != null && !instructors.isEmpty()) {
-                        group.getInstructors().addAll(Set.of(instructors.split(",")));
-                    }
-                    if (instructorAdmins != null && !instructorAdmins.isEmpty()) {
-                        group.getInstructorAdmins().addAll(Set.of(instructorAdmins.split(",")));
-                    }
-                    if (students != null && !students.isEmpty()) {
-                        group.getStudents().addAll(Set.of(students.split(",")));
-                    }
-                    if (articleIds != null && !articleIds.isEmpty()) {
-                        Set<Long> ids = new HashSet<>();
-                        for (String idStr : articleIds.split(",")) {
-                            ids.add(Long.parseLong(idStr));
-                        }
-                        group.getArticleIds().addAll(ids);
-                    }
-                    return group;
-                }
-            }
+        try (Connection connection = getConnection()) {
+            Collection<Group> groups = loadGroups(connection, "= ?", name);
+            return groups.isEmpty() ? null : groups.iterator().next();
         }
-        return null;
     }
 
     /**
@@ -383,74 +368,208 @@ public class DatabaseHelper {
      * @throws SQLException if an error occurs during group retrieval.
      */
     public Set<Group> getAllGroups() throws SQLException {
-        String query = "SELECT * FROM groups";
-        Set<Group> groups = new HashSet<>();
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            while (rs.next()) {
-                String name = rs.getString("name");
-                Group group = new Group(name);
-                String admins = rs.getString("admins");
-                String instructors = rs.getString("instructors");
-                String instructorAdmins = rs.getString("instructor_admins");
-                String students = rs.getString("students");
-                String articleIds = rs.getString("article_ids");
-
-                if (admins != null && !admins.isEmpty()) {
-                    group.getAdmins().addAll(Set.of(admins.split(",")));
-                }
-                if (instructors != null && !instructors.isEmpty()) {
-                    group.getInstructors().addAll(Set.of(instructors.split(",")));
-                }
-                if (instructorAdmins != null && !instructorAdmins.isEmpty()) {
-                    group.getInstructorAdmins().addAll(Set.of(instructorAdmins.split(",")));
-                }
-                if (students != null && !students.isEmpty()) {
-                    group.getStudents().addAll(Set.of(students.split(",")));
-                }
-                if (articleIds != null && !articleIds.isEmpty()) {
-                    Set<Long> ids = new HashSet<>();
-                    for (String idStr : articleIds.split(",")) {
-                        ids.add(Long.parseLong(idStr));
+        try (Connection connection = getConnection()) {
+            return new HashSet<>(loadGroups(connection, null, null));
+        }
+    }
+
+    /**
+     * Retrieves the groups the user belongs to in any role.
+     * Membership is looked up through the username index, so only the user's own groups are read.
+     *
+     * @param user The user whose groups to retrieve.
+     * @return The groups the user is a member of.
+     * @throws SQLException if an error occurs during group retrieval.
+     */
+    public List<Group> getGroupsForUser(User user) throws SQLException {
+        try (Connection connection = getConnection()) {
+            return new ArrayList<>(loadGroups(connection,
+                    "IN (SELECT group_name FROM group_members WHERE username = ?)", user.getUsername()));
+        }
+    }
+
+    /**
+     * Loads groups with their members and article IDs.
+     *
+     * @param connection  The connection to query.
+     * @param nameFilter  A condition applied to the group name (e.g. "= ?"), or null for all groups.
+     * @param parameter   The value bound to the condition's placeholder, if any.
+     * @return The matching groups, ordered by name.
+     */
+    private Collection<Group> loadGroups(Connection connection, String nameFilter, String parameter) throws SQLException {
+        String membersQuery = "SELECT g.name, m.username, m.role FROM groups g "
+                + "LEFT JOIN group_members m ON m.group_name = g.name"
+                + (nameFilter == null ? "" : " WHERE g.name " + nameFilter) + " ORDER BY g.name";
+        String articlesQuery = "SELECT group_name, article_id FROM group_articles"
+                + (nameFilter == null ? "" : " WHERE group_name " + nameFilter);
+
+        Map<String, Group> groups = new LinkedHashMap<>();
+        try (PreparedStatement pstmt = connection.prepareStatement(membersQuery)) {
+            if (nameFilter != null) {
+                pstmt.setString(1, parameter);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Group group = groups.computeIfAbsent(rs.getString("name"), Group::new);
+                    String username = rs.getString("username");
+                    if (username != null) {
+                        group.getMembers(rs.getString("role")).add(username);
                     }
-                    group.getArticleIds().addAll(ids);
                 }
-                groups.add(group);
             }
         }
-        return groups;
-    }
-    
-    public List<Group> getGroupsForUser(User user) throws SQLException {
-        List<Group> userGroups = new ArrayList<>();
-        Set<Group> allGroups = getAllGroups();
-        String username = user.getUsername();
-        for (Group group : allGroups) {
-            if (group.getAdmins().contains(username) ||
-                group.getInstructorAdmins().contains(username) ||
-                group.getInstructors().contains(username) ||
-                group.getStudents().contains(username)) {
-                userGroups.add(group);
+        if (groups.isEmpty()) {
+            return groups.values();
+        }
+
+        try (PreparedStatement pstmt = connection.prepareStatement(articlesQuery)) {
+            if (nameFilter != null) {
+                pstmt.setString(1, parameter);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Group group = groups.get(rs.getString("group_name"));
+                    if (group != null) {
+                        group.getArticleIds().add(rs.getLong("article_id"));
+                    }
+                }
             }
         }
-        return userGroups;
+        return groups.values();
     }
 
     /**
      * Updates an existing group in the database.
+     * Only the memberships and article mappings that changed are written, so updating a large group stays cheap.
      *
      * @param group The Group object with updated information.
      * @throws SQLException if an error occurs during group update.
      */
     public void updateGroup(Group group) throws SQLException {
-        String updateGroup = "UPDATE groups SET admins = ?, instructors = ?, instructor_admins = ?, students = ?, article_ids = ? WHERE name = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(updateGroup)) {
-            pstmt.setString(1, String.join(",", group.getAdmins()));
-            pstmt.setString(2, String.join(",", group.getInstructors()));
-            pstmt.setString(3, String.join(",", group.getInstructorAdmins()));
-            pstmt.setString(4, String.join(",", group.getStudents()));
-            pstmt.setString(5, group.getArticleIds().stream().map(Object::toString).reduce((a,b)->a+","+b).orElse(""));
-            pstmt.setString(6, group.getName());
+        String selectMembers = "SELECT username, role FROM group_members WHERE group_name = ?";
+        String deleteMember = "DELETE FROM group_members WHERE group_name = ? AND username = ? AND role = ?";
+        String selectArticles = "SELECT article_id FROM group_articles WHERE group_name = ?";
+        String deleteArticle = "DELETE FROM group_articles WHERE group_name = ? AND article_id = ?";
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                Set<List<String>> wantedMembers = membershipRows(group);
+                Set<List<String>> removedMembers = new HashSet<>();
+                try (PreparedStatement pstmt = connection.prepareStatement(selectMembers)) {
+                    pstmt.setString(1, group.getName());
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            List<String> row = List.of(rs.getString("username"), rs.getString("role"));
+                            if (!wantedMembers.remove(row)) {
+                                removedMembers.add(row);
+                            }
+                        }
+                    }
+                }
+                if (!removedMembers.isEmpty()) {
+                    try (PreparedStatement pstmt = connection.prepareStatement(deleteMember)) {
+                        for (List<String> row : removedMembers) {
+                            pstmt.setString(1, group.getName());
+                            pstmt.setString(2, row.get(0));
+                            pstmt.setString(3, row.get(1));
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+                }
+                insertGroupMembers(connection, group.getName(), wantedMembers);
+
+                Set<Long> wantedArticles = new HashSet<>(group.getArticleIds());
+                Set<Long> removedArticles = new HashSet<>();
+                try (PreparedStatement pstmt = connection.prepareStatement(selectArticles)) {
+                    pstmt.setString(1, group.getName());
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            long articleId = rs.getLong("article_id");
+                            if (!wantedArticles.remove(articleId)) {
+                                removedArticles.add(articleId);
+                            }
+                        }
+                    }
+                }
+                if (!removedArticles.isEmpty()) {
+                    try (PreparedStatement pstmt = connection.prepareStatement(deleteArticle)) {
+                        for (Long articleId : removedArticles) {
+                            pstmt.setString(1, group.getName());
+                            pstmt.setLong(2, articleId);
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+                }
+                insertGroupArticles(connection, group.getName(), wantedArticles);
+
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Lists the group's memberships as (username, role) pairs.
+     */
+    private Set<List<String>> membershipRows(Group group) {
+        Set<List<String>> rows = new HashSet<>();
+        for (String role : Group.ROLES) {
+            for (String username : group.getMembers(role)) {
+                rows.add(List.of(username, role));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Inserts (username, role) memberships for a group as a single batch.
+     */
+    private void insertGroupMembers(Connection connection, String groupName, Set<List<String>> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        String insertMember = "INSERT INTO group_members (group_name, username, role) VALUES (?, ?, ?)";
+        try (PreparedStatement pstmt = connection.prepareStatement(insertMember)) {
+            for (List<String> row : rows) {
+                pstmt.setString(1, groupName);
+                pstmt.setString(2, row.get(0));
+                pstmt.setString(3, row.get(1));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Inserts article mappings for a group as a single batch.
+     */
+    private void insertGroupArticles(Connection connection, String groupName, Set<Long> articleIds) throws SQLException {
+        if (articleIds.isEmpty()) {
+            return;
+        }
+        String insertArticle = "INSERT INTO group_articles (group_name, article_id) VALUES (?, ?)";
+        try (PreparedStatement pstmt = connection.prepareStatement(insertArticle)) {
+            for (Long articleId : articleIds) {
+                pstmt.setString(1, groupName);
+                pstmt.setLong(2, articleId);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Maps an article to its group, if the group exists. A single indexed insert.
+     */
+    private void linkArticleToGroup(Connection connection, long articleId, String groupName) throws SQLException {
+        String insertArticle = "INSERT INTO group_articles (group_name, article_id) SELECT name, ? FROM groups WHERE name = ?";
+        try (PreparedStatement pstmt = connection.prepareStatement(insertArticle)) {
+            pstmt.setLong(1, articleId);
+            pstmt.setString(2, groupName);
             pstmt.executeUpdate();
         }
     }
@@ -463,7 +582,8 @@ public class DatabaseHelper {
      */
     public void deleteGroup(String name) throws SQLException {
         String deleteGroup = "DELETE FROM groups WHERE name = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(deleteGroup)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(deleteGroup)) {
             pstmt.setString(1, name);
             pstmt.executeUpdate();
         }
@@ -474,7 +594,8 @@ public class DatabaseHelper {
      */
     public void addBookmark(User user, long articleId) throws SQLException {
         String insertBookmark = "INSERT INTO bookmarks (username, article_id) VALUES (?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(insertBookmark)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(insertBookmark)) {
             pstmt.setString(1, user.getUsername());
             pstmt.setLong(2, articleId);
             pstmt.executeUpdate();
@@ -487,7 +608,8 @@ public class DatabaseHelper {
     public List<Long> getBookmarkedArticleIds(User user) throws SQLException {
         List<Long> articleIds = new ArrayList<>();
         String query = "SELECT article_id FROM bookmarks WHERE username = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, user.getUsername());
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
@@ -503,7 +625,8 @@ public class DatabaseHelper {
      */
     public boolean isArticleBookmarked(User user, long articleId) throws SQLException {
         String query = "SELECT COUNT(*) AS count FROM bookmarks WHERE username = ? AND article_id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, user.getUsername());
             pstmt.setLong(2, articleId);
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -520,7 +643,8 @@ public class DatabaseHelper {
      */
     public void removeBookmark(User user, long articleId) throws SQLException {
         String deleteBookmark = "DELETE FROM bookmarks WHERE username = ? AND article_id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(deleteBookmark)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(deleteBookmark)) {
             pstmt.setString(1, user.getUsername());
             pstmt.setLong(2, articleId);
             pstmt.executeUpdate();
@@ -536,50 +660,210 @@ public class DatabaseHelper {
      * @throws Exception if an error occurs during article insertion.
      */
     public void registerArticle(HelpArticle article) throws Exception {
-        String insertArticle = "INSERT INTO help_articles (title, description, body, level, keywords, reference_links, author_username, group_name) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(insertArticle, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, article.getTitle());
-            pstmt.setString(2, article.getDescription());
+        Lock versionLock = ARTICLE_VERSION_LOCK.readLock();
+        versionLock.lock();
+        try {
+            String insertArticle = "INSERT INTO help_articles (title, description, body, encrypted_body, level, keywords, reference_links, author_username, group_name) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            try (Connection connection = getConnection()) {
+                // The article and its group mapping are written together or not at all
+                connection.setAutoCommit(false);
+                try {
+                    long id;
+                    try (PreparedStatement pstmt = connection.prepareStatement(insertArticle, Statement.RETURN_GENERATED_KEYS)) {
+                        pstmt.setString(1, article.getTitle());
+                        pstmt.setString(2, article.getDescription());
+
+                        Blob encryptedBody = bindBody(connection, pstmt, 3, article.getGroupName(),
+                                article.getBody() == null ? null : new StringReader(article.getBody()));
+                        pstmt.setString(5, article.getLevel());
+                        pstmt.setString(6, String.join(",", article.getKeywords()));
+                        pstmt.setString(7, String.join(",", article.getReferenceLinks()));
+                        pstmt.setString(8, article.getAuthorUsername());
+                        pstmt.setString(9, article.getGroupName());
+                        try {
+                            pstmt.executeUpdate();
+                        } finally {
+                            free(encryptedBody);
+                        }
 
-            String bodyToStore = article.getBody();
-            if (article.getGroupName() != null) {
-                // Encrypt the body
-                byte[] iv = new byte[16];
-                SecureRandom random = new SecureRandom();
-                random.nextBytes(iv);
-                byte[] encryptedBody = encryptionHelper.encrypt(bodyToStore.getBytes(StandardCharsets.UTF_8), iv);
-                String ivEncoded = Base64.getEncoder().encodeToString(iv);
-                String encryptedBodyEncoded = Base64.getEncoder().encodeToString(encryptedBody);
-                bodyToStore = ivEncoded + ":" + encryptedBodyEncoded;
-            }
-
-            pstmt.setString(3, bodyToStore);
-            pstmt.setString(4, article.getLevel());
-            pstmt.setString(5, String.join(",", article.getKeywords()));
-            pstmt.setString(6, String.join(",", article.getReferenceLinks()));
-            pstmt.setString(7, article.getAuthorUsername());
-            pstmt.setString(8, article.getGroupName());
-            pstmt.executeUpdate();
+                        try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                            if (generatedKeys.next()) {
+                                id = generatedKeys.getLong(1);
+                            } else {
+                                throw new SQLException("Creating help article failed, no ID obtained.");
+                            }
+                        }
+                    }
 
-            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    article.setId(generatedKeys.getLong(1));
-                } else {
-                    throw new SQLException("Creating help article failed, no ID obtained.");
+                    // If the article is in a group, add it to the group's article list
+                    if (article.getGroupName() != null) {
+                        linkArticleToGroup(connection, id, article.getGroupName());
+                    }
+                    connection.commit();
+                    article.setId(id);
+                } catch (Exception e) {
+                    connection.rollback();
+                    throw e;
                 }
             }
+        } finally {
+            versionLock.unlock();
+        }
+    }
 
-            // If the article is in a group, add it to the group's article list
-            if (article.getGroupName() != null) {
-                Group group = getGroup(article.getGroupName());
-                if (group != null) {
-                    group.addArticleId(article.getId());
-                    updateGroup(group);
+    /**
+     * Binds an article's body to two consecutive parameters: the plaintext body column and the
+     * encrypted_body column. Group articles are encrypted into a binary envelope as the body is read,
+     * through bounded buffers, and leave the text column null; other articles are streamed as plain text.
+     *
+     * @return The BLOB holding the encrypted body, to be freed once the statement has run; or null.
+     */
+    private Blob bindBody(Connection connection, PreparedStatement pstmt, int index, String groupName, Reader body)
+            throws Exception {
+        if (body == null) {
+            pstmt.setNull(index, Types.CLOB);
+            pstmt.setNull(index + 1, Types.BLOB);
+            return null;
+        }
+        if (groupName == null) {
+            pstmt.setCharacterStream(index, body);
+            pstmt.setNull(index + 1, Types.BLOB);
+            return null;
+        }
+        Blob encrypted = connection.createBlob();
+        try (Writer out = new OutputStreamWriter(encryptionHelper.encryptingStream(encrypted.setBinaryStream(1)),
+                StandardCharsets.UTF_8)) {
+            body.transferTo(out);
+        } catch (Exception e) {
+            encrypted.free();
+            throw e;
+        }
+        pstmt.setNull(index, Types.CLOB);
+        pstmt.setBlob(index + 1, encrypted);
+        return encrypted;
+    }
+
+    private static void free(Blob blob) throws SQLException {
+        if (blob != null) {
+            blob.free();
+        }
+    }
+
+    /**
+     * Decrypts a group article's body straight from its encrypted_body stream into out.
+     *
+     * @return False if the row holds no valid envelope.
+     * @throws IOException if the body is under a key the key ring does not hold.
+     */
+    private boolean copyEncryptedBody(ResultSet rs, Writer out) throws Exception {
+        try (InputStream envelope = rs.getBinaryStream("encrypted_body")) {
+            if (envelope == null) {
+                return false;
+            }
+            try (Reader body = new InputStreamReader(encryptionHelper.decryptingStream(envelope), StandardCharsets.UTF_8)) {
+                body.transferTo(out);
+            }
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Decrypts a group article's body from its encrypted_body stream.
+     *
+     * @return The body, or null if the row holds no valid envelope.
+     */
+    private String readEncryptedBody(ResultSet rs) throws Exception {
+        StringWriter body = new StringWriter();
+        return copyEncryptedBody(rs, body) ? body.toString() : null;
+    }
+
+    /**
+     * Streams an article's body into a writer, decrypting group article bodies on the way through
+     * bounded buffers, so even a very large body is never held in memory whole.
+     *
+     * @param id   The ID of the article.
+     * @param user The user requesting the body; group articles need the user to be a group member.
+     * @param out  The writer the body is copied to; it is not closed.
+     * @return False if the article does not exist, the user has no access, or its body is not valid.
+     * @throws Exception if the body cannot be read or decrypted.
+     */
+    public boolean readArticleBody(long id, User user, Writer out) throws Exception {
+        String query = "SELECT a.group_name, a.body, a.encrypted_body FROM help_articles a WHERE a.id = ? AND "
+                + ARTICLE_ACCESS_CONDITION;
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setLong(1, id);
+            pstmt.setString(2, user.getUsername());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+                if (rs.getString("group_name") != null) {
+                    return copyEncryptedBody(rs, out);
+                }
+                try (Reader body = rs.getCharacterStream("body")) {
+                    if (body != null) {
+                        body.transferTo(out);
+                    }
                 }
+                return true;
             }
         }
     }
 
+    /**
+     * Replaces an article's body from a reader, encrypting it on the way for group articles, without
+     * holding the whole body in memory. The article's other fields are left as they are.
+     *
+     * @param id   The ID of the article.
+     * @param body The new body; it is read to the end but not closed.
+     * @throws Exception if the article does not exist or the body cannot be written.
+     */
+    public void updateArticleBody(long id, Reader body) throws Exception {
+        Lock versionLock = ARTICLE_VERSION_LOCK.readLock();
+        versionLock.lock();
+        try {
+            try (Connection connection = getConnection()) {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    // Lock the row so the article cannot move in or out of a group between reading and writing
+                    String groupName;
+                    try (PreparedStatement select = connection.prepareStatement(
+                            "SELECT group_name FROM help_articles WHERE id = ? FOR UPDATE")) {
+                        select.setLong(1, id);
+                        try (ResultSet rs = select.executeQuery()) {
+                            if (!rs.next()) {
+                                throw new SQLException("No help article with ID " + id + ".");
+                            }
+                            groupName = rs.getString("group_name");
+                        }
+                    }
+                    try (PreparedStatement update = connection.prepareStatement("UPDATE help_articles SET body = ?, "
+                            + "encrypted_body = ?, version = NEXT VALUE FOR help_articles_version_seq WHERE id = ?")) {
+                        Blob encryptedBody = bindBody(connection, update, 1, groupName, body);
+                        update.setLong(3, id);
+                        try {
+                            update.executeUpdate();
+                        } finally {
+                            free(encryptedBody);
+                        }
+                    }
+                    connection.commit();
+                } catch (Exception e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
+        } finally {
+            versionLock.unlock();
+        }
+    }
+
     /**
      * Updates an existing help article in the database.
      *
@@ -587,33 +871,49 @@ public class DatabaseHelper {
      * @throws Exception if an error occurs during article update.
      */
     public void updateArticle(HelpArticle article) throws Exception {
-        String updateQuery = "UPDATE help_articles SET title = ?, description = ?, body = ?, level = ?, keywords = ?, reference_links = ?, group_name = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(updateQuery)) {
-            pstmt.setString(1, article.getTitle());
-            pstmt.setString(2, article.getDescription());
-
-            String bodyToStore = article.getBody();
-            if (article.getGroupName() != null) {
-                // Encrypt the body
-                byte[] iv = new byte[16];
-                SecureRandom random = new SecureRandom();
-                random.nextBytes(iv);
-                byte[] encryptedBody = encryptionHelper.encrypt(bodyToStore.getBytes(StandardCharsets.UTF_8), iv);
-                String ivEncoded = Base64.getEncoder().encodeToString(iv);
-                String encryptedBodyEncoded = Base64.getEncoder().encodeToString(encryptedBody);
-                bodyToStore = ivEncoded + ":" + encryptedBodyEncoded;
-            }
-
-            pstmt.setString(3, bodyToStore);
-            pstmt.setString(4, article.getLevel());
-            pstmt.setString(5, String.join(",", article.getKeywords()));
-            pstmt.setString(6, String.join(",", article.getReferenceLinks()));
-            pstmt.setString(7, article.getGroupName());
-            pstmt.setLong(8, article.getId());
-            pstmt.executeUpdate();
+        Lock versionLock = ARTICLE_VERSION_LOCK.readLock();
+        versionLock.lock();
+        try {
+            String updateQuery = "UPDATE help_articles SET title = ?, description = ?, body = ?, encrypted_body = ?, level = ?, keywords = ?, reference_links = ?, group_name = ?, "
+                    + "version = NEXT VALUE FOR help_articles_version_seq WHERE id = ?";
+            try (Connection connection = getConnection()) {
+                // The old mapping is only dropped if the article and its new mapping are written too
+                connection.setAutoCommit(false);
+                try {
+                    try (PreparedStatement pstmt = connection.prepareStatement(updateQuery)) {
+                        pstmt.setString(1, article.getTitle());
+                        pstmt.setString(2, article.getDescription());
+
+                        Blob encryptedBody = bindBody(connection, pstmt, 3, article.getGroupName(),
+                                article.getBody() == null ? null : new StringReader(article.getBody()));
+                        pstmt.setString(5, article.getLevel());
+                        pstmt.setString(6, String.join(",", article.getKeywords()));
+                        pstmt.setString(7, String.join(",", article.getReferenceLinks()));
+                        pstmt.setString(8, article.getGroupName());
+                        pstmt.setLong(9, article.getId());
+                        try {
+                            pstmt.executeUpdate();
+                        } finally {
+                            free(encryptedBody);
+                        }
+                    }
 
-            // Handle group article lists if group changed
-            // Implementation omitted for brevity
+                    // Move the article to its current group's article list
+                    try (PreparedStatement unlink = connection.prepareStatement("DELETE FROM group_articles WHERE article_id = ?")) {
+                        unlink.setLong(1, article.getId());
+                        unlink.executeUpdate();
+                    }
+                    if (article.getGroupName() != null) {
+                        linkArticleToGroup(connection, article.getId(), article.getGroupName());
+                    }
+                    connection.commit();
+                } catch (Exception e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+        } finally {
+            versionLock.unlock();
         }
     }
 
@@ -626,38 +926,23 @@ public class DatabaseHelper {
      * @throws Exception if an error occurs during article retrieval.
      */
     public HelpArticle getArticle(long id, User user) throws Exception {
-        String query = "SELECT * FROM help_articles WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        String query = "SELECT * FROM help_articles a WHERE a.id = ? AND " + ARTICLE_ACCESS_CONDITION;
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setLong(1, id);
+            pstmt.setString(2, user.getUsername());
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
                     String groupName = rs.getString("group_name");
                     String body = rs.getString("body");
                     boolean isEncrypted = groupName != null;
-                    boolean hasAccess = true;
 
                     if (groupName != null) {
-                        // Article is in a special access group
-                        Group group = getGroup(groupName); // Use getGroup instead of getGroupByName
-                        if (group == null) {
-                            // Group not found, deny access
-                            return null;
-                        }
-
-                        if (!hasAccessToGroupArticle(user, group)) {
-                            // User does not have access to view the body
-                            return null;
-                        }
-
-                        // Decrypt the body
-                        String[] parts = body.split(":");
-                        if (parts.length != 2) {
+                        // Article is in a special access group the user belongs to; decrypt the body
+                        body = readEncryptedBody(rs);
+                        if (body == null) {
                             return null; // Invalid encrypted body format
                         }
-                        byte[] iv = Base64.getDecoder().decode(parts[0]);
-                        byte[] encryptedBody = Base64.getDecoder().decode(parts[1]);
-                        byte[] decryptedBodyBytes = encryptionHelper.decrypt(encryptedBody, iv);
-                        body = new String(decryptedBodyBytes, StandardCharsets.UTF_8);
                     }
 
                     HelpArticle article = new HelpArticle(
@@ -681,45 +966,32 @@ public class DatabaseHelper {
 
     /**
      * Retrieves all articles accessible to the user.
+     * Group access is checked in the query, so rows the user cannot read are never fetched.
      *
      * @param user The user requesting the articles.
      * @return A collection of HelpArticle objects.
      * @throws Exception if an error occurs during article retrieval.
      */
     public Collection<HelpArticle> getAllArticles(User user) throws Exception {
-        String query = "SELECT * FROM help_articles";
+        String query = "SELECT * FROM help_articles a WHERE " + ARTICLE_ACCESS_CONDITION;
         Collection<HelpArticle> articles = new ArrayList<>();
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            while (rs.next()) {
-                String groupName = rs.getString("group_name");
-                String body = rs.getString("body");
-                boolean isEncrypted = groupName != null;
-                boolean hasAccess = true;
-
-                if (groupName != null) {
-                    // Article is in a special access group
-                    Group group = getGroup(groupName); // Use getGroup instead of getGroupByName
-                    if (group == null) {
-                        // Group not found, deny access
-                        hasAccess = false;
-                    } else {
-                        hasAccess = hasAccessToGroupArticle(user, group);
-                    }
-                }
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, user.getUsername());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String groupName = rs.getString("group_name");
+                    String body = rs.getString("body");
+                    boolean isEncrypted = groupName != null;
 
-                if (hasAccess) {
                     if (groupName != null) {
                         // Decrypt the body
-                        String[] parts = body.split(":");
-                        if (parts.length != 2) {
+                        body = readEncryptedBody(rs);
+                        if (body == null) {
                             continue; // Invalid encrypted body format
                         }
-                        byte[] iv = Base64.getDecoder().decode(parts[0]);
-                        byte[] encryptedBody = Base64.getDecoder().decode(parts[1]);
-                        byte[] decryptedBodyBytes = encryptionHelper.decrypt(encryptedBody, iv);
-                        body = new String(decryptedBodyBytes, StandardCharsets.UTF_8);
                     }
+
                     HelpArticle article = new HelpArticle(
                             rs.getLong("id"),
                             rs.getString("title"),
@@ -739,6 +1011,177 @@ public class DatabaseHelper {
         return articles;
     }
 
+    /**
+     * Retrieves summaries of all articles accessible to the user, for listings.
+     * The body column is not read and nothing is decrypted; each summary's body is null.
+     * Use {@link #getArticle(long, User)} to load an article's body when it is opened.
+     *
+     * @param user The user requesting the articles.
+     * @return A collection of HelpArticle objects without bodies.
+     * @throws SQLException if an error occurs during article retrieval.
+     */
+    public Collection<HelpArticle> getArticleSummaries(User user) throws SQLException {
+        String query = "SELECT " + ARTICLE_SUMMARY_COLUMNS + " FROM help_articles a WHERE " + ARTICLE_ACCESS_CONDITION;
+        Collection<HelpArticle> articles = new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, user.getUsername());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    articles.add(readArticleSummary(rs));
+                }
+            }
+        }
+        return articles;
+    }
+
+    /**
+     * Retrieves one page of article summaries accessible to the user, in ID order.
+     * Pages are found with keyset pagination: pass the ID of the last article already shown as afterId
+     * (0 for the first page), so each page costs the same no matter how far into the list it is.
+     *
+     * @param user    The user requesting the articles.
+     * @param filter  Which articles to include.
+     * @param afterId Only articles with a greater ID are returned.
+     * @param limit   The maximum number of articles to return.
+     * @return Up to limit article summaries; fewer means there are no more pages.
+     * @throws SQLException if an error occurs during article retrieval.
+     */
+    public List<HelpArticle> getArticlesPage(User user, ArticleFilter filter, long afterId, int limit) throws SQLException {
+        StringBuilder query = new StringBuilder("SELECT ").append(ARTICLE_SUMMARY_COLUMNS)
+                .append(" FROM help_articles a WHERE a.id > ? AND ").append(ARTICLE_ACCESS_CONDITION);
+        List<Object> parameters = new ArrayList<>(List.of(afterId, user.getUsername()));
+        appendArticleFilter(query, parameters, filter);
+        query.append(" ORDER BY a.id LIMIT ?");
+        parameters.add(limit);
+
+        List<HelpArticle> articles = new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query.toString())) {
+            for (int i = 0; i < parameters.size(); i++) {
+                pstmt.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    articles.add(readArticleSummary(rs));
+                }
+            }
+        }
+        return articles;
+    }
+
+    /**
+     * Returns the article at a position in the list {@link #getArticlesPage} pages through, without loading
+     * the articles before it into memory. The database still steps over them with an offset scan, so the
+     * cost grows with the position.
+     *
+     * @param user     The user requesting the article.
+     * @param filter   Which articles to include.
+     * @param position The 1-based position in ID order.
+     * @return The article summary, or null if fewer articles match.
+     * @throws SQLException if an error occurs during retrieval.
+     */
+    public HelpArticle getArticleAt(User user, ArticleFilter filter, long position) throws SQLException {
+        if (position < 1) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder("SELECT ").append(ARTICLE_SUMMARY_COLUMNS)
+                .append(" FROM help_articles a WHERE ").append(ARTICLE_ACCESS_CONDITION);
+        List<Object> parameters = new ArrayList<>(List.of(user.getUsername()));
+        appendArticleFilter(query, parameters, filter);
+        query.append(" ORDER BY a.id LIMIT 1 OFFSET ?");
+        parameters.add(position - 1);
+
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query.toString())) {
+            for (int i = 0; i < parameters.size(); i++) {
+                pstmt.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? readArticleSummary(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Counts the articles accessible to the user that match the filter, per content level.
+     *
+     * @param user   The user requesting the articles.
+     * @param filter Which articles to include.
+     * @return The number of matching articles for each level present.
+     * @throws SQLException if an error occurs during counting.
+     */
+    public Map<String, Long> countArticlesByLevel(User user, ArticleFilter filter) throws SQLException {
+        StringBuilder query = new StringBuilder("SELECT a.level, COUNT(*) AS count FROM help_articles a WHERE ")
+                .append(ARTICLE_ACCESS_CONDITION);
+        List<Object> parameters = new ArrayList<>(List.of(user.getUsername()));
+        appendArticleFilter(query, parameters, filter);
+        query.append(" GROUP BY a.level");
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query.toString())) {
+            for (int i = 0; i < parameters.size(); i++) {
+                pstmt.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getString("level"), rs.getLong("count"));
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Appends the filter's conditions to an article query, adding their values to parameters.
+     */
+    private void appendArticleFilter(StringBuilder query, List<Object> parameters, ArticleFilter filter) {
+        if (filter.getLevel() != null) {
+            query.append(" AND a.level = ?");
+            parameters.add(filter.getLevel());
+        }
+        if (filter.getGroupName() != null) {
+            query.append(" AND a.group_name = ?");
+            parameters.add(filter.getGroupName());
+        }
+        if (filter.getKeyword() != null) {
+            String pattern = "%" + filter.getKeyword().toLowerCase()
+                    .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            query.append(" AND (LOWER(a.title) LIKE ? OR LOWER(a.description) LIKE ? OR LOWER(a.author_username) LIKE ?");
+            parameters.add(pattern);
+            parameters.add(pattern);
+            parameters.add(pattern);
+            try {
+                long id = Long.parseLong(filter.getKeyword());
+                query.append(" OR a.id = ?");
+                parameters.add(id);
+            } catch (NumberFormatException e) {
+                // Not an article ID
+            }
+            query.append(")");
+        }
+    }
+
+    /**
+     * Builds an article without its body from the current row.
+     */
+    private HelpArticle readArticleSummary(ResultSet rs) throws SQLException {
+        String groupName = rs.getString("group_name");
+        return new HelpArticle(
+                rs.getLong("id"),
+                rs.getString("title"),
+                rs.getString("description"),
+                null, // Body is loaded on demand
+                rs.getString("level"),
+                new HashSet<>(Set.of(rs.getString("keywords").split(","))),
+                new HashSet<>(Set.of(rs.getString("reference_links").split(","))),
+                rs.getString("author_username"),
+                groupName,
+                groupName != null
+        );
+    }
+
     // Add this method if getGroupByName is being called elsewhere
     /**
      * Retrieves a group by its name.
@@ -784,156 +1227,843 @@ public class DatabaseHelper {
      * @throws SQLException if an error occurs during article deletion.
      */
     public void deleteArticle(long id) throws SQLException {
-        String deleteQuery = "DELETE FROM help_articles WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(deleteQuery)) {
-            pstmt.setLong(1, id);
-            pstmt.executeUpdate();
+        Lock versionLock = ARTICLE_VERSION_LOCK.readLock();
+        versionLock.lock();
+        try {
+            String deleteQuery = "DELETE FROM help_articles WHERE id = ?";
+            try (Connection connection = getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    // Leave a tombstone so the next incremental backup carries the delete
+                    try (PreparedStatement tombstone = connection.prepareStatement(TOMBSTONE_ARTICLE)) {
+                        tombstone.setLong(1, id);
+                        tombstone.executeUpdate();
+                    }
+                    try (PreparedStatement pstmt = connection.prepareStatement(deleteQuery)) {
+                        pstmt.setLong(1, id);
+                        pstmt.executeUpdate(); // Group article mappings are removed by the foreign key cascade
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+        } finally {
+            versionLock.unlock();
         }
     }
     
     /**
-     * Backs up all articles to a specified file, encrypting the entire file.
+     * Streams every article in ID order, exactly as stored: bodies of group articles stay encrypted, as
+     * the envelope bytes in {@link HelpArticle#getEncryptedBody()}.
+     * Rows are read through a lazily evaluated cursor {@link #STREAM_FETCH_SIZE} at a time, so backup,
+     * export and reindexing jobs can walk the whole table with flat memory use.
      *
-     * @param fileName The name of the backup file.
-     * @throws Exception if an error occurs during the backup process.
+     * The stream holds a pooled connection until it is closed or fully consumed; use it in try-with-resources.
+     *
+     * @return A stream of the stored articles.
+     * @throws SQLException if the query cannot be started.
      */
-    public void backupArticles(String fileName) throws Exception {
-        List<HelpArticle> articles = new ArrayList<>();
-        String query = "SELECT * FROM help_articles";
+    public Stream<HelpArticle> streamArticles() throws SQLException {
+        return streamArticles("SELECT * FROM help_articles ORDER BY id");
+    }
 
-        // Retrieve all articles from the database
-        try (Statement stmt = connection.createStatement();
+    /**
+     * Streams, in ID order, the articles created or updated after the given change version.
+     * Like {@link #streamArticles()}, the stream must be closed.
+     *
+     * @param sinceVersion The change version already covered; 0 streams every article.
+     * @return A stream of the stored articles changed after sinceVersion.
+     * @throws SQLException if the query cannot be started.
+     */
+    public Stream<HelpArticle> streamArticlesChangedSince(long sinceVersion) throws SQLException {
+        return streamArticles("SELECT * FROM help_articles WHERE version > " + sinceVersion + " ORDER BY id");
+    }
+
+    private Stream<HelpArticle> streamArticles(String query) throws SQLException {
+        Connection connection = getConnection();
+        try {
+            ArticleCursor cursor = new ArticleCursor(connection, query);
+            return StreamSupport.stream(cursor, false).onClose(cursor::close);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the latest change version handed out to an article insert, update or delete.
+     * An incremental backup taken with this as its sinceVersion contains only later changes.
+     * Waits for writes still in progress, so every version at or below the one returned is committed.
+     *
+     * @return The highest recorded article change version, or 0 if there are none.
+     * @throws SQLTimeoutException if writes, such as a long restore, are still in progress after a minute.
+     * @throws SQLException if the version cannot be read, or the thread is interrupted while waiting.
+     */
+    public long getArticleChangeVersion() throws SQLException {
+        String query = "SELECT GREATEST(COALESCE((SELECT MAX(version) FROM help_articles), 0), "
+                + "COALESCE((SELECT MAX(version) FROM article_tombstones), 0))";
+        // Versions are taken when a statement runs, not when it commits, so wait for every write holding
+        // one to finish; otherwise it could commit below the mark after a later write committed above it
+        Lock versionLock = ARTICLE_VERSION_LOCK.writeLock();
+        lockForChangeVersion(versionLock);
+        try (Connection connection = getConnection();
+             Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(query)) {
-            while (rs.next()) {
-                HelpArticle article = new HelpArticle(
-                        rs.getLong("id"),
-                        rs.getString("title"),
-                        rs.getString("description"),
-                        rs.getString("body"),
-                        rs.getString("level"),
-                        new HashSet<>(Set.of(rs.getString("keywords").split(","))),
-                        new HashSet<>(Set.of(rs.getString("reference_links").split(","))),
-                        rs.getString("author_username"),
-                        rs.getString("group_name"), // Group name can be null
-                        rs.getString("group_name") != null // Is encrypted if part of a group
-                );
-                articles.add(article);
+            return rs.next() ? rs.getLong(1) : 0;
+        } finally {
+            versionLock.unlock();
+        }
+    }
+
+    /**
+     * Takes the exclusive side of the version lock by polling instead of queueing for it. A queued writer
+     * would hold up every later article write, including edits on the FX thread, until a long restore ended.
+     */
+    private static void lockForChangeVersion(Lock versionLock) throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(VERSION_LOCK_TIMEOUT_MILLIS);
+        while (!versionLock.tryLock()) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new SQLTimeoutException("Article writes are still in progress after "
+                        + VERSION_LOCK_TIMEOUT_MILLIS / 1000 + " seconds; try again once they have finished.");
+            }
+            try {
+                Thread.sleep(VERSION_LOCK_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for article writes to finish.", e);
             }
         }
+    }
+
+    /**
+     * Builds an article from the current row without decrypting the body. An encrypted body is given as
+     * its envelope bytes, {@link HelpArticle#getEncryptedBody()}, so backups carry it without re-encoding.
+     */
+    private static HelpArticle readStoredArticle(ResultSet rs) throws SQLException {
+        byte[] envelope = rs.getBytes("encrypted_body");
+        HelpArticle article = new HelpArticle(
+                rs.getLong("id"),
+                rs.getString("title"),
+                rs.getString("description"),
+                envelope != null ? null : rs.getString("body"),
+                rs.getString("level"),
+                new HashSet<>(Set.of(rs.getString("keywords").split(","))),
+                new HashSet<>(Set.of(rs.getString("reference_links").split(","))),
+                rs.getString("author_username"),
+                rs.getString("group_name"), // Group name can be null
+                rs.getString("group_name") != null // Is encrypted if part of a group
+        );
+        article.setEncryptedBody(envelope);
+        return article;
+    }
 
-        // Serialize articles into a single string
-        StringBuilder serializedData = new StringBuilder();
-        for (HelpArticle article : articles) {
-            serializedData.append(article.getId()).append("§")
-                    .append(article.getTitle()).append("§")
-                    .append(article.getDescription()).append("§")
-                    .append(article.getBody()).append("§")
-                    .append(article.getLevel()).append("§")
-                    .append(String.join(",", article.getKeywords())).append("§")
-                    .append(String.join(",", article.getReferenceLinks())).append("§")
-                    .append(article.getAuthorUsername()).append("§")
-                    .append(article.getGroupName() == null ? "null" : article.getGroupName()) // Handle null group names
-                    .append("\n");
+    /**
+     * Walks a query over help_articles one row at a time and releases the statement and connection once
+     * the rows run out or the stream is closed.
+     */
+    private static final class ArticleCursor extends Spliterators.AbstractSpliterator<HelpArticle> {
+        private final Connection connection;
+        private final Statement statement;
+        private final ResultSet rs;
+        private boolean closed = false;
+
+        ArticleCursor(Connection connection, String query) throws SQLException {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.connection = connection;
+            this.statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            try {
+                // Embedded H2 materializes results unless lazy execution is on for the session
+                statement.execute("SET LAZY_QUERY_EXECUTION TRUE");
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                this.rs = statement.executeQuery(query);
+            } catch (SQLException e) {
+                // The connection goes back to the pool, so it must not stay in lazy mode
+                try {
+                    endLazyExecution();
+                } catch (SQLException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
         }
 
-        // Encrypt the serialized data
-        byte[] iv = new byte[16];
-        SecureRandom random = new SecureRandom();
-        random.nextBytes(iv);
-        byte[] encryptedData = encryptionHelper.encrypt(serializedData.toString().getBytes(StandardCharsets.UTF_8), iv);
+        private void endLazyExecution() throws SQLException {
+            try {
+                statement.execute("SET LAZY_QUERY_EXECUTION FALSE");
+            } finally {
+                statement.close();
+            }
+        }
 
-        // Write the IV and encrypted data to the file
-        try (FileWriter writer = new FileWriter(fileName)) {
-            String encodedIv = Base64.getEncoder().encodeToString(iv);
-            String encodedData = Base64.getEncoder().encodeToString(encryptedData);
-            writer.write(encodedIv + "\n" + encodedData);
+        @Override
+        public boolean tryAdvance(Consumer<? super HelpArticle> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(readStoredArticle(rs));
+                return true;
+            } catch (SQLException e) {
+                close();
+                throw new RuntimeException("Failed to read the next article.", e);
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                try {
+                    rs.close();
+                } finally {
+                    endLazyExecution();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
         }
     }
 
     /**
-     * Restores articles from an encrypted backup file.
+     * Backs up all articles to a specified file at the default compression level.
      *
      * @param fileName The name of the backup file.
-     * @param merge If true, merges backup entries with current entries; otherwise, deletes current entries before restoring.
-     * @param group The group name to filter by; if null, restores all articles.
-     * @throws Exception if an error occurs during the restore process.
+     * @return The change version the backup is complete up to; pass it to the next incremental backup.
+     * @throws Exception if an error occurs during the backup process; the incomplete file is removed.
+     */
+    public long backupArticles(String fileName) throws Exception {
+        return backupArticles(fileName, 0, BackupFormat.DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Backs up all articles at the default compression level, reporting progress as it goes.
+     *
+     * @param fileName The name of the backup file.
+     * @param listener Receives progress every {@link #PROGRESS_INTERVAL} rows and can cancel the backup, or null.
+     * @return The change version the backup is complete up to; pass it to the next incremental backup.
+     * @throws Exception if an error occurs during the backup process, or it is cancelled; the incomplete file is removed.
+     */
+    public long backupArticles(String fileName, ProgressListener listener) throws Exception {
+        return backupArticles(fileName, 0, BackupFormat.DEFAULT_COMPRESSION_LEVEL, listener);
+    }
+
+    /**
+     * Backs up the articles changed after sinceVersion, at the default compression level.
+     *
+     * @param fileName     The name of the backup file.
+     * @param sinceVersion The version returned by the previous backup in the chain, or 0 for a full backup.
+     * @return The change version the backup is complete up to; pass it to the next incremental backup.
+     * @throws Exception if an error occurs during the backup process; the incomplete file is removed.
+     */
+    public long backupArticles(String fileName, long sinceVersion) throws Exception {
+        return backupArticles(fileName, sinceVersion, BackupFormat.DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Backs up articles to a specified file. Articles are streamed from the database into
+     * independently compressed and encrypted chunks (see {@link BackupWriter}), so memory use does not
+     * grow with the corpus. Chunks are encoded on up to {@link #BACKUP_THREADS} threads.
+     *
+     * With a sinceVersion above 0 the backup is incremental: it holds only the articles created or
+     * updated after that version, plus tombstones for the ones deleted since, and is restored on top
+     * of the backups before it (see {@link #restoreArticleChain(List)}).
+     *
+     * @param fileName         The name of the backup file.
+     * @param sinceVersion     The version returned by the previous backup in the chain, or 0 for a full backup.
+     * @param compressionLevel The Deflate level from 1 (fastest) to 9 (smallest), or 0 for no compression.
+     * @return The change version the backup is complete up to; pass it to the next incremental backup.
+     * @throws Exception if an error occurs during the backup process; the incomplete file is removed.
      */
-    public void restoreArticles(String fileName, boolean merge, String group) throws Exception {
-        String encodedIv;
-        String encodedData;
+    public long backupArticles(String fileName, long sinceVersion, int compressionLevel) throws Exception {
+        return backupArticles(fileName, sinceVersion, compressionLevel, null);
+    }
 
-        // Read the IV and encrypted data from the file
-        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
-            encodedIv = reader.readLine();
-            encodedData = reader.readLine();
+    /**
+     * Backs up articles as {@link #backupArticles(String, long, int)} does, reporting progress as it goes.
+     *
+     * @param fileName         The name of the backup file.
+     * @param sinceVersion     The version returned by the previous backup in the chain, or 0 for a full backup.
+     * @param compressionLevel The Deflate level from 1 (fastest) to 9 (smallest), or 0 for no compression.
+     * @param listener         Receives progress every {@link #PROGRESS_INTERVAL} rows and can cancel the backup, or null.
+     * @return The change version the backup is complete up to; pass it to the next incremental backup.
+     * @throws Exception if an error occurs during the backup process, or it is cancelled; the incomplete file is removed.
+     */
+    public long backupArticles(String fileName, long sinceVersion, int compressionLevel, ProgressListener listener) throws Exception {
+        // Read the high-water mark first, and leave out anything newer: changes made while the backup runs
+        // are picked up by the next one, which starts from this mark
+        long highVersion = getArticleChangeVersion();
+        String condition = " WHERE version > " + sinceVersion + " AND version <= " + highVersion;
+        long totalRows = listener == null ? -1 : countRows("SELECT COUNT(*) FROM help_articles" + condition)
+                + (sinceVersion > 0 ? countRows("SELECT COUNT(*) FROM article_tombstones" + condition) : 0);
+        // Ordered by group so each group's articles fill whole chunks of their own
+        String query = "SELECT * FROM help_articles" + condition + " ORDER BY group_name, id";
+        long rows;
+        BackupWriter writer;
+        try (Stream<HelpArticle> articles = streamArticles(query)) {
+            writer = new BackupWriter(Paths.get(fileName), encryptionHelper, BackupFormat.DEFAULT_CHUNK_SIZE,
+                    compressionLevel, BACKUP_THREADS, sinceVersion, highVersion);
+            try (writer) {
+                try {
+                    rows = sinceVersion > 0 ? writeTombstones(writer, sinceVersion, highVersion, listener, totalRows) : 0;
+                    for (HelpArticle article : (Iterable<HelpArticle>) articles::iterator) {
+                        writer.write(article);
+                        if (++rows % PROGRESS_INTERVAL == 0) {
+                            reportProgress(listener, rows, totalRows, writer.getBytesWritten(), -1);
+                        }
+                    }
+                } catch (Exception e) {
+                    writer.abort();
+                    throw e;
+                }
+            }
         }
+        // Read once closed, so the count includes the index and trailer
+        long bytes = writer.getBytesWritten();
+        if (listener != null) {
+            // Already complete, so too late to cancel
+            listener.onProgress(rows, totalRows, bytes, bytes);
+        }
+        return highVersion;
+    }
 
-        // Decode and decrypt the data
-        byte[] iv = Base64.getDecoder().decode(encodedIv);
-        byte[] encryptedData = Base64.getDecoder().decode(encodedData);
-        byte[] decryptedData = encryptionHelper.decrypt(encryptedData, iv);
+    private long countRows(String query) throws SQLException {
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
 
-        // Deserialize the decrypted data
-        String[] articlesData = new String(decryptedData, StandardCharsets.UTF_8).split("\n");
+    /**
+     * Passes progress to the listener, first stopping the operation if it has been cancelled.
+     */
+    private static void reportProgress(ProgressListener listener, long rows, long totalRows, long bytes, long totalBytes) {
+        if (listener != null) {
+            ProgressListener.checkCancelled(listener);
+            listener.onProgress(rows, totalRows, bytes, totalBytes);
+        }
+    }
 
-        if (!merge) {
-            String clearQuery = "DELETE FROM help_articles";
-            try (Statement stmt = connection.createStatement()) {
-                stmt.executeUpdate(clearQuery);
+    private long writeTombstones(BackupWriter writer, long sinceVersion, long highVersion, ProgressListener listener,
+                                 long totalRows) throws Exception {
+        String query = "SELECT article_id, group_name FROM article_tombstones WHERE version > ? AND version <= ? "
+                + "ORDER BY group_name, article_id";
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setLong(1, sinceVersion);
+            pstmt.setLong(2, highVersion);
+            long rows = 0;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    writer.writeDeletion(rs.getLong("article_id"), rs.getString("group_name"));
+                    if (++rows % PROGRESS_INTERVAL == 0) {
+                        reportProgress(listener, rows, totalRows, writer.getBytesWritten(), -1);
+                    }
+                }
             }
+            return rows;
         }
+    }
 
-        // Insert each article into the database, filtering by group if specified
-        for (String articleData : articlesData) {
-            String[] fields = articleData.split("§", 9);
-            if (fields.length != 9) continue;
+    /**
+     * Restores articles from an encrypted backup file, inserting them in batches of
+     * {@link #DEFAULT_RESTORE_BATCH_SIZE} inside a single transaction.
+     *
+     * @param fileName The name of the backup file.
+     * @param merge If true, merges backup entries with current entries; otherwise, deletes current entries before restoring.
+     * @param group The group name to filter by; if null, restores all articles.
+     * @return The number of articles restored and the restore throughput.
+     * @throws Exception if an error occurs during the restore process; nothing is restored in that case.
+     */
+    public RestoreStats restoreArticles(String fileName, boolean merge, String group) throws Exception {
+        return restoreArticles(fileName, merge, group, DEFAULT_RESTORE_BATCH_SIZE);
+    }
 
-            String articleGroupName = fields[8].equals("null") ? null : fields[8]; // Interpret "null" as actual null
+    /**
+     * Restores articles from an encrypted backup file. Chunked backups are read one chunk at a time;
+     * legacy single-line backups are still accepted. All inserts run in one transaction and are
+     * sent to the database batchSize rows at a time; if any of them fails the whole restore is rolled back.
+     *
+     * An incremental backup is replayed on top of the current articles whatever the merge flag says:
+     * its deletions are applied and its articles replace the ones with the same ID.
+     *
+     * @param fileName  The name of the backup file.
+     * @param merge     If true, merges backup entries with current entries; otherwise, deletes current entries before restoring.
+     * @param group     The group name to filter by; if null, restores all articles.
+     * @param batchSize The number of rows sent per JDBC batch.
+     * @return The number of articles restored and the restore throughput.
+     * @throws Exception if an error occurs during the restore process; nothing is restored in that case.
+     */
+    public RestoreStats restoreArticles(String fileName, boolean merge, String group, int batchSize) throws Exception {
+        return restoreArticles(fileName, merge, group, batchSize, null);
+    }
 
-            // Check if the article should be restored based on the group filter
-            if (group != null && (articleGroupName == null || !group.equals(articleGroupName))) {
-                continue; // Skip articles not in the specified group
+    /**
+     * Restores articles as {@link #restoreArticles(String, boolean, String)} does, reporting progress as it goes.
+     *
+     * @param fileName The name of the backup file.
+     * @param merge    If true, merges backup entries with current entries; otherwise, deletes current entries before restoring.
+     * @param group    The group name to filter by; if null, restores all articles.
+     * @param listener Receives progress every {@link #PROGRESS_INTERVAL} rows and can cancel the restore, or null.
+     * @return The number of articles restored and the restore throughput.
+     * @throws Exception if an error occurs during the restore process, or it is cancelled; nothing is restored in that case.
+     */
+    public RestoreStats restoreArticles(String fileName, boolean merge, String group, ProgressListener listener) throws Exception {
+        return restoreArticles(fileName, merge, group, DEFAULT_RESTORE_BATCH_SIZE, listener);
+    }
+
+    /**
+     * Restores articles from an encrypted backup file in batches of batchSize rows, reporting progress as it goes.
+     *
+     * @param fileName  The name of the backup file.
+     * @param merge     If true, merges backup entries with current entries; otherwise, deletes current entries before restoring.
+     * @param group     The group name to filter by; if null, restores all articles.
+     * @param batchSize The number of rows sent per JDBC batch.
+     * @param listener  Receives progress every {@link #PROGRESS_INTERVAL} rows and can cancel the restore, or null.
+     * @return The number of articles restored and the restore throughput.
+     * @throws Exception if an error occurs during the restore process, or it is cancelled; nothing is restored in that case.
+     */
+    public RestoreStats restoreArticles(String fileName, boolean merge, String group, int batchSize,
+                                        ProgressListener listener) throws Exception {
+        Lock versionLock = ARTICLE_VERSION_LOCK.readLock();
+        versionLock.lock();
+        try {
+            long start = System.nanoTime();
+            // Open the backup first, so an unreadable file fails before anything is deleted.
+            // For a single group the reader decrypts only that group's chunks.
+            try (BackupReader reader = new BackupReader(Paths.get(fileName), encryptionHelper, group);
+                 Connection connection = getConnection();
+                 ArticleRestore restore = new ArticleRestore(connection, encryptionHelper.getKeyRing(), group, batchSize, listener)) {
+                if (!reader.isIncremental()) {
+                    if (merge) {
+                        restore.loadExistingTitles();
+                    } else {
+                        restore.clear();
+                    }
+                }
+                restore.replay(reader);
+                restore.commit();
+                return restore.toStats(System.nanoTime() - start);
             }
+        } finally {
+            versionLock.unlock();
+        }
+    }
 
-            // Insert the article if it doesn't exist or if merge is false
-            if (!merge || !doesArticleExist(fields[1])) { // Check if the article exists by title
-                String insertArticle = "INSERT INTO help_articles (id, title, description, body, level, keywords, reference_links, author_username, group_name) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-                try (PreparedStatement pstmt = connection.prepareStatement(insertArticle)) {
-                    pstmt.setLong(1, Long.parseLong(fields[0]));
-                    pstmt.setString(2, fields[1]);
-                    pstmt.setString(3, fields[2]);
-                    pstmt.setString(4, fields[3]);
-                    pstmt.setString(5, fields[4]);
-                    pstmt.setString(6, fields[5]);
-                    pstmt.setString(7, fields[6]);
-                    pstmt.setString(8, fields[7]);
-                    pstmt.setString(9, articleGroupName); // Handle null group names correctly
-                    pstmt.executeUpdate();
+    /**
+     * Restores a full backup followed by the incremental backups taken after it, in one transaction.
+     * Current articles are replaced by the full backup, then each incremental's deletions and changes
+     * are applied in order.
+     *
+     * @param fileNames The full backup first, then its incremental backups from oldest to newest.
+     * @return The number of articles restored and deleted, and the restore throughput.
+     * @throws Exception if a file cannot be read, the chain has a gap, or the restore fails; nothing is restored in that case.
+     */
+    public RestoreStats restoreArticleChain(List<String> fileNames) throws Exception {
+        Lock versionLock = ARTICLE_VERSION_LOCK.readLock();
+        versionLock.lock();
+        try {
+            long start = System.nanoTime();
+            try (Connection connection = getConnection();
+                 ArticleRestore restore = new ArticleRestore(connection, encryptionHelper.getKeyRing(), null, DEFAULT_RESTORE_BATCH_SIZE, null)) {
+                long coveredVersion = -1;
+                for (String fileName : fileNames) {
+                    try (BackupReader reader = new BackupReader(Paths.get(fileName), encryptionHelper)) {
+                        if (coveredVersion < 0) {
+                            if (reader.isIncremental()) {
+                                throw new IllegalArgumentException("A backup chain must start with a full backup: " + fileName);
+                            }
+                            restore.clear();
+                        } else if (!reader.isIncremental()) {
+                            throw new IllegalArgumentException("Only the first backup in a chain may be a full backup: " + fileName);
+                        } else if (reader.getBaseVersion() > coveredVersion) {
+                            throw new IllegalArgumentException("Backup " + fileName + " starts after version " + reader.getBaseVersion()
+                                    + " but the backups before it only reach version " + coveredVersion + ".");
+                        }
+                        restore.replay(reader);
+                        coveredVersion = reader.getHighVersion();
+                    }
                 }
+                restore.commit();
+                return restore.toStats(System.nanoTime() - start);
             }
+        } finally {
+            versionLock.unlock();
         }
     }
 
     /**
-     * Checks if an article exists by its title.
+     * Backs up every table (users, invitations, groups, articles, bookmarks and help messages) to an
+     * encrypted snapshot file. All tables are read in one transaction at snapshot isolation, so the file
+     * is consistent even while other users keep changing the database. See {@link DatabaseSnapshot}.
      *
-     * @param title The title of the article.
-     * @return True if the article exists, false otherwise.
-     * @throws SQLException if an error occurs during the check.
+     * @param fileName The name of the snapshot file.
+     * @return The number of rows backed up.
+     * @throws Exception if an error occurs during the backup; the incomplete file is removed.
      */
-    private boolean doesArticleExist(String title) throws SQLException {
-        String query = "SELECT COUNT(*) AS count FROM help_articles WHERE title = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, title);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("count") > 0;
+    public long backupDatabase(String fileName) throws Exception {
+        return backupDatabase(fileName, null);
+    }
+
+    /**
+     * Backs up every table as {@link #backupDatabase(String)} does, reporting progress as it goes.
+     *
+     * @param fileName The name of the snapshot file.
+     * @param listener Receives progress and can cancel the backup, or null.
+     * @return The number of rows backed up.
+     * @throws Exception if an error occurs during the backup, or it is cancelled; the incomplete file is removed.
+     */
+    public long backupDatabase(String fileName, ProgressListener listener) throws Exception {
+        try (Connection connection = getConnection()) {
+            return DatabaseSnapshot.write(connection, Paths.get(fileName), encryptionHelper,
+                    BackupFormat.DEFAULT_COMPRESSION_LEVEL, listener);
+        }
+    }
+
+    /**
+     * Replaces the contents of every table with a snapshot taken by {@link #backupDatabase(String)}, in a single transaction.
+     *
+     * @param fileName The name of the snapshot file.
+     * @return The number of rows restored.
+     * @throws Exception if the file is not a snapshot of this schema version or cannot be restored; nothing is restored in that case.
+     */
+    public long restoreDatabase(String fileName) throws Exception {
+        return restoreDatabase(fileName, null);
+    }
+
+    /**
+     * Restores every table as {@link #restoreDatabase(String)} does, reporting progress as it goes.
+     *
+     * @param fileName The name of the snapshot file.
+     * @param listener Receives progress and can cancel the restore, or null.
+     * @return The number of rows restored.
+     * @throws Exception if the file cannot be restored, or the restore is cancelled; nothing is restored in that case.
+     */
+    public long restoreDatabase(String fileName, ProgressListener listener) throws Exception {
+        Lock versionLock = ARTICLE_VERSION_LOCK.readLock();
+        versionLock.lock();
+        try {
+            try (Connection connection = getConnection()) {
+                return DatabaseSnapshot.restore(connection, Paths.get(fileName), encryptionHelper, listener);
+            }
+        } finally {
+            versionLock.unlock();
+        }
+    }
+
+    /**
+     * Generates a new article body key and re-encrypts every group article under it in the background
+     * pool of an {@link ArticleReencryptionJob}. The key ring is saved before anything is encrypted under
+     * the new key, and bodies under older keys stay readable until the job reaches them. If a rotation
+     * was cancelled or interrupted, it is resumed instead of a further key being generated.
+     *
+     * @param listener Receives progress and can cancel the re-encryption, or null.
+     * @return The number of articles re-encrypted.
+     * @throws Exception if the key ring cannot be saved or the articles cannot be re-encrypted.
+     */
+    public long rotateArticleKey(ProgressListener listener) throws Exception {
+        KeyRing keyRing = encryptionHelper.getKeyRing();
+        if (!ArticleReencryptionJob.isPending(keyRing.getCurrentVersion())) {
+            keyRing.rotate();
+        }
+        return reencryptArticles(listener);
+    }
+
+    /**
+     * Re-encrypts every group article not yet under the current key, resuming a re-encryption that was
+     * cancelled or interrupted from its last checkpoint.
+     *
+     * @param listener Receives progress and can cancel the re-encryption, or null.
+     * @return The number of articles re-encrypted, including those done before resuming.
+     * @throws Exception if the articles cannot be re-encrypted.
+     */
+    public long reencryptArticles(ProgressListener listener) throws Exception {
+        return new ArticleReencryptionJob(encryptionHelper).run(listener);
+    }
+
+    /**
+     * Writes restored articles in JDBC batches within a single transaction on the given connection.
+     * Closing it before {@link #commit()} rolls everything back.
+     */
+    private static final class ArticleRestore implements AutoCloseable {
+        private final Connection connection;
+        private final KeyRing keyRing;
+        private final String group;
+        private final int batchSize;
+        private final ProgressListener listener; // null when nobody is watching
+        private final boolean autoCommit;
+        private Set<String> existingTitles; // null unless merging a full backup
+        private final PreparedStatement tombstoneArticle;
+        private final PreparedStatement deleteArticle;
+        private final PreparedStatement insertArticle;
+        private final PreparedStatement upsertArticle;
+        private final PreparedStatement unlinkArticle;
+        private final PreparedStatement linkArticle;
+        private int pending = 0;
+        private long restored = 0;
+        private long deleted = 0;
+        private long skipped = 0;
+        private boolean committed = false;
+
+        ArticleRestore(Connection connection, KeyRing keyRing, String group, int batchSize, ProgressListener listener)
+                throws SQLException {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size must be at least 1.");
+            }
+            this.connection = connection;
+            this.keyRing = keyRing;
+            this.group = group;
+            this.batchSize = batchSize;
+            this.listener = listener;
+            this.autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            String columns = "id, title, description, body, encrypted_body, level, keywords, reference_links, author_username, group_name";
+            tombstoneArticle = connection.prepareStatement(TOMBSTONE_ARTICLE);
+            deleteArticle = connection.prepareStatement("DELETE FROM help_articles WHERE id = ?");
+            insertArticle = connection.prepareStatement("INSERT INTO help_articles (" + columns + ") "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            // A replayed change takes a fresh version, so it is included in this database's next incremental backup
+            upsertArticle = connection.prepareStatement("MERGE INTO help_articles (" + columns + ", version) KEY (id) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NEXT VALUE FOR help_articles_version_seq)");
+            unlinkArticle = connection.prepareStatement("DELETE FROM group_articles WHERE article_id = ?");
+            linkArticle = connection.prepareStatement(
+                    "INSERT INTO group_articles (group_name, article_id) SELECT name, ? FROM groups WHERE name = ?");
+        }
+
+        /**
+         * Reads every existing title once, so merging skips articles whose title is already present
+         * without checking each restored article separately.
+         */
+        void loadExistingTitles() throws SQLException {
+            existingTitles = new HashSet<>();
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT title FROM help_articles")) {
+                while (rs.next()) {
+                    existingTitles.add(rs.getString("title"));
                 }
             }
         }
-        return false;
+
+        /**
+         * Deletes every current article, leaving tombstones for the next incremental backup.
+         */
+        void clear() throws SQLException {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate("MERGE INTO article_tombstones (article_id, group_name, version) KEY (article_id) "
+                        + "SELECT id, group_name, NEXT VALUE FOR help_articles_version_seq FROM help_articles");
+                stmt.executeUpdate("DELETE FROM help_articles");
+            }
+        }
+
+        /**
+         * Applies a backup: a full backup's articles are inserted, while an incremental backup's
+         * deletions are applied and its articles replace any with the same ID.
+         */
+        void replay(BackupReader reader) throws Exception {
+            if (reader.isIncremental()) {
+                BackupReader.Deletion deletion;
+                while ((deletion = reader.nextDeletion()) != null) {
+                    delete(deletion.getArticleId(), deletion.getGroupName());
+                    countProcessed(reader);
+                }
+            }
+            HelpArticle article;
+            while ((article = reader.next()) != null) {
+                if (reader.isIncremental()) {
+                    upsert(article);
+                } else {
+                    add(article);
+                }
+                countProcessed(reader);
+            }
+            // Finish this file's batches before the next file in a chain can touch the same articles
+            flush();
+            reportProgress(reader);
+        }
+
+        private void reportProgress(BackupReader reader) throws IOException {
+            DatabaseHelper.reportProgress(listener, restored + deleted + skipped, -1, reader.getBytesRead(), reader.getFileSize());
+        }
+
+        private void countProcessed(BackupReader reader) throws IOException {
+            if (listener != null && (restored + deleted + skipped) % PROGRESS_INTERVAL == 0) {
+                reportProgress(reader);
+            }
+        }
+
+        /**
+         * Queues an article for insertion unless the group filter or an existing title excludes it.
+         */
+        void add(HelpArticle article) throws SQLException, IOException {
+            if (!inGroup(article.getGroupName())) {
+                skipped++;
+                return;
+            }
+            // When merging, keep the current article with the same title
+            if (existingTitles != null && !existingTitles.add(article.getTitle())) {
+                skipped++;
+                return;
+            }
+            bindArticle(insertArticle, article);
+            insertArticle.addBatch();
+            queueLink(article);
+            restored++;
+            countPending();
+        }
+
+        /**
+         * Queues an article to replace the one with the same ID, or to be inserted if there is none.
+         */
+        void upsert(HelpArticle article) throws SQLException, IOException {
+            if (!inGroup(article.getGroupName())) {
+                skipped++;
+                return;
+            }
+            bindArticle(upsertArticle, article);
+            upsertArticle.addBatch();
+            unlinkArticle.setLong(1, article.getId());
+            unlinkArticle.addBatch();
+            queueLink(article);
+            restored++;
+            countPending();
+        }
+
+        /**
+         * Queues the deletion of an article recorded in an incremental backup.
+         */
+        void delete(long articleId, String articleGroupName) throws SQLException {
+            if (!inGroup(articleGroupName)) {
+                skipped++;
+                return;
+            }
+            tombstoneArticle.setLong(1, articleId);
+            tombstoneArticle.addBatch();
+            deleteArticle.setLong(1, articleId);
+            deleteArticle.addBatch();
+            deleted++;
+            countPending();
+        }
+
+        // Check if the article should be restored based on the group filter
+        private boolean inGroup(String articleGroupName) {
+            return group == null || group.equals(articleGroupName);
+        }
+
+        private void bindArticle(PreparedStatement pstmt, HelpArticle article) throws SQLException, IOException {
+            pstmt.setLong(1, article.getId());
+            pstmt.setString(2, article.getTitle());
+            pstmt.setString(3, article.getDescription());
+            bindStoredBody(pstmt, 4, article);
+            pstmt.setString(6, article.getLevel());
+            pstmt.setString(7, String.join(",", article.getKeywords()));
+            pstmt.setString(8, String.join(",", article.getReferenceLinks()));
+            pstmt.setString(9, article.getAuthorUsername());
+            pstmt.setString(10, article.getGroupName()); // Handle null group names correctly
+        }
+
+        /**
+         * Binds a backed-up body, already encrypted for group articles, without decrypting it. The envelope
+         * is bound as it was read; older backups carry it as text, which is turned back into an envelope.
+         * An encrypted body that is in neither text form is kept as text, where reads skip it as before.
+         *
+         * @throws IOException if the body is under a key the key ring does not hold, since it could never be read.
+         */
+        private void bindStoredBody(PreparedStatement pstmt, int index, HelpArticle article) throws SQLException, IOException {
+            byte[] envelope = article.getGroupName() != null ? article.getEncryptedBody() : null;
+            if (envelope == null && article.getGroupName() != null && article.getBody() != null) {
+                try {
+                    envelope = EncryptionHelper.toEnvelope(article.getBody());
+                } catch (IllegalArgumentException e) {
+                    envelope = null;
+                }
+            }
+            if (envelope != null) {
+                int keyVersion = EncryptionHelper.peekKeyVersion(new ByteArrayInputStream(envelope));
+                if (!keyRing.hasKey(keyVersion)) {
+                    throw new IOException("Article " + article.getId() + " is encrypted under key version " + keyVersion
+                            + ", which the key ring does not hold; restore the key ring the backup was taken with first.");
+                }
+                pstmt.setNull(index, Types.CLOB);
+                pstmt.setBytes(index + 1, envelope);
+            } else {
+                pstmt.setString(index, article.getBody());
+                pstmt.setNull(index + 1, Types.BLOB);
+            }
+        }
+
+        private void queueLink(HelpArticle article) throws SQLException {
+            if (article.getGroupName() != null) {
+                linkArticle.setLong(1, article.getId());
+                linkArticle.setString(2, article.getGroupName());
+                linkArticle.addBatch();
+            }
+        }
+
+        private void countPending() throws SQLException {
+            if (++pending >= batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+            if (pending == 0) {
+                return;
+            }
+            // Deletions before writes, and articles before the group links that reference them
+            tombstoneArticle.executeBatch();
+            deleteArticle.executeBatch();
+            insertArticle.executeBatch();
+            upsertArticle.executeBatch();
+            unlinkArticle.executeBatch();
+            linkArticle.executeBatch();
+            pending = 0;
+        }
+
+        /**
+         * Sends any queued rows, sets any re-encryption in progress to start again, and commits the restore.
+         */
+        void commit() throws SQLException {
+            flush();
+            ArticleReencryptionJob.restartCheckpoints(connection);
+            connection.commit();
+            committed = true;
+        }
+
+        RestoreStats toStats(long elapsedNanos) {
+            return new RestoreStats(restored, deleted, skipped, elapsedNanos);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                if (!committed) {
+                    connection.rollback();
+                }
+            } finally {
+                for (PreparedStatement pstmt : new PreparedStatement[] {
+                        tombstoneArticle, deleteArticle, insertArticle, upsertArticle, unlinkArticle, linkArticle }) {
+                    pstmt.close();
+                }
+                connection.setAutoCommit(autoCommit);
+            }
+        }
     }
-    
+
     /**
      * Registers a new invitation in the database.
      *
@@ -942,7 +2072,8 @@ public class DatabaseHelper {
      */
     public void registerInvitation(Invitation invitation) throws SQLException {
         String insertInvitation = "INSERT INTO invitations (token, roles) VALUES (?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(insertInvitation)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(insertInvitation)) {
             pstmt.setString(1, invitation.getToken());
             pstmt.setString(2, String.join(",", invitation.getRoles()));
             pstmt.executeUpdate();
@@ -958,7 +2089,8 @@ public class DatabaseHelper {
      */
     public boolean doesInvitationExist(String token) throws SQLException {
         String query = "SELECT COUNT(*) AS count FROM invitations WHERE token = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, token);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
@@ -978,7 +2110,8 @@ public class DatabaseHelper {
      */
     public Invitation getInvitation(String token) throws SQLException {
         String query = "SELECT * FROM invitations WHERE token = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(query)) {
             pstmt.setString(1, token);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
@@ -998,7 +2131,8 @@ public class DatabaseHelper {
      */
     public void deleteInvitation(String token) throws SQLException {
         String deleteQuery = "DELETE FROM invitations WHERE token = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(deleteQuery)) {
+        try (Connection connection = getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(deleteQuery)) {
             pstmt.setString(1, token);
             pstmt.executeUpdate();
         }
@@ -1012,7 +2146,9 @@ public class DatabaseHelper {
      */
     public boolean isDatabaseEmpty() throws SQLException {
         String query = "SELECT COUNT(*) AS count FROM users";
-        try (ResultSet resultSet = statement.executeQuery(query)) {
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
             if (resultSet.next()) {
                 return resultSet.getInt("count") == 0;
             }
@@ -1022,13 +2158,10 @@ public class DatabaseHelper {
 
     /**
      * Closes the database connection.
+     * Connections are borrowed from the shared pool for each operation and returned as soon as it
+     * finishes, so this helper holds nothing open; the pool itself is shut down when the application exits.
      */
     public void closeConnection() {
-        try {
-            if (statement != null) statement.close();
-            if (connection != null) connection.close();
-        } catch (SQLException se) {
-            se.printStackTrace();
-        }
+        // Nothing to release; see ConnectionPool.shutdownInstance()
     }
 }
@@ -0,0 +1,530 @@
+package app.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import Encryption.EncryptionHelper;
+import Encryption.KeyRing;
+
+/**
+ * The DatabaseSnapshot class backs up and restores every application table at once.
+ *
+ * A snapshot is read inside a single transaction at SNAPSHOT isolation, so every table is seen as of
+ * the same moment even while other connections keep writing. Rows are streamed straight into a
+ * {@link ChunkedOutputStream}, so neither the backup nor the restore holds more than one chunk in memory.
+ *
+ * A snapshot file starts with {@link #MAGIC}, a 4-byte format version, a 1-byte compression codec and
+ * the 4-byte schema version it was taken at; a restore refuses a file from another schema version.
+ * The chunks that follow hold one logical stream: for each table a true flag, its name, its column
+ * count and column names, then each row as a row flag followed by one tagged value per column, then an
+ * end-of-rows flag. A false flag ends the tables, and the named sequences and their next values follow.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+final class DatabaseSnapshot {
+
+    static final byte[] MAGIC = "CSE360SN".getBytes(StandardCharsets.US_ASCII);
+    static final int FORMAT_VERSION = 1;
+
+    // Every application table, parents before children so rows can be inserted in this order.
+    // Re-encryption checkpoints are left out; a restore sets them to start again instead.
+    static final List<String> TABLES = List.of("users", "invitations", "groups", "group_members", "help_articles",
+            "group_articles", "bookmarks", "help_messages", "article_tombstones");
+
+    // Row markers within a table
+    private static final byte END_OF_ROWS = 0;
+    private static final byte ROW = 1;
+
+    // Value tags
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_LONG = 1;
+    private static final byte TAG_STRING = 2;
+    private static final byte TAG_TIMESTAMP = 3;
+    private static final byte TAG_BOOLEAN = 4;
+    private static final byte TAG_BYTES = 5;
+
+    private static final int RESTORE_BATCH_SIZE = 1000;
+
+    // Rows between progress reports and cancellation checks
+    private static final int PROGRESS_INTERVAL = 500;
+
+    private DatabaseSnapshot() {
+    }
+
+    /**
+     * Writes a consistent snapshot of every table to a file. The incomplete file is removed on failure.
+     *
+     * @param connection       The connection to read through; its isolation level and auto-commit mode are restored afterwards.
+     * @param file             The snapshot file to create or overwrite.
+     * @param encryptionHelper The helper used to encrypt each chunk.
+     * @param compressionLevel The Deflate level from 1 (fastest) to 9 (smallest), or 0 for no compression.
+     * @param listener         Receives progress and can cancel the backup, or null.
+     * @return The number of rows written.
+     * @throws Exception if a table cannot be read, the file cannot be written, or the backup is cancelled.
+     */
+    static long write(Connection connection, Path file, EncryptionHelper encryptionHelper, int compressionLevel,
+                      ProgressListener listener) throws Exception {
+        int isolation = connection.getTransactionIsolation();
+        boolean autoCommit = connection.getAutoCommit();
+        ChunkCodec codec = new ChunkCodec(encryptionHelper, compressionLevel);
+        boolean complete = false;
+        try {
+            // Every read below sees the database as of the transaction's first read
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET SESSION CHARACTERISTICS AS TRANSACTION ISOLATION LEVEL SNAPSHOT");
+            }
+            connection.setAutoCommit(false);
+
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            ChunkedOutputStream chunks = new ChunkedOutputStream(channel, codec, BackupFormat.DEFAULT_CHUNK_SIZE);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(chunks))) {
+                ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 9);
+                header.put(MAGIC).putInt(FORMAT_VERSION).put(codec.getCodec())
+                        .putInt(SchemaMigrator.getSchemaVersion(connection)).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+
+                RowCounter counter = new RowCounter(listener, listener == null ? -1 : countRows(connection));
+                for (String table : TABLES) {
+                    writeTable(connection, table, out, counter, chunks);
+                }
+                out.writeBoolean(false);
+                writeSequences(connection, out);
+                out.flush();
+                chunks.finish();
+                complete = true;
+                counter.done(chunks.getBytesWritten());
+                return counter.rows;
+            }
+        } finally {
+            try {
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+                connection.setTransactionIsolation(isolation);
+                if (!complete) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static long countRows(Connection connection) throws SQLException {
+        long rows = 0;
+        try (Statement statement = connection.createStatement()) {
+            for (String table : TABLES) {
+                try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                    rs.next();
+                    rows += rs.getLong(1);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void writeTable(Connection connection, String table, DataOutputStream out, RowCounter counter,
+                                   ChunkedOutputStream chunks) throws SQLException, IOException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT * FROM " + table)) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            out.writeBoolean(true);
+            out.writeUTF(table);
+            out.writeInt(columnCount);
+            int[] types = new int[columnCount + 1];
+            for (int i = 1; i <= columnCount; i++) {
+                out.writeUTF(metaData.getColumnName(i));
+                types[i] = metaData.getColumnType(i);
+            }
+
+            while (rs.next()) {
+                out.writeByte(ROW);
+                for (int i = 1; i <= columnCount; i++) {
+                    writeValue(rs, i, types[i], out);
+                }
+                counter.row(chunks.getBytesWritten(), -1);
+            }
+            out.writeByte(END_OF_ROWS);
+        }
+    }
+
+    private static void writeValue(ResultSet rs, int column, int type, DataOutputStream out) throws SQLException, IOException {
+        switch (type) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT: {
+                long value = rs.getLong(column);
+                if (rs.wasNull()) {
+                    out.writeByte(TAG_NULL);
+                } else {
+                    out.writeByte(TAG_LONG);
+                    out.writeLong(value);
+                }
+                return;
+            }
+            case Types.BOOLEAN:
+            case Types.BIT: {
+                boolean value = rs.getBoolean(column);
+                if (rs.wasNull()) {
+                    out.writeByte(TAG_NULL);
+                } else {
+                    out.writeByte(TAG_BOOLEAN);
+                    out.writeBoolean(value);
+                }
+                return;
+            }
+            case Types.TIMESTAMP: {
+                Timestamp value = rs.getTimestamp(column);
+                if (value == null) {
+                    out.writeByte(TAG_NULL);
+                } else {
+                    out.writeByte(TAG_TIMESTAMP);
+                    out.writeLong(value.getTime());
+                    out.writeInt(value.getNanos());
+                }
+                return;
+            }
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                writeBytes(TAG_BYTES, rs.getBytes(column), out);
+                return;
+            default:
+                // Text, and anything else the database can convert back from its string form
+                String value = rs.getString(column);
+                writeBytes(TAG_STRING, value == null ? null : value.getBytes(StandardCharsets.UTF_8), out);
+        }
+    }
+
+    private static void writeBytes(byte tag, byte[] value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+            return;
+        }
+        // Length-prefixed rather than writeUTF, which stops at 64 KB
+        out.writeByte(tag);
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    /**
+     * Records the next value of each named sequence, so versions handed out after a restore stay above the restored ones.
+     */
+    private static void writeSequences(Connection connection, DataOutputStream out) throws SQLException, IOException {
+        Map<String, Long> sequences = readSequences(connection);
+        out.writeInt(sequences.size());
+        for (Map.Entry<String, Long> sequence : sequences.entrySet()) {
+            out.writeUTF(sequence.getKey());
+            out.writeLong(sequence.getValue());
+        }
+    }
+
+    private static Map<String, Long> readSequences(Connection connection) throws SQLException {
+        Map<String, Long> sequences = new LinkedHashMap<>();
+        // Identity columns have system sequences of their own; they are reset from the restored rows instead
+        String query = "SELECT SEQUENCE_NAME, BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES "
+                + "WHERE SEQUENCE_SCHEMA = 'PUBLIC' AND SEQUENCE_NAME NOT LIKE 'SYSTEM_SEQUENCE%'";
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(query)) {
+            while (rs.next()) {
+                sequences.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return sequences;
+    }
+
+    /**
+     * Replaces every table's rows with the rows in a snapshot file, in a single transaction.
+     * Identity columns and sequences are then moved past the restored values, and any re-encryption in
+     * progress is set to start again, since the restored bodies may be under keys it had already passed.
+     *
+     * @param connection       The connection to restore through; its auto-commit mode is restored afterwards.
+     * @param file             The snapshot file to read.
+     * @param encryptionHelper The helper used to decrypt each chunk, whose key ring must hold every article body's key.
+     * @param listener         Receives progress and can cancel the restore, or null.
+     * @return The number of rows restored.
+     * @throws Exception if the file is not a snapshot, was taken at another schema version, is damaged, holds
+     *                   an article under a key the ring lacks, or a row cannot be inserted, or the restore is
+     *                   cancelled; nothing is restored in that case.
+     */
+    static long restore(Connection connection, Path file, EncryptionHelper encryptionHelper,
+                        ProgressListener listener) throws Exception {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        ChunkCodec codec;
+        try {
+            codec = readHeader(connection, channel, encryptionHelper);
+        } catch (Exception e) {
+            channel.close();
+            throw e;
+        }
+
+        boolean autoCommit = connection.getAutoCommit();
+        List<String> restoredTables = new ArrayList<>();
+        Map<String, Long> sequences;
+        RowCounter counter = new RowCounter(listener, -1);
+        long fileSize = channel.size();
+        boolean committed = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new ChunkedInputStream(channel, codec)))) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                // Children first, so no foreign key is left pointing at a deleted row
+                for (int i = TABLES.size() - 1; i >= 0; i--) {
+                    statement.executeUpdate("DELETE FROM " + TABLES.get(i));
+                }
+            }
+            while (in.readBoolean()) {
+                String table = in.readUTF();
+                if (!TABLES.contains(table)) {
+                    throw new IOException("Snapshot holds an unknown table: " + table);
+                }
+                restoreTable(connection, table, in, counter, channel, fileSize, encryptionHelper.getKeyRing());
+                restoredTables.add(table);
+            }
+            sequences = new LinkedHashMap<>();
+            int sequenceCount = in.readInt();
+            for (int i = 0; i < sequenceCount; i++) {
+                sequences.put(in.readUTF(), in.readLong());
+            }
+            if (in.read() != -1) {
+                throw new IOException("Snapshot has data after its last table.");
+            }
+            ProgressListener.checkCancelled(listener);
+            ArticleReencryptionJob.restartCheckpoints(connection);
+            connection.commit();
+            committed = true;
+            counter.done(fileSize);
+        } finally {
+            if (!committed) {
+                connection.rollback();
+            }
+            connection.setAutoCommit(autoCommit);
+        }
+
+        // Explicit IDs do not move identity columns on, so new rows would collide with restored ones
+        for (String table : restoredTables) {
+            restartIdentityColumns(connection, table);
+        }
+        restartSequences(connection, sequences);
+        return counter.rows;
+    }
+
+    private static ChunkCodec readHeader(Connection connection, FileChannel channel, EncryptionHelper encryptionHelper) throws Exception {
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 9);
+        if (!BackupFormat.readFully(channel, header) || header.hasRemaining()
+                || !Arrays.equals(Arrays.copyOf(header.array(), MAGIC.length), MAGIC)) {
+            throw new IOException("Not a database snapshot file.");
+        }
+        int formatVersion = header.getInt(MAGIC.length);
+        if (formatVersion < 1 || formatVersion > FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format version " + formatVersion + ".");
+        }
+        int schemaVersion = header.getInt(MAGIC.length + 5);
+        int currentSchemaVersion = SchemaMigrator.getSchemaVersion(connection);
+        if (schemaVersion != currentSchemaVersion) {
+            throw new IOException("Snapshot was taken at schema version " + schemaVersion
+                    + " but the database is at version " + currentSchemaVersion + ".");
+        }
+        return ChunkCodec.forCodec(encryptionHelper, header.get(MAGIC.length + 4));
+    }
+
+    private static void restoreTable(Connection connection, String table, DataInputStream in, RowCounter counter,
+                                     FileChannel channel, long fileSize, KeyRing keyRing) throws SQLException, IOException {
+        int columnCount = in.readInt();
+        if (columnCount < 1) {
+            throw new IOException("Snapshot table " + table + " has no columns.");
+        }
+        StringBuilder insert = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        int envelopeColumn = -1;
+        for (int i = 0; i < columnCount; i++) {
+            String column = in.readUTF();
+            if (table.equals("help_articles") && column.equalsIgnoreCase("encrypted_body")) {
+                envelopeColumn = i + 1;
+            }
+            // Quoted so a name read from the file can only ever be a column name
+            insert.append(i == 0 ? "" : ", ").append('"').append(column.replace("\"", "\"\"")).append('"');
+        }
+        insert.append(") VALUES (").append("?, ".repeat(columnCount - 1)).append("?)");
+
+        try (PreparedStatement pstmt = connection.prepareStatement(insert.toString())) {
+            int pending = 0;
+            while (readRowMarker(in)) {
+                for (int i = 1; i <= columnCount; i++) {
+                    byte[] bytes = readValue(in, pstmt, i);
+                    if (i == envelopeColumn && bytes != null) {
+                        checkKeyKnown(bytes, keyRing);
+                    }
+                }
+                pstmt.addBatch();
+                if (++pending == RESTORE_BATCH_SIZE) {
+                    pstmt.executeBatch();
+                    pending = 0;
+                }
+                counter.row(channel.position(), fileSize);
+            }
+            if (pending > 0) {
+                pstmt.executeBatch();
+            }
+        }
+    }
+
+    private static boolean readRowMarker(DataInputStream in) throws IOException {
+        byte marker = in.readByte();
+        if (marker != ROW && marker != END_OF_ROWS) {
+            throw new IOException("Corrupt snapshot row marker " + marker + ".");
+        }
+        return marker == ROW;
+    }
+
+    /**
+     * Reads one value and binds it to the insert.
+     *
+     * @return The value if it was bytes, otherwise null.
+     */
+    private static byte[] readValue(DataInputStream in, PreparedStatement pstmt, int column) throws SQLException, IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                pstmt.setObject(column, null);
+                break;
+            case TAG_LONG:
+                pstmt.setLong(column, in.readLong());
+                break;
+            case TAG_STRING:
+                pstmt.setString(column, new String(readBytes(in), StandardCharsets.UTF_8));
+                break;
+            case TAG_TIMESTAMP: {
+                Timestamp value = new Timestamp(in.readLong());
+                value.setNanos(in.readInt());
+                pstmt.setTimestamp(column, value);
+                break;
+            }
+            case TAG_BOOLEAN:
+                pstmt.setBoolean(column, in.readBoolean());
+                break;
+            case TAG_BYTES: {
+                byte[] value = readBytes(in);
+                pstmt.setBytes(column, value);
+                return value;
+            }
+            default:
+                throw new IOException("Corrupt snapshot value tag " + tag + ".");
+        }
+        return null;
+    }
+
+    /**
+     * Refuses an article body under a key the key ring does not hold, which could never be read once restored.
+     */
+    private static void checkKeyKnown(byte[] envelope, KeyRing keyRing) throws IOException {
+        int keyVersion = EncryptionHelper.peekKeyVersion(new ByteArrayInputStream(envelope));
+        if (!keyRing.hasKey(keyVersion)) {
+            throw new IOException("Snapshot holds an article encrypted under key version " + keyVersion
+                    + ", which the key ring does not hold; restore the key ring the snapshot was taken with first.");
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > BackupFormat.MAX_CHUNK_LENGTH) {
+            throw new IOException("Corrupt snapshot value length " + length + ".");
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+    private static void restartIdentityColumns(Connection connection, String table) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        try (PreparedStatement pstmt = connection.prepareStatement("SELECT COLUMN_NAME FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = ? AND IS_IDENTITY = 'YES'")) {
+            pstmt.setString(1, table.toUpperCase(Locale.ROOT));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1));
+                }
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String column : columns) {
+                long next;
+                try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(\"" + column + "\"), 0) + 1 FROM " + table)) {
+                    rs.next();
+                    next = rs.getLong(1);
+                }
+                statement.execute("ALTER TABLE " + table + " ALTER COLUMN \"" + column + "\" RESTART WITH " + next);
+            }
+        }
+    }
+
+    /**
+     * Moves each sequence to at least its recorded value. Sequences are never moved backwards, so
+     * versions already handed out are not reused.
+     */
+    private static void restartSequences(Connection connection, Map<String, Long> recorded) throws SQLException {
+        Map<String, Long> current = readSequences(connection);
+        try (Statement statement = connection.createStatement()) {
+            for (Map.Entry<String, Long> sequence : recorded.entrySet()) {
+                Long currentValue = current.get(sequence.getKey());
+                if (currentValue != null && currentValue < sequence.getValue()) {
+                    statement.execute("ALTER SEQUENCE \"" + sequence.getKey() + "\" RESTART WITH " + sequence.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts rows for the result and reports progress to the listener every {@link #PROGRESS_INTERVAL} rows.
+     */
+    private static final class RowCounter {
+        private final ProgressListener listener; // null when nobody is watching
+        private final long totalRows;
+        private long rows = 0;
+
+        RowCounter(ProgressListener listener, long totalRows) {
+            this.listener = listener;
+            this.totalRows = totalRows;
+        }
+
+        void row(long bytes, long totalBytes) {
+            if (++rows % PROGRESS_INTERVAL == 0 && listener != null) {
+                ProgressListener.checkCancelled(listener);
+                listener.onProgress(rows, totalRows, bytes, totalBytes);
+            }
+        }
+
+        void done(long bytes) {
+            if (listener != null) {
+                listener.onProgress(rows, rows, bytes, bytes);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package app.util;
 
+import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -14,6 +15,13 @@ import app.User;
  *     - Jaafar Abdeen
  */
 public class Group {
+    // Membership roles as stored in the group_members table
+    public static final String ROLE_ADMIN = "admin";
+    public static final String ROLE_INSTRUCTOR = "instructor";
+    public static final String ROLE_INSTRUCTOR_ADMIN = "instructor_admin";
+    public static final String ROLE_STUDENT = "student";
+    public static final List<String> ROLES = List.of(ROLE_ADMIN, ROLE_INSTRUCTOR, ROLE_INSTRUCTOR_ADMIN, ROLE_STUDENT);
+
     private String name;
     private Set<String> admins; // usernames of group admins (including instructors with admin rights for the group)
     private Set<String> instructors; // usernames of instructors with viewing rights
@@ -56,6 +64,27 @@ public class Group {
         return articleIds;
     }
 
+    /**
+     * Returns the usernames holding the given membership role.
+     *
+     * @param role One of the ROLE_ constants.
+     * @return The live set of usernames for that role.
+     */
+    public Set<String> getMembers(String role) {
+        switch (role) {
+            case ROLE_ADMIN:
+                return admins;
+            case ROLE_INSTRUCTOR:
+                return instructors;
+            case ROLE_INSTRUCTOR_ADMIN:
+                return instructorAdmins;
+            case ROLE_STUDENT:
+                return students;
+            default:
+                throw new IllegalArgumentException("Unknown group role: " + role);
+        }
+    }
+
     // Methods to add/remove users and articles
 
     public void addAdmin(String username) {
@@ -82,13 +82,14 @@ public class HelpArticleDatabase {
 
     /**
      * Retrieves all articles accessible to the specified user.
+     * Articles are returned as summaries without their bodies; use getArticle to load a body.
      * 
      * @param user The user requesting the articles.
      * @return A collection of accessible help articles.
      */
     public static Collection<HelpArticle> getArticles(User user) {
         try {
-            return databaseHelper.getAllArticles(user);
+            return databaseHelper.getArticleSummaries(user);
         } catch (Exception e) {
             e.printStackTrace();
             return null;
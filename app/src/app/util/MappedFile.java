@@ -0,0 +1,85 @@
+package app.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The MappedFile class reads a file through read-only memory-mapped segments, so a reader can decrypt
+ * straight out of the page cache instead of copying every chunk into a freshly allocated buffer first.
+ *
+ * Only one segment is mapped at a time. It is remapped whenever a read falls outside it, starting at the
+ * read, so any range up to the segment size is always served from a single mapping.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+final class MappedFile {
+
+    // Twice the largest chunk, so remapping at a chunk boundary always covers the whole chunk
+    static final long DEFAULT_SEGMENT_SIZE = 2L * BackupFormat.MAX_CHUNK_LENGTH;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long segmentSize;
+    private MappedByteBuffer segment; // null until the first read
+    private long segmentStart = 0;
+    private long position = 0;
+
+    /**
+     * Constructor for MappedFile.
+     *
+     * @param channel     The channel to map; the caller keeps ownership and closes it.
+     * @param segmentSize The most bytes mapped at once; must be at least the longest single read.
+     * @throws IOException if the file size cannot be read.
+     */
+    MappedFile(FileChannel channel, long segmentSize) throws IOException {
+        if (segmentSize < 1 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size out of range: " + segmentSize);
+        }
+        this.channel = channel;
+        this.size = channel.size();
+        this.segmentSize = segmentSize;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long position() {
+        return position;
+    }
+
+    void position(long position) {
+        this.position = position;
+    }
+
+    long remaining() {
+        return size - position;
+    }
+
+    /**
+     * Returns a view of the next length bytes and moves past them. The view stays valid until the
+     * segment is remapped, so callers consume it before the next call.
+     *
+     * @param length The number of bytes to read.
+     * @return A read-only buffer over exactly those bytes.
+     * @throws IOException if the file ends first.
+     */
+    ByteBuffer take(int length) throws IOException {
+        if (length < 0 || length > segmentSize) {
+            throw new IOException("Read of " + length + " bytes does not fit in a mapped segment.");
+        }
+        if (length > remaining()) {
+            throw new IOException("Backup file is truncated.");
+        }
+        if (segment == null || position < segmentStart || position + length > segmentStart + segment.capacity()) {
+            segmentStart = position;
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, Math.min(segmentSize, size - segmentStart));
+        }
+        ByteBuffer view = segment.slice((int) (position - segmentStart), length);
+        position += length;
+        return view;
+    }
+}
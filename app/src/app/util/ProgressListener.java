@@ -0,0 +1,47 @@
+package app.util;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * The ProgressListener interface receives progress from long-running backups and restores, and lets
+ * the caller stop them. Callbacks arrive on the thread doing the work, every few hundred rows.
+ *
+ * When {@link #isCancelRequested()} returns true the operation stops at its next check by throwing a
+ * {@link CancellationException}: a backup deletes its incomplete file and a restore rolls back.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+public interface ProgressListener {
+
+    /**
+     * Reports how far the operation has got.
+     *
+     * @param rows       The rows processed so far.
+     * @param totalRows  The rows expected in total, or -1 if unknown.
+     * @param bytes      The file bytes written or read so far.
+     * @param totalBytes The file size expected in total, or -1 if unknown.
+     */
+    void onProgress(long rows, long totalRows, long bytes, long totalBytes);
+
+    /**
+     * Returns whether the caller wants the operation stopped.
+     *
+     * @return True to stop at the next check.
+     */
+    default boolean isCancelRequested() {
+        return false;
+    }
+
+    /**
+     * Throws if the listener has asked for the operation to stop.
+     *
+     * @param listener The listener to check, or null.
+     * @throws CancellationException if cancellation was requested.
+     */
+    static void checkCancelled(ProgressListener listener) {
+        if (listener != null && listener.isCancelRequested()) {
+            throw new CancellationException("Cancelled.");
+        }
+    }
+}
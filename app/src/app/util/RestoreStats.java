@@ -0,0 +1,65 @@
+package app.util;
+
+/**
+ * The RestoreStats class summarizes a completed article restore: how many rows were inserted or
+ * replaced, how many were deleted by incremental backups, how many were skipped by the merge or
+ * group filter, and how long the restore took.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+public class RestoreStats {
+    private final long restored;
+    private final long deleted;
+    private final long skipped;
+    private final long elapsedNanos;
+
+    /**
+     * Constructor for RestoreStats.
+     *
+     * @param restored     The number of articles inserted or replaced.
+     * @param deleted      The number of articles deleted.
+     * @param skipped      The number of backup entries not inserted.
+     * @param elapsedNanos The time the restore took, in nanoseconds.
+     */
+    public RestoreStats(long restored, long deleted, long skipped, long elapsedNanos) {
+        this.restored = restored;
+        this.deleted = deleted;
+        this.skipped = skipped;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRestored() {
+        return restored;
+    }
+
+    public long getDeleted() {
+        return deleted;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * Returns the insert throughput of the restore.
+     *
+     * @return Restored and deleted rows per second, or 0 if nothing was restored.
+     */
+    public double getRowsPerSecond() {
+        if (restored + deleted == 0 || elapsedNanos == 0) {
+            return 0;
+        }
+        return (restored + deleted) * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Restored %d articles, deleted %d (%d skipped) in %d ms, %.0f rows/s",
+                restored, deleted, skipped, getElapsedMillis(), getRowsPerSecond());
+    }
+}
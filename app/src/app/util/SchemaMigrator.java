@@ -0,0 +1,439 @@
+package app.util;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SchemaMigrator class creates and upgrades the database schema.
+ * The schema is described as an ordered list of numbered migrations. The version reached so far is
+ * recorded in the schema_version table, and only migrations newer than that are applied, so new
+ * tables and indexes can be rolled out to an existing database without dropping it.
+ *
+ * H2 commits every DDL statement as it runs, so a failed migration cannot be fully rolled back. Each
+ * migration is therefore written to be run again over whatever a failed attempt left behind: objects
+ * are created IF NOT EXISTS and data is copied with MERGE, so fixing the cause and restarting finishes it.
+ *
+ * The application database is migrated once per process; later calls return immediately.
+ *
+ * Author:
+ *     - Jaafar Abdeen
+ */
+public class SchemaMigrator {
+
+    /**
+     * A single step of the schema, applied inside its own transaction. Its DDL commits regardless, so a
+     * step must succeed when run again after failing part way.
+     */
+    private interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    // Ordered list of migrations; append new ones with the next version number, never edit applied ones
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Create initial tables", SchemaMigrator::createInitialTables),
+            new Migration(2, "Move group membership into group_members", SchemaMigrator::createGroupMembers),
+            new Migration(3, "Move group article ids into group_articles", SchemaMigrator::createGroupArticles),
+            new Migration(4, "Index the hot filter columns", SchemaMigrator::createFilterIndexes),
+            new Migration(5, "Track article changes for incremental backups", SchemaMigrator::createArticleVersions),
+            new Migration(6, "Store encrypted article bodies as binary", SchemaMigrator::createEncryptedBodies),
+            new Migration(7, "Checkpoint article re-encryption", SchemaMigrator::createReencryptionCheckpoints)
+    );
+
+    private static volatile boolean migrated = false;
+
+    /**
+     * Brings the application database up to the latest schema version, once per process.
+     *
+     * @throws SQLException if a migration fails.
+     */
+    public static void migrateOnce() throws SQLException {
+        if (migrated) {
+            return;
+        }
+        synchronized (SchemaMigrator.class) {
+            if (!migrated) {
+                try (Connection connection = ConnectionPool.getInstance().getConnection()) {
+                    migrate(connection);
+                }
+                migrated = true;
+            }
+        }
+    }
+
+    /**
+     * Applies every migration newer than the database's current schema version.
+     *
+     * @param connection The connection to migrate through.
+     * @return The schema version after migrating.
+     * @throws SQLException if a migration fails; its data changes are rolled back, and it is run again next time.
+     */
+    public static int migrate(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INT PRIMARY KEY, "
+                    + "description VARCHAR(255), "
+                    + "applied_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        }
+
+        int current = getSchemaVersion(connection);
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= current) {
+                    continue;
+                }
+                connection.setAutoCommit(false);
+                try {
+                    migration.step.apply(connection);
+                    try (PreparedStatement pstmt = connection.prepareStatement(
+                            "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                        pstmt.setInt(1, migration.version);
+                        pstmt.setString(2, migration.description);
+                        pstmt.executeUpdate();
+                    }
+                    connection.commit();
+                    current = migration.version;
+                } catch (Exception e) {
+                    connection.rollback();
+                    throw new SQLException("Schema migration " + migration.version + " (" + migration.description + ") failed.", e);
+                }
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return current;
+    }
+
+    /**
+     * Returns the latest schema version this build knows about.
+     *
+     * @return The latest migration version.
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    /**
+     * Returns the schema version recorded in the database.
+     *
+     * @param connection The connection to query.
+     * @return The highest applied migration version, or 0 if none have been applied.
+     * @throws SQLException if the version cannot be read.
+     */
+    public static int getSchemaVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static boolean columnExists(Connection connection, String table, String column) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE TABLE_SCHEMA = CURRENT_SCHEMA AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, column);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // Migrations
+
+    /**
+     * Version 1: the original tables. Uses IF NOT EXISTS so databases created before versioning adopt it as their baseline.
+     */
+    private static void createInitialTables(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS users ("
+                    + "username VARCHAR(255) PRIMARY KEY, "
+                    + "password_hash VARCHAR(255), "
+                    + "email VARCHAR(255), "
+                    + "first_name VARCHAR(255), "
+                    + "middle_name VARCHAR(255), "
+                    + "last_name VARCHAR(255), "
+                    + "preferred_name VARCHAR(255), "
+                    + "roles VARCHAR(255), "
+                    + "level VARCHAR(255))");
+
+            statement.execute("CREATE TABLE IF NOT EXISTS help_articles ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "title VARCHAR(255), "
+                    + "description VARCHAR(1000), "
+                    + "body TEXT, "
+                    + "level VARCHAR(255), "
+                    + "keywords VARCHAR(500), "
+                    + "reference_links VARCHAR(1000), "
+                    + "author_username VARCHAR(255), "
+                    + "group_name VARCHAR(255))");
+
+            statement.execute("CREATE TABLE IF NOT EXISTS invitations ("
+                    + "token VARCHAR(255) PRIMARY KEY, "
+                    + "roles VARCHAR(255))");
+
+            statement.execute("CREATE TABLE IF NOT EXISTS groups ("
+                    + "name VARCHAR(255) PRIMARY KEY, "
+                    + "admins VARCHAR(1000), "
+                    + "instructors VARCHAR(1000), "
+                    + "instructor_admins VARCHAR(1000), "
+                    + "students VARCHAR(1000), "
+                    + "article_ids VARCHAR(1000))");
+
+            statement.execute("CREATE TABLE IF NOT EXISTS help_messages ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "username VARCHAR(255), "
+                    + "message_type VARCHAR(50), "
+                    + "message_content TEXT, "
+                    + "search_terms VARCHAR(255), "
+                    + "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+
+            statement.execute("CREATE TABLE IF NOT EXISTS bookmarks ("
+                    + "username VARCHAR(255), "
+                    + "article_id INT, "
+                    + "PRIMARY KEY (username, article_id))");
+        }
+    }
+
+    /**
+     * Version 2: one row per (group, user, role) instead of comma-joined membership columns.
+     */
+    private static void createGroupMembers(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS group_members ("
+                    + "group_name VARCHAR(255) NOT NULL, "
+                    + "username VARCHAR(255) NOT NULL, "
+                    + "role VARCHAR(32) NOT NULL, "
+                    + "PRIMARY KEY (group_name, username, role), "
+                    + "FOREIGN KEY (group_name) REFERENCES groups(name) ON DELETE CASCADE)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_group_members_username ON group_members(username)");
+        }
+        // Already copied by an attempt that failed after dropping the columns
+        if (!columnExists(connection, "GROUPS", "STUDENTS")) {
+            return;
+        }
+
+        // Copy the existing CSV membership into rows
+        Map<String, String> columnsByRole = new LinkedHashMap<>();
+        columnsByRole.put(Group.ROLE_ADMIN, "admins");
+        columnsByRole.put(Group.ROLE_INSTRUCTOR, "instructors");
+        columnsByRole.put(Group.ROLE_INSTRUCTOR_ADMIN, "instructor_admins");
+        columnsByRole.put(Group.ROLE_STUDENT, "students");
+
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT name, admins, instructors, instructor_admins, students FROM groups");
+             PreparedStatement pstmt = connection.prepareStatement(
+                     "MERGE INTO group_members (group_name, username, role) KEY (group_name, username, role) VALUES (?, ?, ?)")) {
+            while (rs.next()) {
+                for (Map.Entry<String, String> entry : columnsByRole.entrySet()) {
+                    String members = rs.getString(entry.getValue());
+                    if (members == null || members.isEmpty()) {
+                        continue;
+                    }
+                    for (String username : members.split(",")) {
+                        pstmt.setString(1, rs.getString("name"));
+                        pstmt.setString(2, username);
+                        pstmt.setString(3, entry.getKey());
+                        pstmt.addBatch();
+                    }
+                }
+            }
+            pstmt.executeBatch();
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE groups DROP COLUMN (admins, instructors, instructor_admins, students)");
+        }
+    }
+
+    /**
+     * Version 3: one row per (group, article) instead of the comma-joined article_ids column.
+     * Mappings are also rebuilt from help_articles.group_name, which was the only record kept when an article moved group.
+     */
+    private static void createGroupArticles(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS group_articles ("
+                    + "group_name VARCHAR(255) NOT NULL, "
+                    + "article_id INT NOT NULL, "
+                    + "PRIMARY KEY (group_name, article_id), "
+                    + "FOREIGN KEY (group_name) REFERENCES groups(name) ON DELETE CASCADE, "
+                    + "FOREIGN KEY (article_id) REFERENCES help_articles(id) ON DELETE CASCADE)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_group_articles_article_id ON group_articles(article_id)");
+        }
+
+        // Skipped if an attempt that failed later had already dropped the column
+        if (columnExists(connection, "GROUPS", "ARTICLE_IDS")) {
+            copyGroupArticleIds(connection);
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("MERGE INTO group_articles (group_name, article_id) KEY (group_name, article_id) "
+                    + "SELECT a.group_name, a.id FROM help_articles a JOIN groups g ON g.name = a.group_name");
+            statement.execute("ALTER TABLE groups DROP COLUMN IF EXISTS article_ids");
+        }
+    }
+
+    private static void copyGroupArticleIds(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT name, article_ids FROM groups");
+             PreparedStatement pstmt = connection.prepareStatement(
+                     "MERGE INTO group_articles (group_name, article_id) KEY (group_name, article_id) "
+                     + "SELECT ?, id FROM help_articles WHERE id = ?")) {
+            while (rs.next()) {
+                String articleIds = rs.getString("article_ids");
+                if (articleIds == null || articleIds.isEmpty()) {
+                    continue;
+                }
+                for (String idStr : articleIds.split(",")) {
+                    // An entry that is not a number never matched an article
+                    long id;
+                    try {
+                        id = Long.parseLong(idStr.trim());
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    pstmt.setString(1, rs.getString("name"));
+                    pstmt.setLong(2, id);
+                    pstmt.addBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Version 4: secondary indexes for the columns article listings, restores and message views filter or sort on.
+     */
+    private static void createFilterIndexes(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_help_articles_group_name ON help_articles(group_name)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_help_articles_level ON help_articles(level)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_help_articles_author ON help_articles(author_username)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_help_articles_title ON help_articles(title)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_bookmarks_article_id ON bookmarks(article_id)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_help_messages_timestamp ON help_messages(timestamp DESC)");
+        }
+    }
+
+    /**
+     * Version 5: a change counter on help_articles and tombstones for deleted articles, so an incremental
+     * backup can select everything that changed after a given version. Inserts take the next version by default;
+     * updates and deletes take it explicitly.
+     */
+    private static void createArticleVersions(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE SEQUENCE IF NOT EXISTS help_articles_version_seq START WITH 1");
+            statement.execute("ALTER TABLE help_articles ADD COLUMN IF NOT EXISTS version BIGINT");
+            statement.execute("UPDATE help_articles SET version = NEXT VALUE FOR help_articles_version_seq WHERE version IS NULL");
+            statement.execute("ALTER TABLE help_articles ALTER COLUMN version SET DEFAULT NEXT VALUE FOR help_articles_version_seq");
+            statement.execute("ALTER TABLE help_articles ALTER COLUMN version SET NOT NULL");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_help_articles_version ON help_articles(version)");
+
+            statement.execute("CREATE TABLE IF NOT EXISTS article_tombstones ("
+                    + "article_id INT PRIMARY KEY, "
+                    + "group_name VARCHAR(255), "
+                    + "version BIGINT NOT NULL, "
+                    + "deleted_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_article_tombstones_version ON article_tombstones(version)");
+        }
+    }
+
+    /**
+     * Version 6: group article bodies move from Base64 text in body to a binary envelope in encrypted_body,
+     * dropping the Base64 overhead and the decoding on every read. Existing rows are converted without
+     * being decrypted; rows whose text is not a valid encrypted body are left as they are.
+     */
+    private static void createEncryptedBodies(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE help_articles ADD COLUMN IF NOT EXISTS encrypted_body BLOB");
+        }
+        try (Statement select = connection.createStatement();
+             ResultSet rs = select.executeQuery(
+                     "SELECT id, body FROM help_articles WHERE group_name IS NOT NULL AND body IS NOT NULL");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE help_articles SET body = NULL, encrypted_body = ? WHERE id = ?")) {
+            int pending = 0;
+            while (rs.next()) {
+                byte[] envelope;
+                try {
+                    envelope = toLegacyEnvelope(rs.getString("body"));
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                update.setBytes(1, envelope);
+                update.setLong(2, rs.getLong("id"));
+                update.addBatch();
+                if (++pending % 1000 == 0) {
+                    update.executeBatch();
+                }
+            }
+            update.executeBatch();
+        }
+    }
+
+    /**
+     * Converts a body stored as text before version 6 into its envelope: either "iv:ciphertext" in Base64
+     * (AES/CBC with a 16-byte IV, written as mode 1 followed by the IV and ciphertext), or the envelope
+     * itself in Base64. A copy of the conversion as it was then, so later changes to the envelope format
+     * cannot change what this migration writes.
+     *
+     * @param storedBody The stored text.
+     * @return The envelope bytes.
+     * @throws IllegalArgumentException if the text is in neither form.
+     */
+    private static byte[] toLegacyEnvelope(String storedBody) {
+        int colon = storedBody.indexOf(':');
+        if (colon < 0) {
+            byte[] envelope = Base64.getDecoder().decode(storedBody);
+            if (envelope.length == 0) {
+                throw new IllegalArgumentException("Invalid encrypted body format.");
+            }
+            return envelope;
+        }
+        if (storedBody.indexOf(':', colon + 1) >= 0) {
+            throw new IllegalArgumentException("Invalid encrypted body format.");
+        }
+        byte[] iv = Base64.getDecoder().decode(storedBody.substring(0, colon));
+        byte[] cipherText = Base64.getDecoder().decode(storedBody.substring(colon + 1));
+        if (iv.length != 16) {
+            throw new IllegalArgumentException("Invalid encrypted body format.");
+        }
+        return ByteBuffer.allocate(1 + iv.length + cipherText.length)
+                .put((byte) 1).put(iv).put(cipherText).array();
+    }
+
+    /**
+     * Version 7: how far a re-encryption under a new key has got, by key version and group ('' for every group),
+     * so a job that was cancelled or interrupted resumes after the last article it finished.
+     */
+    private static void createReencryptionCheckpoints(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS reencryption_checkpoints ("
+                    + "key_version INT NOT NULL, "
+                    + "scope VARCHAR(255) NOT NULL, "
+                    + "last_article_id INT NOT NULL, "
+                    + "reencrypted BIGINT NOT NULL, "
+                    + "updated_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                    + "PRIMARY KEY (key_version, scope))");
+        }
+    }
+}